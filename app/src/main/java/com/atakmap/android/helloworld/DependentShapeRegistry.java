@@ -0,0 +1,185 @@
+package com.atakmap.android.helloworld;
+
+import com.atakmap.android.maps.MapEvent;
+import com.atakmap.android.maps.MapEventDispatcher;
+import com.atakmap.android.maps.MapItem;
+import com.atakmap.android.maps.MapView;
+import com.atakmap.android.maps.PointMapItem;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ties shapes drawn around a marker, such as an accuracy ellipse, to that
+ * marker.   A dependent follows its marker when the marker moves and is
+ * removed from the map with it.
+ *
+ * The registry is a single map event listener and a single point listener
+ * over a map of marker UID to dependents, so a removal or a move only visits
+ * the dependents of the item concerned rather than running a listener for
+ * every decorated marker.   A dependent removed from the map on its own is
+ * dropped from the registry.
+ */
+public class DependentShapeRegistry implements
+        MapEventDispatcher.MapEventDispatchListener,
+        PointMapItem.OnPointChangedListener {
+
+    /**
+     * Keeps a dependent in step with its marker
+     */
+    public interface OnAnchorMovedListener {
+        void onAnchorMoved(PointMapItem anchor, MapItem dependent);
+    }
+
+    private static class Dependent {
+        final MapItem item;
+        final OnAnchorMovedListener listener;
+
+        Dependent(MapItem item, OnAnchorMovedListener listener) {
+            this.item = item;
+            this.listener = listener;
+        }
+    }
+
+    private static class Anchor {
+        final PointMapItem item;
+        final List<Dependent> dependents = new ArrayList<>(2);
+
+        Anchor(PointMapItem item) {
+            this.item = item;
+        }
+    }
+
+    private final MapView _mapView;
+
+    private final Map<String, Anchor> _anchors = new HashMap<>();
+
+    // the anchor UID of each dependent
+    private final Map<MapItem, String> _dependents = new IdentityHashMap<>();
+
+    public DependentShapeRegistry(MapView mapView) {
+        _mapView = mapView;
+        _mapView.getMapEventDispatcher().addMapEventListener(
+                MapEvent.ITEM_REMOVED, this);
+    }
+
+    public void dispose() {
+        _mapView.getMapEventDispatcher().removeMapEventListener(
+                MapEvent.ITEM_REMOVED, this);
+        synchronized (this) {
+            for (Anchor a : _anchors.values())
+                a.item.removeOnPointChangedListener(this);
+            _anchors.clear();
+            _dependents.clear();
+        }
+    }
+
+    /**
+     * @param anchor the marker the dependent belongs to
+     * @param dependent the item to remove with the marker
+     * @param listener called when the marker moves, null if the dependent
+     *            does not follow the marker
+     */
+    public void register(PointMapItem anchor, MapItem dependent,
+            OnAnchorMovedListener listener) {
+        final String uid = anchor.getUID();
+        synchronized (this) {
+            unregister(dependent);
+            Anchor a = _anchors.get(uid);
+            if (a == null) {
+                _anchors.put(uid, a = new Anchor(anchor));
+                anchor.addOnPointChangedListener(this);
+            }
+            a.dependents.add(new Dependent(dependent, listener));
+            _dependents.put(dependent, uid);
+        }
+    }
+
+    /**
+     * Stop tracking a dependent, it is left on the map.
+     *
+     * @return true if the item was registered
+     */
+    public synchronized boolean unregister(MapItem dependent) {
+        final String uid = _dependents.remove(dependent);
+        if (uid == null)
+            return false;
+        final Anchor a = _anchors.get(uid);
+        if (a == null)
+            return true;
+        for (int i = 0; i < a.dependents.size(); ++i) {
+            if (a.dependents.get(i).item == dependent) {
+                a.dependents.remove(i);
+                break;
+            }
+        }
+        if (a.dependents.isEmpty()) {
+            _anchors.remove(uid);
+            a.item.removeOnPointChangedListener(this);
+        }
+        return true;
+    }
+
+    /**
+     * Stop tracking the dependents of a marker, they are left on the map.
+     *
+     * @return the dependents that were registered to the marker
+     */
+    public synchronized List<MapItem> unregisterAll(String anchorUid) {
+        final Anchor a = _anchors.remove(anchorUid);
+        final List<MapItem> items = new ArrayList<>();
+        if (a == null)
+            return items;
+        a.item.removeOnPointChangedListener(this);
+        for (Dependent d : a.dependents) {
+            _dependents.remove(d.item);
+            items.add(d.item);
+        }
+        return items;
+    }
+
+    /**
+     * @return the dependents of the marker
+     */
+    public synchronized List<MapItem> getDependents(String anchorUid) {
+        final Anchor a = _anchors.get(anchorUid);
+        final List<MapItem> items = new ArrayList<>();
+        if (a != null) {
+            for (Dependent d : a.dependents)
+                items.add(d.item);
+        }
+        return items;
+    }
+
+    /**************************************************************************/
+
+    @Override
+    public void onMapEvent(MapEvent event) {
+        final MapItem item = event.getItem();
+        if (item == null)
+            return;
+        // an anchor takes its dependents with it
+        for (MapItem dependent : unregisterAll(item.getUID()))
+            dependent.removeFromGroup();
+        // a dependent removed by itself no longer needs tracking
+        unregister(item);
+    }
+
+    @Override
+    public void onPointChanged(PointMapItem item) {
+        final List<Dependent> dependents;
+        synchronized (this) {
+            final Anchor a = _anchors.get(item.getUID());
+            if (a == null)
+                return;
+            dependents = new ArrayList<>(a.dependents);
+        }
+        for (Dependent d : dependents) {
+            if (d.listener != null)
+                d.listener.onAnchorMoved(item, d.item);
+        }
+    }
+}
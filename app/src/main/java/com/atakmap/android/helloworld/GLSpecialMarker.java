@@ -5,6 +5,8 @@ import android.graphics.Color;
 import android.graphics.Typeface;
 import android.util.Pair;
 
+import com.atakmap.android.helloworld.gl.GLLabelCache;
+import com.atakmap.android.helloworld.gl.GLLabelPass;
 import com.atakmap.android.maps.Marker;
 import com.atakmap.android.maps.MapItem;
 import com.atakmap.android.maps.MapTextFormat;
@@ -20,22 +22,16 @@ import com.atakmap.map.hittest.HitTestResult;
 import com.atakmap.map.hittest.HitTestQueryParameters;
 import com.atakmap.map.MapRenderer3;
 
-import com.atakmap.coremap.maps.coords.GeoPointMetaData;
 import com.atakmap.map.MapRenderer;
 import com.atakmap.map.opengl.GLMapBatchable2;
 import com.atakmap.map.opengl.GLMapView;
-import com.atakmap.map.opengl.GLRenderGlobals;
 import com.atakmap.math.MathUtils;
-import com.atakmap.opengl.GLES20FixedPipeline;
-import com.atakmap.opengl.GLNinePatch;
+import com.atakmap.math.PointD;
 import com.atakmap.opengl.GLRenderBatch2;
-import com.atakmap.opengl.GLText;
 
 public class GLSpecialMarker extends GLPointMapItem2
         implements GLMapBatchable2 {
 
-    private GeoPointMetaData gpm = new GeoPointMetaData();
-
     public final static GLMapItemSpi3 SPI = new GLMapItemSpi3() {
         @Override
         public int getPriority() {
@@ -61,10 +57,24 @@ public class GLSpecialMarker extends GLPointMapItem2
 
     /**************************************************************************/
 
-    private static GLText text = null;
+    private static MapTextFormat labelFormat = null;
+
+    // black at 60% opacity behind the label text
+    private static final int LABEL_BACKGROUND = Color.argb(153, 0, 0, 0);
+
+    // labels drawn outside of a batch; only used on the GL thread
+    private static final GLLabelPass labelPass = new GLLabelPass();
 
     private final MapItem subject;
 
+    // shared, laid out label; resolved again on the GL thread when the point
+    // changes or the cache has dropped it
+    private GLLabelCache.Label label;
+    private volatile boolean labelValid;
+    private boolean cacheReferenced;
+
+    private final MutableGeoBounds scratchBounds = new MutableGeoBounds();
+
     final GLMarker2 markerRenderer;
 
     public GLSpecialMarker(MapRenderer surface, PointMapItem subject) {
@@ -106,9 +116,8 @@ public class GLSpecialMarker extends GLPointMapItem2
     @Override
     protected void updateBoundsZ() {
         try {
-            MutableGeoBounds b = new MutableGeoBounds();
-            markerRenderer.getBounds(b);
-            bounds.set(b);
+            markerRenderer.getBounds(scratchBounds);
+            bounds.set(scratchBounds);
         } catch (Exception e) {
             // This seems to crash most times in helloworld.  See it in production code as well, it might have only been the first time it is called.
             // So we just swallow it.
@@ -125,59 +134,53 @@ public class GLSpecialMarker extends GLPointMapItem2
         if (!MathUtils.hasBits(renderPass, this.renderPass))
             return;
 
+        final PointD pos = projectLabel(ortho);
+        labelPass.add(label, (float) pos.x, (float) pos.y, (float) pos.z);
+        labelPass.flush();
+    }
+
+    /**
+     * Computes the screen position of the lower left of the label, offset
+     * from the marker, into the view's scratch point.
+     */
+    private PointD projectLabel(GLMapView ortho) {
         ortho.scratch.geo.set(this.latitude,
                 ortho.idlHelper.wrapLongitude(this.longitude));
         if (ortho.currentPass.drawTilt > 0d)
             ortho.scratch.geo.set(altHae);
 
         forward(ortho, ortho.scratch.geo, ortho.scratch.pointD);
-        float xpos = (float) ortho.scratch.pointD.x;
-        float ypos = (float) ortho.scratch.pointD.y;
-        float zpos = (float) ortho.scratch.pointD.z;
 
         if (ortho.currentPass.drawTilt > 0d) {
             // move up ~5 pixels from surface
-            ypos += 5;
+            ortho.scratch.pointD.y += 5;
         }
 
-        if (text == null)
-            text = GLText.getInstance(new MapTextFormat(Typeface.DEFAULT_BOLD,
-                    MapView.getDefaultTextFormat().getFontSize()));
-
-        final float offx = (ortho.currentPass.drawTilt > 0d) ? 40f : 20f;
-        final float offy = 20f;
-
-        GLES20FixedPipeline.glPushMatrix();
-        GLES20FixedPipeline.glTranslatef(xpos + offx, ypos + offy, zpos);
-
-        StringBuilder label = new StringBuilder();
-        final String src = this.gpm.getGeopointSource();
-        label.append("INFO");
-        final int labelColor = Color.YELLOW;
-
-        GLNinePatch smallNinePatch = GLRenderGlobals.get(this.context)
-                .getSmallNinePatch();
-        if (smallNinePatch != null) {
-            GLES20FixedPipeline.glColor4f(0f, 0f, 0f, 0.6f);
-            GLES20FixedPipeline.glPushMatrix();
+        ortho.scratch.pointD.x += (ortho.currentPass.drawTilt > 0d) ? 40f
+                : 20f;
+        ortho.scratch.pointD.y += 20f;
 
-            GLES20FixedPipeline
-                    .glTranslatef(-4f, -text.getDescent(), 0f);
-            final float textWidth = text.getStringWidth(label.toString());
-            final float textHeight = text.getStringHeight();
-            smallNinePatch.draw(textWidth + 8f, textHeight);
-            GLES20FixedPipeline.glPopMatrix();
+        if (!labelValid || !label.isValid())
+            validateLabel();
+        return ortho.scratch.pointD;
+    }
 
+    /**
+     * Resolves the label from the shared cache.   This only happens when the
+     * point has changed, not every frame, and the layout is shared by every
+     * marker showing the same text.
+     */
+    private void validateLabel() {
+        labelValid = true;
+        if (!cacheReferenced) {
+            GLLabelCache.getInstance().addReference();
+            cacheReferenced = true;
         }
-
-        text.draw(label.toString(),
-                Color.red(labelColor) / 255f,
-                Color.green(labelColor) / 255f,
-                Color.blue(labelColor) / 255f,
-                Color.alpha(labelColor) / 255f);
-
-        GLES20FixedPipeline.glPopMatrix();
-
+        if (labelFormat == null)
+            labelFormat = new MapTextFormat(Typeface.DEFAULT_BOLD,
+                    MapView.getDefaultTextFormat().getFontSize());
+        label = GLLabelCache.getInstance().get("INFO", labelFormat,
+                Color.YELLOW, LABEL_BACKGROUND);
     }
 
     @Override
@@ -190,18 +193,34 @@ public class GLSpecialMarker extends GLPointMapItem2
 
     @Override
     public void batch(GLMapView view, GLRenderBatch2 batch, int renderPass) {
+
+        // the icon and the label are both submitted to the batch so that any
+        // number of these markers share a handful of draw calls
+        markerRenderer.batch(view, batch, renderPass);
+
         if (!MathUtils.hasBits(renderPass, this.renderPass))
             return;
 
-        // XXX - implement batching 
-        batch.end();
-        this.draw(view, renderPass);
-        batch.begin();
+        final PointD pos = projectLabel(view);
+        GLLabelPass.batch(batch, label, (float) pos.x, (float) pos.y,
+                (float) pos.z);
+    }
+
+    @Override
+    public void release() {
+        super.release();
+        // the last marker to go releases the shared label atlas
+        if (cacheReferenced) {
+            cacheReferenced = false;
+            label = null;
+            labelValid = false;
+            GLLabelCache.getInstance().removeReference();
+        }
     }
 
     @Override
     public void onPointChanged(PointMapItem item) {
         super.onPointChanged(item);
-        gpm = item.getGeoPointMetaData();
+        labelValid = false;
     }
 }
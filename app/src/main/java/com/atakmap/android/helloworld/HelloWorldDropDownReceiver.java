@@ -70,6 +70,10 @@ import com.atakmap.android.geofence.data.GeoFenceConstants;
 import com.atakmap.android.geofence.monitor.GeoFenceManager;
 import com.atakmap.android.gui.ImportFileBrowserDialog;
 import com.atakmap.android.gui.coordinateentry.CoordinateEntryCapability;
+import com.atakmap.android.helloworld.datapackage.MapItemPackageExporter;
+import com.atakmap.android.helloworld.elevation.ElevationSampler;
+import com.atakmap.android.helloworld.elevation.Viewshed;
+import com.atakmap.android.helloworld.feed.FeedPoller;
 import com.atakmap.android.helloworld.heatmap.GLSimpleHeatMapLayer;
 import com.atakmap.android.helloworld.heatmap.SimpleHeatMapLayer;
 import com.atakmap.android.helloworld.image.MapScreenshotExample;
@@ -79,10 +83,13 @@ import com.atakmap.android.helloworld.menu.MenuFactory;
 import com.atakmap.android.helloworld.navstack.NavigationStackDropDown;
 import com.atakmap.android.helloworld.plugin.R;
 import com.atakmap.android.helloworld.recyclerview.RecyclerViewDropDown;
+import com.atakmap.android.helloworld.routes.RouteGeometryIndex;
 import com.atakmap.android.helloworld.samplelayer.ExampleLayer;
 import com.atakmap.android.helloworld.samplelayer.ExampleMultiLayer;
 import com.atakmap.android.helloworld.samplelayer.GLExampleLayer;
 import com.atakmap.android.helloworld.samplelayer.GLExampleMultiLayer;
+import com.atakmap.android.helloworld.samplelayer.GLImageChipLayer;
+import com.atakmap.android.helloworld.samplelayer.ImageChipLayer;
 import com.atakmap.android.helloworld.speechtotext.SpeechBloodHound;
 import com.atakmap.android.helloworld.speechtotext.SpeechBrightness;
 import com.atakmap.android.helloworld.speechtotext.SpeechDetailOpener;
@@ -115,8 +122,6 @@ import com.atakmap.android.maps.Ellipse;
 import com.atakmap.android.maps.MapActivity;
 import com.atakmap.android.maps.MapComponent;
 import com.atakmap.android.maps.MetaDataHolder2;
-import com.atakmap.android.maps.MapEvent;
-import com.atakmap.android.maps.MapEventDispatcher;
 import com.atakmap.android.maps.MapGroup;
 import com.atakmap.android.maps.MapItem;
 import com.atakmap.android.maps.MapView;
@@ -124,15 +129,12 @@ import com.atakmap.android.maps.MapView.RenderStack;
 import com.atakmap.android.maps.Marker;
 import com.atakmap.android.maps.MultiPolyline;
 import com.atakmap.android.maps.PointMapItem;
-import com.atakmap.android.maps.PointMapItem.OnPointChangedListener;
 import com.atakmap.android.maps.SensorFOV;
 import com.atakmap.android.maps.Shape;
 import com.atakmap.android.menu.MapMenuReceiver;
 import com.atakmap.android.menu.PluginMenuParser;
 import com.atakmap.android.missionpackage.export.MissionPackageExportMarshal;
 import com.atakmap.android.missionpackage.export.MissionPackageExportWrapper;
-import com.atakmap.android.missionpackage.file.MissionPackageBuilder;
-import com.atakmap.android.missionpackage.file.MissionPackageManifest;
 import com.atakmap.android.navigationstack.DropDownNavigationStack;
 import com.atakmap.android.overlay.DefaultMapGroupOverlay;
 import com.atakmap.android.preference.AtakPreferences;
@@ -180,7 +182,6 @@ import com.atakmap.coremap.maps.coords.GeoPointMetaData;
 import com.atakmap.coremap.maps.time.CoordinatedTime;
 import com.atakmap.map.CameraController;
 import com.atakmap.map.elevation.ElevationData;
-import com.atakmap.map.elevation.ElevationManager;
 import com.atakmap.map.layer.Layer;
 import com.atakmap.map.layer.feature.Feature;
 import com.atakmap.map.layer.opengl.GLLayerFactory;
@@ -202,9 +203,11 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import gov.tak.api.util.AttributeSet;
 
@@ -247,13 +250,38 @@ public class HelloWorldDropDownReceiver extends DropDownReceiver implements
     // inspection map selector
     final InspectionMapItemSelectionTool imis;
 
-    private Timer issTimer = null;
+    // shapes that follow and are removed with a marker
+    private final DependentShapeRegistry dependentShapes;
+
+    private FeedPoller<GeoPoint> issFeed = null;
+
+    private MapItemPackageExporter packageExporter = null;
 
     private Route r;
 
     private ExampleLayer exampleLayer;
     private final Map<Integer, ExampleMultiLayer> exampleMultiLayers = new HashMap<>();
     private SimpleHeatMapLayer simpleHeatMapLayer;
+    // the heat map was reopened from its grid and not yet shown
+    private boolean heatMapRestored;
+    private SimpleHeatMapLayer viewshedLayer;
+    // viewsheds are computed one at a time, only the result of the latest
+    // request is shown; the generation and future are only used on the UI
+    // thread
+    private final ExecutorService viewshedExecutor = Executors
+            .newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "viewshed");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+    private Future<?> viewshedTask;
+    private int viewshedGeneration;
+    private boolean disposed;
+    private ImageChipLayer imageChipLayer;
+    private GeoPoint imageChipCenter;
 
     private final JoystickListener _joystickView;
 
@@ -470,6 +498,8 @@ public class HelloWorldDropDownReceiver extends DropDownReceiver implements
 
         imis = new InspectionMapItemSelectionTool();
 
+        dependentShapes = new DependentShapeRegistry(mapView);
+
         csl = new CotStreamListener(mapView.getContext(), TAG, null) {
             @Override
             public void onCotOutputRemoved(Bundle bundle) {
@@ -590,6 +620,8 @@ public class HelloWorldDropDownReceiver extends DropDownReceiver implements
                     toast(context.getString(R.string.externalGps));
                 } else if (id == R.id.surfaceAtCenter) {
                     toast(context.getString(R.string.surfaceAtCenter));
+                } else if (id == R.id.viewshed) {
+                    toast(context.getString(R.string.viewshed));
                 } else if (id == R.id.fakeContentProvider) {
                     toast(context.getString(R.string.fakeContentProvider));
                 } else if (id == R.id.notificationWebPage) {
@@ -618,6 +650,8 @@ public class HelloWorldDropDownReceiver extends DropDownReceiver implements
                     toast(context.getString(R.string.addMultiLayer));
                 } else if (id == R.id.addHeatMap) {
                     toast(context.getString(R.string.addHeatMap));
+                } else if (id == R.id.addImageChips) {
+                    toast(context.getString(R.string.addImageChips));
                 } else if (id == R.id.bumpControl) {
                     toast(context.getString(R.string.bumpControl));
                 } else if (id == R.id.speechToActivity) {
@@ -1240,28 +1274,19 @@ public class HelloWorldDropDownReceiver extends DropDownReceiver implements
             @Override
             public void onClick(View v) {
 
-                ElevationManager.QueryParameters DSM_FILTER = new ElevationManager.QueryParameters();
-                DSM_FILTER.elevationModel = ElevationData.MODEL_SURFACE;
-                ElevationManager.QueryParameters DTM_FILTER = new ElevationManager.QueryParameters();
-                DTM_FILTER.elevationModel = ElevationData.MODEL_TERRAIN;
-
-                double terrain;
-                double surface;
-                GeoPointMetaData terrainMetaData = new GeoPointMetaData();
-                GeoPointMetaData surfaceMetaData = new GeoPointMetaData();
-
                 GeoPoint point = mapView.getCenterPoint().get();
                 if (point != null) {
+                    final GeoPoint[] points = {
+                            point
+                    };
+                    final ElevationSampler sampler = ElevationSampler
+                            .getInstance();
                     // pull terrain
-                    terrain = ElevationManager.getElevation(
-                            point.getLatitude(),
-                            point.getLongitude(),
-                            DTM_FILTER, terrainMetaData);
+                    double terrain = sampler.sample(points,
+                            ElevationData.MODEL_TERRAIN)[0];
                     // pull surface
-                    surface = ElevationManager.getElevation(
-                            point.getLatitude(),
-                            point.getLongitude(),
-                            DSM_FILTER, surfaceMetaData);
+                    double surface = sampler.sample(points,
+                            ElevationData.MODEL_SURFACE)[0];
 
                     toast("Terrain: " + terrain);
                     toast("Surface: " + surface);
@@ -1270,6 +1295,31 @@ public class HelloWorldDropDownReceiver extends DropDownReceiver implements
 
         });
 
+        final Button viewshed = helloView
+                .findViewById(R.id.viewshed);
+        viewshed.setOnClickListener(new OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                v.setSelected(!v.isSelected());
+                if (v.isSelected()) {
+                    // from the sensor if one has been placed
+                    MapItem sensor = mapView
+                            .getMapItem("sensor-fov-example-uid");
+                    GeoPoint observer = (sensor instanceof Marker)
+                            ? ((Marker) sensor).getPoint()
+                            : mapView.getCenterPoint().get();
+                    showViewshed(v, observer, 5000);
+                    return;
+                }
+                cancelViewshed();
+                if (viewshedLayer != null) {
+                    getMapView().removeLayer(RenderStack.MAP_SURFACE_OVERLAYS,
+                            viewshedLayer);
+                    viewshedLayer.setVisible(false);
+                }
+            }
+        });
+
         final Button fakeContentProvider = helloView
                 .findViewById(R.id.fakeContentProvider);
         fakeContentProvider.setOnClickListener(new OnClickListener() {
@@ -1631,22 +1681,13 @@ public class HelloWorldDropDownReceiver extends DropDownReceiver implements
             @Override
             public void onClick(View v) {
                 boolean b = issLocation.isSelected();
-                if (issTimer != null) {
-                    issTimer.cancel();
-                    issTimer.purge();
-                    issTimer = null;
-                }
-                issTimer = new Timer();
+                if (issFeed == null)
+                    issFeed = createISSFeed();
                 issLocation.setSelected(!b);
-                if (!b) {
-                    issTimer.schedule(new TimerTask() {
-
-                        @Override
-                        public void run() {
-                            plotISSLocation();
-                        }
-                    }, 0, 3000);
-                }
+                if (!b)
+                    issFeed.start();
+                else
+                    issFeed.stop();
 
             }
 
@@ -1940,20 +1981,25 @@ public class HelloWorldDropDownReceiver extends DropDownReceiver implements
 
                 synchronized (HelloWorldDropDownReceiver.this) {
                     if (exampleLayer == null) {
+                        try {
+                            exampleLayer = new ExampleLayer(pluginContext,
+                                    "HelloWorld Test Layer",
+                                    f.getAbsolutePath());
+                        } catch (IOException e) {
+                            toast("file: " + f + " could not be read");
+                            Log.e(TAG, "error opening: " + f, e);
+                            return;
+                        }
                         GLLayerFactory.register(GLExampleLayer.SPI);
-                        exampleLayer = new ExampleLayer(pluginContext,
-                                "HelloWorld Test Layer", f.getAbsolutePath());
                     }
                 }
 
                 if (addLayer.isSelected()) {
                     // Remove the layer from the map
-                    getMapView().removeLayer(RenderStack.MAP_SURFACE_OVERLAYS,
-                            exampleLayer);
+                    mapOverlay.removeLayer(exampleLayer);
                 } else {
                     // Add the layer to the map
-                    getMapView().addLayer(RenderStack.MAP_SURFACE_OVERLAYS,
-                            exampleLayer);
+                    mapOverlay.addLayer(exampleLayer);
                     exampleLayer.setVisible(true);
 
                     // Pan and zoom to the layer
@@ -2008,12 +2054,19 @@ public class HelloWorldDropDownReceiver extends DropDownReceiver implements
                             lr.set(49.999, -49.999, altitude);
                             ll.set(49.999, -50, altitude);
                             ul.set(50, -50, altitude);
-                            ExampleMultiLayer exampleMultiLayer = new ExampleMultiLayer(
-                                    pluginContext,
-                                    String.format(
-                                            "HelloWorld Test Multi Layer %4d",
-                                            altitude),
-                                    f.getAbsolutePath(), ul, ur, lr, ll);
+                            ExampleMultiLayer exampleMultiLayer;
+                            try {
+                                exampleMultiLayer = new ExampleMultiLayer(
+                                        pluginContext,
+                                        String.format(
+                                                "HelloWorld Test Multi Layer %4d",
+                                                altitude),
+                                        f.getAbsolutePath(), ul, ur, lr, ll);
+                            } catch (IOException e) {
+                                toast("file: " + f + " could not be read");
+                                Log.e(TAG, "error opening: " + f, e);
+                                return;
+                            }
                             exampleMultiLayers.put(altitude,
                                     exampleMultiLayer);
                         }
@@ -2026,9 +2079,7 @@ public class HelloWorldDropDownReceiver extends DropDownReceiver implements
                         for (ExampleMultiLayer layer : exampleMultiLayers
                                 .values()) {
                             // Remove the layer from the map
-                            getMapView().removeLayer(
-                                    MapView.RenderStack.MAP_SURFACE_OVERLAYS,
-                                    layer);
+                            mapOverlay.removeLayer(layer);
                         }
                         exampleMultiLayers.clear();
                     }
@@ -2037,10 +2088,8 @@ public class HelloWorldDropDownReceiver extends DropDownReceiver implements
                     if (!exampleMultiLayers.isEmpty()) {
                         for (ExampleMultiLayer layer : exampleMultiLayers
                                 .values()) {
-                            // Remove the layer from the map
-                            getMapView().addLayer(
-                                    RenderStack.MAP_SURFACE_OVERLAYS,
-                                    layer);
+                            // Add the layer to the map
+                            mapOverlay.addLayer(layer);
                             layer.setVisible(true);
                         }
                     }
@@ -2059,6 +2108,33 @@ public class HelloWorldDropDownReceiver extends DropDownReceiver implements
             }
         });
 
+        GLLayerFactory.register(GLImageChipLayer.SPI);
+        final Button addImageChips = helloView
+                .findViewById(R.id.addImageChips);
+        addImageChips.setOnClickListener(new OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                if (imageChipLayer != null) {
+                    removeImageChips();
+                    addImageChips.setSelected(false);
+                    return;
+                }
+                // a 10 x 10 grid of chips around the center of the map, all
+                // drawn from one shared atlas
+                imageChipLayer = new ImageChipLayer("HelloWorld Image Chips");
+                imageChipCenter = getMapView().getCenterPoint().get();
+                for (int i = 0; i < IMAGE_CHIP_GRID * IMAGE_CHIP_GRID; i++)
+                    addImageChip(i, Color.HSVToColor(160, new float[] {
+                            i * 360f / (IMAGE_CHIP_GRID * IMAGE_CHIP_GRID),
+                            1f, 1f
+                    }));
+                getMapView().addLayer(RenderStack.MAP_SURFACE_OVERLAYS,
+                        imageChipLayer);
+                getMapView().postDelayed(imageChipUpdater, 1000);
+                addImageChips.setSelected(true);
+            }
+        });
+
         final Button addHeatMap = helloView
                 .findViewById(R.id.addHeatMap);
         addHeatMap.setOnClickListener(new OnClickListener() {
@@ -2068,17 +2144,56 @@ public class HelloWorldDropDownReceiver extends DropDownReceiver implements
 
                 if (simpleHeatMapLayer == null) {
                     GLLayerFactory.register(GLSimpleHeatMapLayer.SPI);
-                    simpleHeatMapLayer = new SimpleHeatMapLayer(pluginContext,
-                            "simple heat map",
-                            8, 8, bounds);
+                    // back the grid with a mapped file so it survives a
+                    // restart, fall back to the heap if it can't be created
+                    File grid = FileSystemUtils
+                            .getItem("tools/helloworld/heatmap.grid");
+                    File parentFile = grid.getParentFile();
+                    if (parentFile != null
+                            && !IOProviderFactory.exists(parentFile)) {
+                        if (!IOProviderFactory.mkdir(parentFile))
+                            Log.d(TAG, "could not make the directory");
+                    }
+                    // reopen the grid left by the last run, it is shown
+                    // where and as it was left
+                    if (IOProviderFactory.exists(grid)) {
+                        try {
+                            SimpleHeatMapLayer restored = new SimpleHeatMapLayer(
+                                    pluginContext, "simple heat map", grid);
+                            if (restored.getLayerWidth() == 8
+                                    && restored.getLayerHeight() == 8) {
+                                simpleHeatMapLayer = restored;
+                                heatMapRestored = true;
+                            }
+                        } catch (IOException e) {
+                            Log.d(TAG, "replacing heat map grid: " + grid, e);
+                        }
+                    }
+                    if (simpleHeatMapLayer == null) {
+                        try {
+                            simpleHeatMapLayer = new SimpleHeatMapLayer(
+                                    pluginContext, "simple heat map",
+                                    8, 8, bounds, grid);
+                        } catch (IOException e) {
+                            Log.e(TAG, "could not map heat map grid: " + grid,
+                                    e);
+                            simpleHeatMapLayer = new SimpleHeatMapLayer(
+                                    pluginContext, "simple heat map",
+                                    8, 8, bounds);
+                        }
+                    }
                 }
 
                 view.setSelected(!view.isSelected());
 
                 if (view.isSelected()) {
 
-                    simpleHeatMapLayer.setCorners(mapView.getBounds());
-                    simpleHeatMapLayer.setData(generateHeatMap());
+                    if (heatMapRestored) {
+                        heatMapRestored = false;
+                    } else {
+                        simpleHeatMapLayer.setCorners(mapView.getBounds());
+                        simpleHeatMapLayer.setData(generateHeatMap());
+                    }
                     simpleHeatMapLayer.refresh();
                     getMapView().addLayer(RenderStack.MAP_SURFACE_OVERLAYS,
                             simpleHeatMapLayer);
@@ -2317,6 +2432,7 @@ public class HelloWorldDropDownReceiver extends DropDownReceiver implements
         addLayer.setOnLongClickListener(longClickListener);
         addMultiLayer.setOnLongClickListener(longClickListener);
         addHeatMap.setOnLongClickListener(longClickListener);
+        addImageChips.setOnLongClickListener(longClickListener);
         staleout.setOnLongClickListener(longClickListener);
         addStream.setOnLongClickListener(longClickListener);
         removeStream.setOnLongClickListener(longClickListener);
@@ -2348,6 +2464,7 @@ public class HelloWorldDropDownReceiver extends DropDownReceiver implements
         externalGps.setOnLongClickListener(longClickListener);
         //Elevation Examples
         surfaceAtCenter.setOnLongClickListener(longClickListener);
+        viewshed.setOnLongClickListener(longClickListener);
         //Notification Examples
         fakeContentProvider.setOnLongClickListener(longClickListener);
         pluginNotification.setOnLongClickListener(longClickListener);
@@ -2495,26 +2612,15 @@ public class HelloWorldDropDownReceiver extends DropDownReceiver implements
         _accuracyEllipse.setMetaString("shapeName", "Error Ellipse");
         _accuracyEllipse.setMetaBoolean("addToObjList", false);
         getMapView().getRootGroup().addItem(_accuracyEllipse);
-        marker.addOnPointChangedListener(new OnPointChangedListener() {
-            @Override
-            public void onPointChanged(final PointMapItem item) {
-                _accuracyEllipse.setCenterHeightWidth(
-                        item.getGeoPointMetaData(), 20, 20);
-            }
-        });
-        MapEventDispatcher dispatcher = getMapView().getMapEventDispatcher();
-        dispatcher.addMapEventListener(MapEvent.ITEM_REMOVED,
-                new MapEventDispatcher.MapEventDispatchListener() {
-                    public void onMapEvent(MapEvent event) {
-                        if (event.getType().equals(MapEvent.ITEM_REMOVED)) {
-                            MapItem item = event.getItem();
-                            if (item.getUID().equals(marker.getUID()))
-                                getMapView().getRootGroup().removeItem(
-                                        _accuracyEllipse);
-                        }
+        dependentShapes.register(marker, _accuracyEllipse,
+                new DependentShapeRegistry.OnAnchorMovedListener() {
+                    @Override
+                    public void onAnchorMoved(PointMapItem anchor,
+                            MapItem dependent) {
+                        ((Ellipse) dependent).setCenterHeightWidth(
+                                anchor.getGeoPointMetaData(), 20, 20);
                     }
                 });
-
     }
 
     /**
@@ -2532,26 +2638,16 @@ public class HelloWorldDropDownReceiver extends DropDownReceiver implements
         _accuracyCircle.setMetaBoolean("addToObjList", false);
 
         getMapView().getRootGroup().addItem(_accuracyCircle);
-        marker.addOnPointChangedListener(new OnPointChangedListener() {
-            @Override
-            public void onPointChanged(final PointMapItem item) {
-                _accuracyCircle.setCenterPoint(marker.getGeoPointMetaData());
-                _accuracyCircle.setRadius(20);
-            }
-        });
-        MapEventDispatcher dispatcher = getMapView().getMapEventDispatcher();
-        dispatcher.addMapEventListener(MapEvent.ITEM_REMOVED,
-                new MapEventDispatcher.MapEventDispatchListener() {
-                    public void onMapEvent(MapEvent event) {
-                        if (event.getType().equals(MapEvent.ITEM_REMOVED)) {
-                            MapItem item = event.getItem();
-                            if (item.getUID().equals(marker.getUID()))
-                                getMapView().getRootGroup().removeItem(
-                                        _accuracyCircle);
-                        }
+        dependentShapes.register(marker, _accuracyCircle,
+                new DependentShapeRegistry.OnAnchorMovedListener() {
+                    @Override
+                    public void onAnchorMoved(PointMapItem anchor,
+                            MapItem dependent) {
+                        final Circle circle = (Circle) dependent;
+                        circle.setCenterPoint(anchor.getGeoPointMetaData());
+                        circle.setRadius(20);
                     }
                 });
-
     }
 
     private void manipulateFakeContentProvider() {
@@ -2594,12 +2690,27 @@ public class HelloWorldDropDownReceiver extends DropDownReceiver implements
 
         unregisterOnActivityResultListener();
 
+        dependentShapes.dispose();
+
         _joystickView.dispose();
 
-        if (issTimer != null) {
-            issTimer.cancel();
-            issTimer.purge();
-            issTimer = null;
+        if (issFeed != null) {
+            issFeed.stop();
+            issFeed = null;
+        }
+
+        if (packageExporter != null) {
+            packageExporter.cancel();
+            packageExporter = null;
+        }
+
+        disposed = true;
+        cancelViewshed();
+        viewshedExecutor.shutdownNow();
+        if (viewshedLayer != null) {
+            getMapView().removeLayer(RenderStack.MAP_SURFACE_OVERLAYS,
+                    viewshedLayer);
+            viewshedLayer = null;
         }
 
         AtakBroadcast.getInstance().unregisterReceiver(fakePhoneCallReceiver);
@@ -2619,8 +2730,7 @@ public class HelloWorldDropDownReceiver extends DropDownReceiver implements
 
         try {
             if (exampleLayer != null) {
-                getMapView().removeLayer(RenderStack.MAP_SURFACE_OVERLAYS,
-                        exampleLayer);
+                mapOverlay.removeLayer(exampleLayer);
                 GLLayerFactory.unregister(GLExampleLayer.SPI);
             }
             exampleLayer = null;
@@ -2628,6 +2738,8 @@ public class HelloWorldDropDownReceiver extends DropDownReceiver implements
             Log.e(TAG, "error", e);
         }
         GLLayerFactory.unregister(GLExampleMultiLayer.SPI);
+        removeImageChips();
+        GLLayerFactory.unregister(GLImageChipLayer.SPI);
 
     }
 
@@ -2716,14 +2828,12 @@ public class HelloWorldDropDownReceiver extends DropDownReceiver implements
                 ExampleLayer l = mapOverlay.findLayer(intent
                         .getStringExtra("uid"));
                 if (l != null) {
-                    getMapView().removeLayer(RenderStack.MAP_SURFACE_OVERLAYS,
-                            l);
+                    mapOverlay.removeLayer(l);
                 } else {
                     ExampleMultiLayer ml = mapOverlay.findMultiLayer(intent
                             .getStringExtra("uid"));
                     if (ml != null)
-                        getMapView().removeLayer(
-                                RenderStack.MAP_SURFACE_OVERLAYS, ml);
+                        mapOverlay.removeLayer(ml);
                 }
                 break;
             }
@@ -3281,52 +3391,145 @@ public class HelloWorldDropDownReceiver extends DropDownReceiver implements
         Contacts.getInstance().removeContact(contact);
     }
 
-    private void plotISSLocation() {
+    /**
+     * Compute the viewshed of an observer standing at the point off the UI
+     * thread, then show it as a heat map with the visible area in green and
+     * the hidden area in red.   A request replaces any still being computed,
+     * and the result is dropped if the toggle has been switched off or the
+     * receiver disposed in the meantime.
+     *
+     * @param toggle the button that shows the viewshed while selected
+     * @param observer the observer
+     * @param radius the radius in meters
+     */
+    private void showViewshed(final View toggle, final GeoPoint observer,
+            final double radius) {
+        cancelViewshed();
+        final int generation = viewshedGeneration;
+        viewshedTask = viewshedExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                final long start = SystemClock.elapsedRealtime();
+                final Viewshed.Result result = new Viewshed(
+                        ElevationSampler.getInstance()).compute(
+                                observer.getLatitude(),
+                                observer.getLongitude(), 2, 0, radius,
+                                radius / 200, ElevationData.MODEL_SURFACE);
+                Log.d(TAG, "viewshed computed in "
+                        + (SystemClock.elapsedRealtime() - start) + "ms");
+                getMapView().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (disposed || generation != viewshedGeneration
+                                || !toggle.isSelected())
+                            return;
+                        viewshedTask = null;
+                        if (result == null) {
+                            toast("No elevation data at the observer");
+                            return;
+                        }
+                        final GeoBounds bounds = new GeoBounds(
+                                result.getNorth(), result.getWest(),
+                                result.getSouth(), result.getEast());
+                        // the radius and cell size are fixed, so is the size
+                        if (viewshedLayer == null) {
+                            GLLayerFactory.register(GLSimpleHeatMapLayer.SPI);
+                            viewshedLayer = new SimpleHeatMapLayer(
+                                    pluginContext, "viewshed",
+                                    result.getSize(), result.getSize(),
+                                    bounds);
+                        }
+                        viewshedLayer.setCorners(bounds);
+                        viewshedLayer.setData(
+                                result.toARGB(0x6000FF00, 0x60FF0000));
+                        viewshedLayer.refresh();
+                        getMapView().addLayer(
+                                RenderStack.MAP_SURFACE_OVERLAYS,
+                                viewshedLayer);
+                        viewshedLayer.setVisible(true);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Drop the viewshed being computed, if any, so its result is not shown.
+     * Called on the UI thread.
+     */
+    private void cancelViewshed() {
+        ++viewshedGeneration;
+        if (viewshedTask != null) {
+            viewshedTask.cancel(false);
+            viewshedTask = null;
+        }
+    }
+
+    /**
+     * Poll the ISS position every 3 seconds and move its marker.
+     */
+    private FeedPoller<GeoPoint> createISSFeed() {
+        return new FeedPoller<>("http://api.open-notify.org/iss-now.json",
+                3000, new FeedPoller.Parser<GeoPoint>() {
+                    @Override
+                    public GeoPoint parse(java.io.Reader body)
+                            throws java.io.IOException {
+                        return parseISSLocation(body);
+                    }
+                }, new FeedPoller.Listener<GeoPoint>() {
+                    @Override
+                    public void onFeedUpdate(FeedPoller<GeoPoint> feed,
+                            GeoPoint point) {
+                        plotISSLocation(point.getLatitude(),
+                                point.getLongitude());
+                    }
+
+                    @Override
+                    public void onFeedError(FeedPoller<GeoPoint> feed,
+                            Exception e) {
+                        Log.e(TAG, "error polling " + feed.getUrl(), e);
+                    }
+                });
+    }
+
+    private static GeoPoint parseISSLocation(java.io.Reader body)
+            throws java.io.IOException {
         double lat = Double.NaN, lon = Double.NaN;
-        try {
-            final java.io.InputStream input = new java.net.URL(
-                    "http://api.open-notify.org/iss-now.json").openStream();
-            final String returnJson = FileSystemUtils.copyStreamToString(input,
-                    true, FileSystemUtils.UTF8_CHARSET);
-
-            Log.d(TAG, "return json: " + returnJson);
-
-            android.util.JsonReader jr = new android.util.JsonReader(
-                    new java.io.StringReader(returnJson));
-            jr.beginObject();
-            while (jr.hasNext()) {
-                String name = jr.nextName();
-                switch (name) {
-                    case "iss_position":
-                        jr.beginObject();
-                        while (jr.hasNext()) {
-                            String n = jr.nextName();
-                            switch (n) {
-                                case "latitude":
-                                    lat = jr.nextDouble();
-                                    break;
-                                case "longitude":
-                                    lon = jr.nextDouble();
-                                    break;
-                                case "message":
-                                    jr.skipValue();
-                                    break;
-                            }
+        android.util.JsonReader jr = new android.util.JsonReader(body);
+        jr.beginObject();
+        while (jr.hasNext()) {
+            String name = jr.nextName();
+            switch (name) {
+                case "iss_position":
+                    jr.beginObject();
+                    while (jr.hasNext()) {
+                        String n = jr.nextName();
+                        switch (n) {
+                            case "latitude":
+                                lat = jr.nextDouble();
+                                break;
+                            case "longitude":
+                                lon = jr.nextDouble();
+                                break;
+                            default:
+                                jr.skipValue();
+                                break;
                         }
-                        jr.endObject();
-                        break;
-                    case "timestamp":
-                        jr.skipValue();
-                        break;
-                    case "message":
-                        jr.skipValue();
-                        break;
-                }
+                    }
+                    jr.endObject();
+                    break;
+                default:
+                    jr.skipValue();
+                    break;
             }
-            jr.endObject();
-        } catch (Exception e) {
-            Log.e(TAG, "error", e);
         }
+        jr.endObject();
+        if (Double.isNaN(lat) || Double.isNaN(lon))
+            return null;
+        return new GeoPoint(lat, lon);
+    }
+
+    private void plotISSLocation(double lat, double lon) {
         if (!Double.isNaN(lat) && !Double.isNaN(lon)) {
             final MapItem mi = getMapView().getMapItem("iss-unique-identifier");
             if (mi != null) {
@@ -3482,35 +3685,16 @@ public class HelloWorldDropDownReceiver extends DropDownReceiver implements
     }
 
     /**
-     * Brute Force calculation
+     * Find a point along a line.   Build a {@link RouteGeometryIndex} once and
+     * keep it when querying the same line repeatedly, e.g. to animate a
+     * marker along a route.
      * @param points a listing of ordered points
      * @param distance the distance into the ordered points in meters
      * @returns the point that falls on the line described by the listing of ordered points with the
      * distance in
      */
     private GeoPoint findArbitraryPointOnLine(@NonNull List<GeoPoint> points, double distance) {
-        for (int i = 1; i < points.size(); ++i) {
-            GeoPoint b = points.get(i);
-            GeoPoint a = points.get(i-1);
-
-            final double dist = GeoCalculations.slantDistanceTo(a, b);
-            distance-=dist;
-            if (distance < 0) {
-                final double azimuth = GeoCalculations.bearingTo(b, a);
-                final double inclination;
-                if (Double.isNaN(b.getAltitude()) || Double.isNaN(a.getAltitude())) {
-                    inclination = 0;
-                } else {
-                    // compute the inclination
-                    final double height = b.getAltitude() - a.getAltitude();
-                    inclination = Math.asin(height / dist);
-
-                }
-                // back track on the route to based on the overage.
-                return GeoCalculations.pointAtDistance(b, azimuth, Math.abs(distance), inclination);
-            }
-        }
-        return points.get(points.size()-1);
+        return new RouteGeometryIndex(points).pointAt(distance);
     }
 
 
@@ -3568,35 +3752,96 @@ public class HelloWorldDropDownReceiver extends DropDownReceiver implements
         }, new AtakBroadcast.DocumentedIntentFilter("com.atakmap.android.ACTIVITY_FINISHED"));
     }
 
+    private static final int IMAGE_CHIP_GRID = 10;
+
+    // replaces a chip every second, as a sensor sending snapshots would
+    private final Runnable imageChipUpdater = new Runnable() {
+        @Override
+        public void run() {
+            if (imageChipLayer == null)
+                return;
+            int index = (int) (Math.random() * IMAGE_CHIP_GRID
+                    * IMAGE_CHIP_GRID);
+            addImageChip(index, Color.HSVToColor(160, new float[] {
+                    (float) (Math.random() * 360), 1f, 1f
+            }));
+            getMapView().postDelayed(this, 1000);
+        }
+    };
+
+    /**
+     * Add or replace the chip at an index of the grid with a solid color
+     */
+    private void addImageChip(int index, int color) {
+        final double size = 0.001d;
+        final double north = imageChipCenter.getLatitude()
+                + (IMAGE_CHIP_GRID / 2d - index / IMAGE_CHIP_GRID) * size;
+        final double west = imageChipCenter.getLongitude()
+                + (index % IMAGE_CHIP_GRID - IMAGE_CHIP_GRID / 2d) * size;
+        // leave a gap between the chips
+        final double south = north - size * 0.9d;
+        final double east = west + size * 0.9d;
+
+        Bitmap bmp = Bitmap.createBitmap(64, 64, Bitmap.Config.ARGB_8888);
+        bmp.eraseColor(color);
+        imageChipLayer.addChip("chip-" + index, bmp,
+                new GeoPoint(north, west), new GeoPoint(north, east),
+                new GeoPoint(south, east), new GeoPoint(south, west));
+    }
+
+    private void removeImageChips() {
+        getMapView().removeCallbacks(imageChipUpdater);
+        if (imageChipLayer != null) {
+            getMapView().removeLayer(RenderStack.MAP_SURFACE_OVERLAYS,
+                    imageChipLayer);
+            imageChipLayer = null;
+        }
+    }
+
     private void exampleCreateMissionPackage() {
         // also known as a data package
-        File f = new File("/sdcard/test.zip");
-        Marker m = getMapView().getSelfMarker();
-        Collection<MapItem> items = getMapView().getRootGroup().deepFindItems(m.getPoint(), 20000, null);
-        MissionPackageManifest mpm = new MissionPackageManifest();
-        for (MapItem item : items) {
-            if (item instanceof Marker || item instanceof Shape) {
-                CotEvent ce = CotEventFactory.createCotEvent(item);
-                if (ce != null && ce.isValid()) {
-                    if (item != getMapView().getSelfMarker())
-                        mpm.addMapItem(item.getUID());
-                }
-            }
+        final File f = new File("/sdcard/test.zip");
+        final Marker m = getMapView().getSelfMarker();
+        Collection<MapItem> found = getMapView().getRootGroup().deepFindItems(m.getPoint(), 20000, null);
+        List<MapItem> items = new ArrayList<>();
+        for (MapItem item : found) {
+            if ((item instanceof Marker || item instanceof Shape) && item != m)
+                items.add(item);
         }
 
-        // sample code to show how to add a file to the data package
-        //mpm.addFile(new File("/sdcard/sample.tif"), null);
-
-        mpm.setName("items-around-me");
-        mpm.setPath(f.getPath());
+        // the CoT of each item is created on a pool and streamed straight
+        // into the zip, items without a valid CoT event are left out
+        if (packageExporter != null)
+            packageExporter.cancel();
+        packageExporter = new MapItemPackageExporter(getMapView(),
+                "items-around-me", f, items,
+                new MapItemPackageExporter.Callback() {
+                    @Override
+                    public void onProgress(int done, int total) {
+                        Log.d(TAG, "data package " + done + "/" + total);
+                    }
 
-        // enable if you would like the data package deleted as soon as it is imported
-        //mpm.getConfiguration().setParameter("onReceiveDelete", "true");
+                    @Override
+                    public void onComplete(File file, int count) {
+                        Toast.makeText(getMapView().getContext(),
+                                "data package of " + count + " items",
+                                Toast.LENGTH_SHORT).show();
+                        importMissionPackage(file);
+                    }
 
-        MissionPackageBuilder mpb = new MissionPackageBuilder(null, mpm, getMapView().getRootGroup());
-        String fName = mpb.build();
+                    @Override
+                    public void onFailed(boolean cancelled) {
+                        if (!cancelled)
+                            Toast.makeText(getMapView().getContext(),
+                                    "data package failed",
+                                    Toast.LENGTH_SHORT).show();
+                    }
+                });
+        packageExporter.start();
+    }
 
-        ImportResolver importer = new ImportMissionV1PackageSort(
+    private void importMissionPackage(final File f) {
+        final ImportResolver importer = new ImportMissionV1PackageSort(
                 getMapView().getContext(), true, true, true);
 
         Thread t = new Thread("import-thread") {
@@ -0,0 +1,177 @@
+
+package com.atakmap.android.helloworld;
+
+import com.atakmap.android.helloworld.samplelayer.ExampleLayer;
+import com.atakmap.android.helloworld.samplelayer.ExampleMultiLayer;
+import com.atakmap.android.maps.MapView;
+import com.atakmap.android.maps.MapView.RenderStack;
+import com.atakmap.android.maps.MetaShape;
+import com.atakmap.map.layer.Layer;
+import com.atakmap.map.layer.MultiLayer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Tracks the plugin layers by type and by MetaShape UID.   The layers are
+ * kept in their own group on a render stack and the registry listens to that
+ * group, so the maps are updated as layers are added and removed rather than
+ * by scanning the map's layers whenever a lookup is made.   Lookups are safe
+ * from any thread and never modify the map.
+ */
+class HelloWorldLayerRegistry implements MultiLayer.OnLayersChangedListener {
+
+    /**
+     * Interface for when a plugin layer is added to or removed from the map
+     */
+    interface OnLayerRegistryChangedListener {
+        void onLayerRegistered(Layer layer, MetaShape shape);
+
+        void onLayerUnregistered(Layer layer, MetaShape shape);
+    }
+
+    private final MapView _mapView;
+    private final RenderStack _stack;
+    private final MultiLayer _group;
+
+    private final Map<String, Layer> _byUid = new HashMap<>();
+    private final Map<String, ExampleLayer> _layers = new HashMap<>();
+    private final Map<String, ExampleMultiLayer> _multiLayers = new HashMap<>();
+
+    // snapshots handed to callers, rebuilt when the layers change
+    private volatile List<ExampleLayer> _layerList = Collections.emptyList();
+    private volatile List<ExampleMultiLayer> _multiLayerList = Collections
+            .emptyList();
+
+    private final ConcurrentLinkedQueue<OnLayerRegistryChangedListener> _listeners = new ConcurrentLinkedQueue<>();
+
+    HelloWorldLayerRegistry(MapView mapView, RenderStack stack, String name) {
+        _mapView = mapView;
+        _stack = stack;
+        _group = new MultiLayer(name);
+        _group.addOnLayersChangedListener(this);
+        _mapView.addLayer(_stack, _group);
+    }
+
+    void dispose() {
+        _group.removeOnLayersChangedListener(this);
+        _mapView.removeLayer(_stack, _group);
+        synchronized (this) {
+            _byUid.clear();
+            _layers.clear();
+            _multiLayers.clear();
+            _layerList = Collections.emptyList();
+            _multiLayerList = Collections.emptyList();
+        }
+    }
+
+    void addLayer(Layer layer) {
+        _group.addLayer(layer);
+    }
+
+    void removeLayer(Layer layer) {
+        _group.removeLayer(layer);
+    }
+
+    void addOnLayerRegistryChangedListener(OnLayerRegistryChangedListener l) {
+        _listeners.add(l);
+    }
+
+    void removeOnLayerRegistryChangedListener(
+            OnLayerRegistryChangedListener l) {
+        _listeners.remove(l);
+    }
+
+    /**
+     * @return the example layers on the map, the list must not be modified
+     */
+    List<ExampleLayer> getLayers() {
+        return _layerList;
+    }
+
+    /**
+     * @return the example multi layers on the map, the list must not be
+     *         modified
+     */
+    List<ExampleMultiLayer> getMultiLayers() {
+        return _multiLayerList;
+    }
+
+    synchronized ExampleLayer findLayer(String uid) {
+        return _layers.get(uid);
+    }
+
+    synchronized ExampleMultiLayer findMultiLayer(String uid) {
+        return _multiLayers.get(uid);
+    }
+
+    /**
+     * @return the plugin layer of any type with the given MetaShape UID
+     */
+    synchronized Layer get(String uid) {
+        return _byUid.get(uid);
+    }
+
+    static MetaShape getMetaShape(Layer l) {
+        if (l instanceof ExampleLayer)
+            return ((ExampleLayer) l).getMetaShape();
+        if (l instanceof ExampleMultiLayer)
+            return ((ExampleMultiLayer) l).getMetaShape();
+        return null;
+    }
+
+    /**************************************************************************/
+
+    @Override
+    public void onLayerAdded(MultiLayer parent, Layer layer) {
+        final MetaShape shape = getMetaShape(layer);
+        if (shape == null)
+            return;
+        synchronized (this) {
+            _byUid.put(shape.getUID(), layer);
+            if (layer instanceof ExampleLayer) {
+                _layers.put(shape.getUID(), (ExampleLayer) layer);
+                _layerList = Collections.unmodifiableList(
+                        new ArrayList<>(_layers.values()));
+            } else {
+                _multiLayers.put(shape.getUID(), (ExampleMultiLayer) layer);
+                _multiLayerList = Collections.unmodifiableList(
+                        new ArrayList<>(_multiLayers.values()));
+            }
+        }
+        for (OnLayerRegistryChangedListener l : _listeners)
+            l.onLayerRegistered(layer, shape);
+    }
+
+    @Override
+    public void onLayerRemoved(MultiLayer parent, Layer layer) {
+        final MetaShape shape = getMetaShape(layer);
+        if (shape == null)
+            return;
+        synchronized (this) {
+            if (_byUid.remove(shape.getUID()) == null)
+                return;
+            if (layer instanceof ExampleLayer) {
+                _layers.remove(shape.getUID());
+                _layerList = Collections.unmodifiableList(
+                        new ArrayList<>(_layers.values()));
+            } else {
+                _multiLayers.remove(shape.getUID());
+                _multiLayerList = Collections.unmodifiableList(
+                        new ArrayList<>(_multiLayers.values()));
+            }
+        }
+        for (OnLayerRegistryChangedListener l : _listeners)
+            l.onLayerUnregistered(layer, shape);
+    }
+
+    @Override
+    public void onLayerPositionChanged(MultiLayer parent, Layer layer,
+            int oldPosition, int newPosition) {
+        // the registry is not ordered, the list model sorts by title
+    }
+}
@@ -3,8 +3,11 @@ package com.atakmap.android.helloworld;
 import android.content.Context;
 import android.content.Intent;
 import com.atakmap.android.dropdown.DropDownMapComponent;
+import com.atakmap.android.helloworld.importer.GazetteerImportResolver;
 import com.atakmap.android.helloworld.plugin.R;
 import com.atakmap.android.helloworld.plugin.PluginTemplateDropDownReceiver;
+import com.atakmap.android.helloworld.speechtotext.MapItemNameIndex;
+import com.atakmap.android.importexport.ImportExportMapComponent;
 import com.atakmap.android.ipc.AtakBroadcast.DocumentedIntentFilter;
 import com.atakmap.android.maps.MapView;
 import com.atakmap.coremap.log.Log;
@@ -15,6 +18,7 @@ public class HelloWorldMapComponent extends DropDownMapComponent {
 
     private Context pluginContext;
     private PluginTemplateDropDownReceiver pluginTemplateReceiver;
+    private GazetteerImportResolver[] gazetteerImporters;
 
     @Override
     public void onCreate(final Context context, Intent intent, final MapView view) {
@@ -33,6 +37,16 @@ public class HelloWorldMapComponent extends DropDownMapComponent {
 
         this.registerDropDownReceiver(this.pluginTemplateReceiver, filter);
         Log.d(TAG, "Registered PluginTemplateDropDownReceiver with action: " + PluginTemplateDropDownReceiver.SHOW_PLUGIN);
+
+        // place name lists for resolving spoken addresses offline
+        gazetteerImporters = new GazetteerImportResolver[] {
+                new GazetteerImportResolver(view,
+                        GazetteerImportResolver.CSV_EXT),
+                new GazetteerImportResolver(view,
+                        GazetteerImportResolver.GEOJSON_EXT)
+        };
+        for (GazetteerImportResolver r : gazetteerImporters)
+            ImportExportMapComponent.getInstance().addImporterClass(r);
     }
 
     @Override
@@ -71,6 +85,13 @@ public class HelloWorldMapComponent extends DropDownMapComponent {
             pluginTemplateReceiver = null;
         }
 
+        if (gazetteerImporters != null) {
+            for (GazetteerImportResolver r : gazetteerImporters)
+                ImportExportMapComponent.getInstance().removeImporterClass(r);
+            gazetteerImporters = null;
+        }
+        MapItemNameIndex.dispose();
+
         super.onDestroyImpl(context, view);
     }
 }
\ No newline at end of file
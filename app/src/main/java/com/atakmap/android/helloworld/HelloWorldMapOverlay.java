@@ -8,6 +8,9 @@ import android.widget.BaseAdapter;
 import android.widget.Button;
 import android.widget.Toast;
 
+import com.atakmap.android.helloworld.index.MetadataIndex;
+import com.atakmap.android.helloworld.index.NGramIndex;
+import com.atakmap.android.helloworld.index.RTree;
 import com.atakmap.android.helloworld.plugin.R;
 import com.atakmap.android.helloworld.samplelayer.ExampleLayer;
 import com.atakmap.android.helloworld.samplelayer.ExampleMultiLayer;
@@ -36,7 +39,7 @@ import com.atakmap.map.layer.Layer;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -55,6 +58,16 @@ public class HelloWorldMapOverlay extends AbstractMapOverlay2 {
     private final HelloWorldDeepMapItemQuery _query;
     private final DefaultMapGroup _group;
 
+    // the plugin layers, tracked as they are added to and removed from the
+    // surface overlay stack
+    private final HelloWorldLayerRegistry _registry;
+
+    // bounds of the plugin layers, keyed by MetaShape UID
+    private final RTree<String> _index = new RTree<>();
+
+    // the plugin layer shapes by uid, type, callsign and title
+    private final MetadataIndex _metadata = new MetadataIndex();
+
     private HelloWorldListModel _listModel;
 
     public HelloWorldMapOverlay(MapView mapView, Context plugin) {
@@ -63,6 +76,31 @@ public class HelloWorldMapOverlay extends AbstractMapOverlay2 {
         _query = new HelloWorldDeepMapItemQuery();
         _group = new DefaultMapGroup("Hello World Map Group");
         _group.setMetaBoolean("addToObjList", false);
+
+        _registry = new HelloWorldLayerRegistry(_mapView,
+                RenderStack.MAP_SURFACE_OVERLAYS, "Hello World Layers");
+        _registry.addOnLayerRegistryChangedListener(_registryChanged);
+    }
+
+    public void dispose() {
+        _registry.removeOnLayerRegistryChangedListener(_registryChanged);
+        _registry.dispose();
+        synchronized (_index) {
+            _index.clear();
+            _metadata.clear();
+        }
+    }
+
+    /**
+     * Add a plugin layer to the map.   Layers added this way are indexed for
+     * hit testing and appear in Overlay Manager.
+     */
+    public void addLayer(Layer layer) {
+        _registry.addLayer(layer);
+    }
+
+    public void removeLayer(Layer layer) {
+        _registry.removeLayer(layer);
     }
 
     @Override
@@ -95,53 +133,68 @@ public class HelloWorldMapOverlay extends AbstractMapOverlay2 {
     }
 
     private List<ExampleLayer> getLayers() {
-        List<ExampleLayer> ret = new ArrayList<>();
-        List<Layer> layers = _mapView.getLayers(
-                RenderStack.MAP_SURFACE_OVERLAYS);
-        for (Layer l : layers) {
-            if (l instanceof ExampleLayer) {
-                ExampleLayer el = (ExampleLayer) l;
-                MetaShape shape = el.getMetaShape();
-                if (shape.getGroup() == null)
-                    _group.addItem(shape);
-                ret.add(el);
-            }
-        }
-        return ret;
+        return _registry.getLayers();
     }
 
     public ExampleLayer findLayer(String uid) {
-        for (ExampleLayer l : getLayers()) {
-            if (l.getMetaShape().getUID().equals(uid))
-                return l;
-        }
-        return null;
+        return _registry.findLayer(uid);
     }
 
     private List<ExampleMultiLayer> getMultiLayers() {
-        List<ExampleMultiLayer> ret = new ArrayList<>();
-        List<Layer> layers = _mapView.getLayers(
-                RenderStack.MAP_SURFACE_OVERLAYS);
-        for (Layer l : layers) {
-            if (l instanceof ExampleMultiLayer) {
-                ExampleMultiLayer el = (ExampleMultiLayer) l;
-                MetaShape shape = el.getMetaShape();
-                if (shape.getGroup() == null)
-                    _group.addItem(shape);
-                ret.add(el);
-            }
-        }
-        return ret;
+        return _registry.getMultiLayers();
     }
 
     public ExampleMultiLayer findMultiLayer(String uid) {
-        for (ExampleMultiLayer l : getMultiLayers()) {
-            if (l.getMetaShape().getUID().equals(uid))
-                return l;
-        }
+        return _registry.findMultiLayer(uid);
+    }
+
+    private static GeoBounds getBounds(Layer l) {
+        if (l instanceof ExampleLayer)
+            return ((ExampleLayer) l).getBounds();
+        if (l instanceof ExampleMultiLayer)
+            return ((ExampleMultiLayer) l).getBounds();
         return null;
     }
 
+    private final HelloWorldLayerRegistry.OnLayerRegistryChangedListener _registryChanged = new HelloWorldLayerRegistry.OnLayerRegistryChangedListener() {
+        @Override
+        public void onLayerRegistered(Layer layer, MetaShape shape) {
+            if (shape.getGroup() == null)
+                _group.addItem(shape);
+            final GeoBounds b = getBounds(layer);
+            synchronized (_index) {
+                _index.insert(shape.getUID(), b.getWest(), b.getSouth(),
+                        b.getEast(), b.getNorth());
+                _metadata.add(shape);
+            }
+        }
+
+        @Override
+        public void onLayerUnregistered(Layer layer, MetaShape shape) {
+            synchronized (_index) {
+                _index.remove(shape.getUID());
+                _metadata.remove(shape);
+            }
+            _group.removeItem(shape);
+        }
+    };
+
+    /**
+     * Collect the visible plugin layer shapes whose bounds intersect the box.
+     */
+    private void queryIndex(double west, double south, double east,
+            double north, Collection<MapItem> out) {
+        final List<String> uids = new ArrayList<>();
+        synchronized (_index) {
+            _index.search(west, south, east, north, uids);
+            for (String uid : uids) {
+                final Layer l = _registry.get(uid);
+                if (l != null && l.isVisible())
+                    out.add(HelloWorldLayerRegistry.getMetaShape(l));
+            }
+        }
+    }
+
     public class HelloWorldListModel extends AbstractHierarchyListItem2
             implements Search, Visibility2, View.OnClickListener {
 
@@ -149,6 +202,11 @@ public class HelloWorldMapOverlay extends AbstractMapOverlay2 {
 
         private View _header, _footer;
 
+        // list items are kept across refreshes and only created for new
+        // layers, the title index follows the filtered children
+        private Map<Layer, LayerHierarchyListItem> _items = new HashMap<>();
+        private final NGramIndex<HierarchyListItem> _titles = new NGramIndex<>();
+
         public HelloWorldListModel() {
             this.asyncRefresh = true;
         }
@@ -207,20 +265,31 @@ public class HelloWorldMapOverlay extends AbstractMapOverlay2 {
 
         @Override
         public void refreshImpl() {
+            final Map<Layer, LayerHierarchyListItem> previous = _items;
+            final Map<Layer, LayerHierarchyListItem> items = new HashMap<>();
             List<HierarchyListItem> filtered = new ArrayList<>();
             List<ExampleLayer> layers = getLayers();
             for (ExampleLayer l : layers) {
-                LayerHierarchyListItem item = new LayerHierarchyListItem(l);
-                if (this.filter.accept(item))
-                    filtered.add(item);
+                LayerHierarchyListItem item = previous.remove(l);
+                if (item == null)
+                    item = new LayerHierarchyListItem(l);
+                items.put(l, item);
+                accept(item, filtered);
             }
             List<ExampleMultiLayer> multilayers = getMultiLayers();
             for (ExampleMultiLayer ml : multilayers) {
-                LayerHierarchyListItem item = new LayerHierarchyListItem(ml);
-                if (this.filter.accept(item))
-                    filtered.add(item);
+                LayerHierarchyListItem item = previous.remove(ml);
+                if (item == null)
+                    item = new LayerHierarchyListItem(ml);
+                items.put(ml, item);
+                accept(item, filtered);
             }
 
+            // anything left over belongs to a layer that has been removed
+            for (LayerHierarchyListItem stale : previous.values())
+                _titles.remove(stale);
+            _items = items;
+
             // Sort
             sortItems(filtered);
 
@@ -228,9 +297,27 @@ public class HelloWorldMapOverlay extends AbstractMapOverlay2 {
             updateChildren(filtered);
         }
 
+        private void accept(LayerHierarchyListItem item,
+                List<HierarchyListItem> filtered) {
+            if (this.filter.accept(item)) {
+                filtered.add(item);
+                // only re-index a title that has changed since last refresh
+                final String title = item.getTitle();
+                if (!title.equals(item._indexedTitle)) {
+                    _titles.put(item, title);
+                    item._indexedTitle = title;
+                }
+            } else if (item._indexedTitle != null) {
+                _titles.remove(item);
+                item._indexedTitle = null;
+            }
+        }
+
         @Override
         public void dispose() {
             disposeChildren();
+            _titles.clear();
+            _items.clear();
         }
 
         @Override
@@ -254,14 +341,7 @@ public class HelloWorldMapOverlay extends AbstractMapOverlay2 {
 
         @Override
         public Set<HierarchyListItem> find(String searchTerms) {
-            searchTerms = searchTerms.toLowerCase();
-            Set<HierarchyListItem> results = new HashSet<>();
-            List<HierarchyListItem> items = getChildren();
-            for (HierarchyListItem item : items) {
-                if (item.getTitle().toLowerCase().contains(searchTerms))
-                    results.add(item);
-            }
-            return results;
+            return _titles.find(searchTerms);
         }
 
         @Override
@@ -279,6 +359,9 @@ public class HelloWorldMapOverlay extends AbstractMapOverlay2 {
         private final ExampleLayer _layer;
         private final ExampleMultiLayer _multilayer;
 
+        // the title the item is indexed under for search, null if it is not
+        private String _indexedTitle;
+
         LayerHierarchyListItem(ExampleLayer layer) {
             _layer = layer;
             _multilayer = null;
@@ -406,42 +489,101 @@ public class HelloWorldMapOverlay extends AbstractMapOverlay2 {
         }
     }
 
+    /**
+     * Approximate distance in meters from a point to a box in degrees, the
+     * longitude span is scaled at the query latitude.   Adequate for ranking
+     * and radius checks at the scale of the plugin layers.
+     */
+    private static final RTree.Metric METERS = new RTree.Metric() {
+        @Override
+        public double distance(double x, double y, double minX, double minY,
+                double maxX, double maxY) {
+            final double dx = (x - Math.max(minX, Math.min(x, maxX)))
+                    * Math.cos(Math.toRadians(y)) * 111320d;
+            final double dy = (y - Math.max(minY, Math.min(y, maxY)))
+                    * 110540d;
+            return Math.sqrt(dx * dx + dy * dy);
+        }
+    };
+
     private class HelloWorldDeepMapItemQuery implements DeepMapItemQuery {
 
         @Override
         public MapItem deepFindItem(Map<String, String> metadata) {
+            synchronized (_index) {
+                for (MapItem item : _metadata.candidates(metadata)) {
+                    if (MetadataIndex.matches(item, metadata))
+                        return item;
+                }
+            }
             return null;
         }
 
         @Override
         public List<MapItem> deepFindItems(Map<String, String> metadata) {
-            return null;
+            List<MapItem> ret = new ArrayList<>();
+            synchronized (_index) {
+                for (MapItem item : _metadata.candidates(metadata)) {
+                    if (MetadataIndex.matches(item, metadata))
+                        ret.add(item);
+                }
+            }
+            return ret;
         }
 
         @Override
         public MapItem deepFindClosestItem(GeoPoint location, double threshold,
-                Map<String, String> metadata) {
-            return null;
+                final Map<String, String> metadata) {
+            final MapItem[] ret = new MapItem[1];
+            synchronized (_index) {
+                _index.nearest(location.getLongitude(),
+                        location.getLatitude(),
+                        threshold > 0d ? threshold : Double.MAX_VALUE, METERS,
+                        new RTree.NearestVisitor<String>() {
+                            @Override
+                            public boolean visit(String uid, double d) {
+                                final MapItem item = HelloWorldLayerRegistry
+                                        .getMetaShape(_registry.get(uid));
+                                if (item == null
+                                        || !MetadataIndex.matches(item,
+                                                metadata))
+                                    return true;
+                                ret[0] = item;
+                                return false;
+                            }
+                        });
+            }
+            return ret[0];
         }
 
         @Override
         public Collection<MapItem> deepFindItems(GeoPoint location,
-                double radius, Map<String, String> metadata) {
-            return null;
+                double radius, final Map<String, String> metadata) {
+            final List<MapItem> ret = new ArrayList<>();
+            synchronized (_index) {
+                _index.nearest(location.getLongitude(),
+                        location.getLatitude(), radius, METERS,
+                        new RTree.NearestVisitor<String>() {
+                            @Override
+                            public boolean visit(String uid, double d) {
+                                final MapItem item = HelloWorldLayerRegistry
+                                        .getMetaShape(_registry.get(uid));
+                                if (item != null && MetadataIndex
+                                        .matches(item, metadata))
+                                    ret.add(item);
+                                return true;
+                            }
+                        });
+            }
+            return ret;
         }
 
         @Override
         public MapItem deepHitTest(int xpos, int ypos, GeoPoint point,
                 MapView view) {
-            for (ExampleLayer l : getLayers()) {
-                if (l.isVisible() && l.getBounds().contains(point))
-                    return l.getMetaShape();
-            }
-            for (ExampleMultiLayer l : getMultiLayers()) {
-                if (l.isVisible() && l.getBounds().contains(point))
-                    return l.getMetaShape();
-            }
-            return null;
+            SortedSet<MapItem> hits = deepHitTestItems(xpos, ypos, point,
+                    view);
+            return hits.isEmpty() ? null : hits.first();
         }
 
         @Override
@@ -449,14 +591,8 @@ public class HelloWorldMapOverlay extends AbstractMapOverlay2 {
                 GeoPoint point, MapView view) {
             SortedSet<MapItem> ret = new TreeSet<>(
                     MapItem.ZORDER_HITTEST_COMPARATOR);
-            for (ExampleLayer l : getLayers()) {
-                if (l.isVisible() && l.getBounds().contains(point))
-                    ret.add(l.getMetaShape());
-            }
-            for (ExampleMultiLayer l : getMultiLayers()) {
-                if (l.isVisible() && l.getBounds().contains(point))
-                    ret.add(l.getMetaShape());
-            }
+            queryIndex(point.getLongitude(), point.getLatitude(),
+                    point.getLongitude(), point.getLatitude(), ret);
             return ret;
         }
 
@@ -465,14 +601,8 @@ public class HelloWorldMapOverlay extends AbstractMapOverlay2 {
                 Map<String, String> metadata) {
             SortedSet<MapItem> ret = new TreeSet<>(
                     MapItem.ZORDER_HITTEST_COMPARATOR);
-            for (ExampleLayer l : getLayers()) {
-                if (l.isVisible() && l.getBounds().intersects(bounds))
-                    ret.add(l.getMetaShape());
-            }
-            for (ExampleMultiLayer l : getMultiLayers()) {
-                if (l.isVisible() && l.getBounds().intersects(bounds))
-                    ret.add(l.getMetaShape());
-            }
+            queryIndex(bounds.getWest(), bounds.getSouth(), bounds.getEast(),
+                    bounds.getNorth(), ret);
             return ret;
         }
     }
@@ -0,0 +1,230 @@
+package com.atakmap.android.helloworld.datapackage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes items into a version 2 data package (mission package) zip.
+ *
+ * The items are serialized on a small pool while the calling thread writes
+ * the finished entries straight into the zip in the order of the items, so
+ * nothing is staged on disk.   Only a bounded number of items are serialized
+ * ahead of the writer, so memory does not grow with the size of the package.
+ * Each item is stored as "uid/uid.cot" and the manifest is written last,
+ * listing the items that serialized.
+ *
+ * @param <T> the item type
+ */
+public class DataPackageWriter<T> {
+
+    /**
+     * Turns an item into the content of its entry
+     */
+    public interface Serializer<T> {
+        String getUid(T item);
+
+        /**
+         * Called on a pool thread.
+         *
+         * @return the entry content, null to leave the item out
+         */
+        byte[] serialize(T item) throws Exception;
+    }
+
+    public interface ProgressListener {
+        /**
+         * Called on the writing thread as each item is done.
+         *
+         * @param done the items done, written or left out
+         * @param total the number of items
+         */
+        void onProgress(int done, int total);
+    }
+
+    public static final String MANIFEST_ENTRY = "MANIFEST/manifest.xml";
+
+    private final String _name;
+    private final List<T> _items;
+    private final Serializer<T> _serializer;
+    private final int _threads;
+
+    private ProgressListener _listener;
+    private volatile boolean _cancelled;
+
+    /**
+     * @param name the package name shown on import
+     * @param items the items to write
+     * @param threads the number of threads to serialize on
+     */
+    public DataPackageWriter(String name, List<T> items,
+            Serializer<T> serializer, int threads) {
+        _name = name;
+        _items = new ArrayList<>(items);
+        _serializer = serializer;
+        _threads = Math.max(1, threads);
+    }
+
+    public void setProgressListener(ProgressListener listener) {
+        _listener = listener;
+    }
+
+    /**
+     * Stop a write in progress, it throws a CancellationException.
+     */
+    public void cancel() {
+        _cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return _cancelled;
+    }
+
+    /**
+     * Write the package.
+     *
+     * @param out the stream to write the zip to, not closed
+     * @return the number of items written
+     * @throws IOException if writing fails
+     * @throws CancellationException if {@link #cancel()} was called
+     */
+    public int write(OutputStream out) throws IOException {
+        final ExecutorService pool = createPool();
+        final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+        final List<String> written = new ArrayList<>();
+        final Set<String> names = new HashSet<>();
+        final int total = _items.size();
+        final int ahead = _threads * 4;
+        int next = 0;
+        try {
+            final ZipOutputStream zip = new ZipOutputStream(out);
+            for (int done = 0; done < total; ++done) {
+                while (next < total && pending.size() < ahead)
+                    pending.add(pool.submit(serialize(_items.get(next++))));
+
+                final byte[] content = take(pending.removeFirst());
+                final String uid = (content == null) ? null
+                        : _serializer.getUid(_items.get(done));
+                // a zip can not hold two entries of one name
+                if (uid != null && names.add(entryName(uid))) {
+                    zip.putNextEntry(new ZipEntry(entryName(uid)));
+                    zip.write(content);
+                    zip.closeEntry();
+                    written.add(uid);
+                }
+                if (_listener != null)
+                    _listener.onProgress(done + 1, total);
+            }
+            checkCancelled();
+            zip.putNextEntry(new ZipEntry(MANIFEST_ENTRY));
+            zip.write(manifest(written).getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+            zip.finish();
+            return written.size();
+        } finally {
+            for (Future<byte[]> f : pending)
+                f.cancel(true);
+            pool.shutdownNow();
+        }
+    }
+
+    private ExecutorService createPool() {
+        final AtomicInteger count = new AtomicInteger();
+        return new ThreadPoolExecutor(_threads, _threads, 0L,
+                TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r,
+                                "package-writer-" + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+    }
+
+    private Callable<byte[]> serialize(final T item) {
+        return new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                if (_cancelled)
+                    return null;
+                return _serializer.serialize(item);
+            }
+        };
+    }
+
+    private byte[] take(Future<byte[]> f) {
+        checkCancelled();
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("interrupted");
+        } catch (ExecutionException e) {
+            // an item that can not be serialized is left out
+            return null;
+        } finally {
+            checkCancelled();
+        }
+    }
+
+    private void checkCancelled() {
+        if (_cancelled)
+            throw new CancellationException("data package cancelled");
+    }
+
+    static String entryName(String uid) {
+        final String safe = uid.replaceAll("[^A-Za-z0-9._-]", "_");
+        return safe + "/" + safe + ".cot";
+    }
+
+    private String manifest(List<String> uids) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("<MissionPackageManifest version=\"2\">\n");
+        sb.append("  <Configuration>\n");
+        parameter(sb, "    ", "uid", UUID.randomUUID().toString());
+        parameter(sb, "    ", "name", _name);
+        sb.append("  </Configuration>\n");
+        sb.append("  <Contents>\n");
+        for (String uid : uids) {
+            sb.append("    <Content ignore=\"false\" zipEntry=\"")
+                    .append(escape(entryName(uid))).append("\">\n");
+            parameter(sb, "      ", "uid", uid);
+            sb.append("    </Content>\n");
+        }
+        sb.append("  </Contents>\n");
+        sb.append("</MissionPackageManifest>\n");
+        return sb.toString();
+    }
+
+    private static void parameter(StringBuilder sb, String indent,
+            String name, String value) {
+        sb.append(indent).append("<Parameter name=\"").append(name)
+                .append("\" value=\"").append(escape(value)).append("\"/>\n");
+    }
+
+    private static String escape(String s) {
+        return s.replace("&", "&amp;").replace("<", "&lt;")
+                .replace(">", "&gt;").replace("\"", "&quot;");
+    }
+}
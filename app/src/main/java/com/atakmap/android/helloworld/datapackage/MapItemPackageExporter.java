@@ -0,0 +1,158 @@
+package com.atakmap.android.helloworld.datapackage;
+
+import com.atakmap.android.importexport.CotEventFactory;
+import com.atakmap.android.maps.MapItem;
+import com.atakmap.android.maps.MapView;
+import com.atakmap.coremap.cot.event.CotEvent;
+import com.atakmap.coremap.io.IOProvider;
+import com.atakmap.coremap.io.IOProviderFactory;
+import com.atakmap.coremap.log.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Exports map items as a data package off the UI thread.
+ *
+ * The package is written to a temporary file of its own beside the
+ * destination and renamed once complete, so a cancelled or failed export
+ * never leaves a partial package behind, nor touches the file of an export
+ * started after it.   The callback is run on the UI thread.
+ */
+public class MapItemPackageExporter {
+
+    private static final String TAG = "MapItemPackageExporter";
+
+    public interface Callback {
+        void onProgress(int done, int total);
+
+        /**
+         * @param file the data package
+         * @param count the number of items in it
+         */
+        void onComplete(File file, int count);
+
+        /**
+         * @param cancelled true if the export was cancelled
+         */
+        void onFailed(boolean cancelled);
+    }
+
+    private final MapView _mapView;
+    private final File _file;
+    private final Callback _callback;
+    private final DataPackageWriter<MapItem> _writer;
+
+    private int _lastProgress = -1;
+
+    /**
+     * @param name the package name shown on import
+     * @param file the data package to write
+     * @param items the items to export, ones without a valid CoT event are
+     *            left out
+     */
+    public MapItemPackageExporter(MapView mapView, String name, File file,
+            Collection<MapItem> items, Callback callback) {
+        _mapView = mapView;
+        _file = file;
+        _callback = callback;
+        _writer = new DataPackageWriter<>(name, new ArrayList<>(items),
+                new DataPackageWriter.Serializer<MapItem>() {
+                    @Override
+                    public String getUid(MapItem item) {
+                        return item.getUID();
+                    }
+
+                    @Override
+                    public byte[] serialize(MapItem item) {
+                        final CotEvent ce = CotEventFactory
+                                .createCotEvent(item);
+                        if (ce == null || !ce.isValid())
+                            return null;
+                        return ce.toString().getBytes(StandardCharsets.UTF_8);
+                    }
+                }, Runtime.getRuntime().availableProcessors());
+        _writer.setProgressListener(new DataPackageWriter.ProgressListener() {
+            @Override
+            public void onProgress(final int done, final int total) {
+                // post whole percents only, not one runnable per item
+                final int percent = (int) (100L * done / total);
+                if (percent == _lastProgress)
+                    return;
+                _lastProgress = percent;
+                _mapView.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        _callback.onProgress(done, total);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Start the export on its own thread.
+     */
+    public void start() {
+        Thread t = new Thread("package-export") {
+            @Override
+            public void run() {
+                export();
+            }
+        };
+        t.start();
+    }
+
+    public void cancel() {
+        _writer.cancel();
+    }
+
+    private void export() {
+        boolean cancelled = false;
+        int count = -1;
+        File tmp = null;
+        try {
+            tmp = IOProviderFactory.createTempFile(_file.getName(), ".tmp",
+                    _file.getParentFile());
+            // the deflater writes in small pieces, do not let each one reach
+            // the file
+            try (OutputStream os = new BufferedOutputStream(
+                    IOProviderFactory.getOutputStream(tmp), 64 * 1024)) {
+                count = _writer.write(os);
+            }
+        } catch (CancellationException e) {
+            cancelled = true;
+        } catch (IOException e) {
+            Log.e(TAG, "error writing " + _file, e);
+        }
+
+        if (count >= 0 && !IOProviderFactory.renameTo(tmp, _file)) {
+            if (!IOProviderFactory.delete(_file, IOProvider.SECURE_DELETE)
+                    || !IOProviderFactory.renameTo(tmp, _file)) {
+                Log.e(TAG, "could not move data package to " + _file);
+                count = -1;
+            }
+        }
+        if (count < 0 && tmp != null && IOProviderFactory.exists(tmp)
+                && !IOProviderFactory.delete(tmp, IOProvider.SECURE_DELETE))
+            Log.e(TAG, "could not delete " + tmp);
+
+        final boolean c = cancelled;
+        final int n = count;
+        _mapView.post(new Runnable() {
+            @Override
+            public void run() {
+                if (n < 0)
+                    _callback.onFailed(c);
+                else
+                    _callback.onComplete(_file, n);
+            }
+        });
+    }
+}
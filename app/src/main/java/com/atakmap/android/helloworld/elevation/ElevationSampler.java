@@ -0,0 +1,326 @@
+package com.atakmap.android.helloworld.elevation;
+
+import com.atakmap.android.helloworld.routes.RouteGeometryIndex;
+import com.atakmap.coremap.maps.coords.GeoPoint;
+import com.atakmap.coremap.maps.coords.GeoPointMetaData;
+import com.atakmap.map.elevation.ElevationManager;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Looks up the elevation of many points at once, for profiles along routes
+ * and across grids.
+ *
+ * The points are sorted by the one degree cell they fall in, which is the
+ * tile size of DTED and most other elevation data, so the points of one tile
+ * are looked up together.   Ranges of the sorted points are then split
+ * across a work stealing pool.   Values are kept in a bounded least recently
+ * used cache by model and by the coordinate rounded to about a meter, well
+ * below the post spacing of any elevation data, so a profile drawn again or
+ * a grid overlapping the last one mostly comes from memory.
+ *
+ * Results are returned in arrays parallel to the input, NaN where there is
+ * no elevation data.
+ */
+public class ElevationSampler {
+
+    /**
+     * Where the elevations come from
+     */
+    public interface Source {
+        /**
+         * @param model the elevation model, ElevationData.MODEL_TERRAIN or
+         *            ElevationData.MODEL_SURFACE
+         * @return the elevation in meters HAE, NaN if there is none
+         */
+        double getElevation(double lat, double lng, int model);
+    }
+
+    private static final int DEFAULT_CACHE_SIZE = 64 * 1024;
+
+    // the degrees a cached coordinate is rounded to
+    private static final double QUANTUM = 1e-5d;
+
+    // below this many points a batch is not worth splitting up
+    private static final int LEAF_SIZE = 64;
+
+    private static ElevationSampler _instance;
+    private static ForkJoinPool _pool;
+
+    private final Source _source;
+    private final Cache _cache;
+
+    public ElevationSampler(Source source) {
+        this(source, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param cacheSize the number of elevations to keep
+     */
+    public ElevationSampler(Source source, int cacheSize) {
+        _source = source;
+        _cache = new Cache(cacheSize);
+    }
+
+    /**
+     * @return the sampler over the ATAK elevation manager
+     */
+    public static synchronized ElevationSampler getInstance() {
+        if (_instance == null)
+            _instance = new ElevationSampler(new ManagerSource());
+        return _instance;
+    }
+
+    /**
+     * @return the pool the batches are split across, shared with other
+     *         elevation work such as viewsheds
+     */
+    static synchronized ForkJoinPool getPool() {
+        if (_pool == null) {
+            _pool = new ForkJoinPool(Math.max(1,
+                    Runtime.getRuntime().availableProcessors() - 1));
+        }
+        return _pool;
+    }
+
+    /**
+     * Forget the cached elevations, e.g. after elevation data is imported.
+     */
+    public void clear() {
+        _cache.clear();
+    }
+
+    /**
+     * @param lats the latitude of each point
+     * @param lngs the longitude of each point
+     * @param model ElevationData.MODEL_TERRAIN or ElevationData.MODEL_SURFACE
+     * @return the elevation of each point in meters HAE, NaN where unknown
+     */
+    public double[] sample(double[] lats, double[] lngs, int model) {
+        if (lats.length != lngs.length)
+            throw new IllegalArgumentException("coordinate arrays differ");
+        final int n = lats.length;
+        final double[] out = new double[n];
+
+        // tile in the high word, point in the low, so a primitive sort
+        // groups the points by tile
+        final long[] order = new long[n];
+        for (int i = 0; i < n; ++i)
+            order[i] = ((long) tile(lats[i], lngs[i]) << 32) | i;
+        Arrays.sort(order);
+
+        final Lookup task = new Lookup(lats, lngs, model, order, out, 0, n);
+        if (n <= LEAF_SIZE)
+            task.compute();
+        else
+            getPool().invoke(task);
+        return out;
+    }
+
+    /**
+     * @param points the points, their altitude is ignored
+     * @param model ElevationData.MODEL_TERRAIN or ElevationData.MODEL_SURFACE
+     * @return the elevation of each point in meters HAE, NaN where unknown
+     */
+    public double[] sample(GeoPoint[] points, int model) {
+        final double[] lats = new double[points.length];
+        final double[] lngs = new double[points.length];
+        for (int i = 0; i < points.length; ++i) {
+            lats[i] = points[i].getLatitude();
+            lngs[i] = points[i].getLongitude();
+        }
+        return sample(lats, lngs, model);
+    }
+
+    /**
+     * Sample the elevation along a route, every step from the start and at
+     * the end.
+     *
+     * @param step the distance between samples in meters
+     * @param model ElevationData.MODEL_TERRAIN or ElevationData.MODEL_SURFACE
+     * @return the elevations in meters HAE, the last at the end of the route
+     */
+    public double[] profile(RouteGeometryIndex route, double step,
+            int model) {
+        if (!(step > 0))
+            throw new IllegalArgumentException("step must be positive");
+        final double length = route.getLength();
+        final int count = (int) Math.ceil(length / step) + 1;
+        final double[] distances = new double[count];
+        for (int i = 0; i < count - 1; ++i)
+            distances[i] = i * step;
+        distances[count - 1] = length;
+        return sample(route.pointsAt(distances), model);
+    }
+
+    /**
+     * Sample a grid of evenly spaced points, the corners included.
+     *
+     * @param rows the number of rows, north to south, at least 2
+     * @param cols the number of columns, west to east, at least 2
+     * @param model ElevationData.MODEL_TERRAIN or ElevationData.MODEL_SURFACE
+     * @return the elevations in meters HAE, row by row
+     */
+    public double[] grid(double north, double west, double south,
+            double east, int rows, int cols, int model) {
+        if (rows < 2 || cols < 2)
+            throw new IllegalArgumentException("grid must be at least 2x2");
+        final double[] lats = new double[rows * cols];
+        final double[] lngs = new double[rows * cols];
+        final double dLat = (south - north) / (rows - 1);
+        final double dLng = (east - west) / (cols - 1);
+        for (int r = 0; r < rows; ++r) {
+            for (int c = 0; c < cols; ++c) {
+                lats[r * cols + c] = north + r * dLat;
+                lngs[r * cols + c] = west + c * dLng;
+            }
+        }
+        return sample(lats, lngs, model);
+    }
+
+    private double lookup(double lat, double lng, int model) {
+        if (!(Math.abs(lat) <= 90d) || !(Math.abs(lng) <= 180d))
+            return Double.NaN;
+        final long key = key(lat, lng, model);
+        final Double cached = _cache.get(key);
+        if (cached != null)
+            return cached;
+        final double elevation = _source.getElevation(lat, lng, model);
+        _cache.put(key, elevation);
+        return elevation;
+    }
+
+    /**
+     * @return the one degree cell of the point
+     */
+    private static int tile(double lat, double lng) {
+        if (Double.isNaN(lat) || Double.isNaN(lng))
+            return 0;
+        final int row = (int) Math.floor(Math.max(-90d, Math.min(89d, lat)))
+                + 90;
+        final int col = (int) Math.floor(
+                Math.max(-180d, Math.min(179d, lng))) + 180;
+        return row * 360 + col;
+    }
+
+    /**
+     * @return the model and the rounded coordinate packed in a long
+     */
+    private static long key(double lat, double lng, int model) {
+        final long y = Math.round((lat + 90d) / QUANTUM);
+        final long x = Math.round((lng + 180d) / QUANTUM);
+        return ((long) model << 52) | (y << 26) | x;
+    }
+
+    /**************************************************************************/
+
+    private class Lookup extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] lats, lngs;
+        private final int model;
+        private final long[] order;
+        private final double[] out;
+        private final int from, to;
+
+        Lookup(double[] lats, double[] lngs, int model, long[] order,
+                double[] out, int from, int to) {
+            this.lats = lats;
+            this.lngs = lngs;
+            this.model = model;
+            this.order = order;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_SIZE) {
+                for (int k = from; k < to; ++k) {
+                    final int i = (int) order[k];
+                    out[i] = lookup(lats[i], lngs[i], model);
+                }
+                return;
+            }
+            final int mid = (from + to) >>> 1;
+            invokeAll(new Lookup(lats, lngs, model, order, out, from, mid),
+                    new Lookup(lats, lngs, model, order, out, mid, to));
+        }
+    }
+
+    /**
+     * Least recently used cache split into stripes, so the workers do not
+     * all wait on one lock.
+     */
+    private static final class Cache {
+        private static final int STRIPES = 16;
+
+        private final Map<Long, Double>[] _stripes;
+
+        @SuppressWarnings({
+                "unchecked", "rawtypes"
+        })
+        Cache(int size) {
+            final int stripeSize = Math.max(1, size / STRIPES);
+            _stripes = new Map[STRIPES];
+            for (int i = 0; i < STRIPES; ++i) {
+                _stripes[i] = new LinkedHashMap<Long, Double>(16, 0.75f,
+                        true) {
+                    @Override
+                    protected boolean removeEldestEntry(
+                            Map.Entry<Long, Double> eldest) {
+                        return size() > stripeSize;
+                    }
+                };
+            }
+        }
+
+        private Map<Long, Double> stripe(long key) {
+            final long h = key * 0x9E3779B97F4A7C15L;
+            return _stripes[(int) (h >>> 60)];
+        }
+
+        /**
+         * @return the value, null if not cached
+         */
+        Double get(long key) {
+            final Map<Long, Double> m = stripe(key);
+            synchronized (m) {
+                return m.get(key);
+            }
+        }
+
+        void put(long key, double value) {
+            final Map<Long, Double> m = stripe(key);
+            synchronized (m) {
+                m.put(key, value);
+            }
+        }
+
+        void clear() {
+            for (Map<Long, Double> m : _stripes) {
+                synchronized (m) {
+                    m.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Elevations from the ATAK elevation manager
+     */
+    private static final class ManagerSource implements Source {
+        @Override
+        public double getElevation(double lat, double lng, int model) {
+            final ElevationManager.QueryParameters filter = new ElevationManager.QueryParameters();
+            filter.elevationModel = model;
+            return ElevationManager.getElevation(lat, lng, filter,
+                    new GeoPointMetaData());
+        }
+    }
+}
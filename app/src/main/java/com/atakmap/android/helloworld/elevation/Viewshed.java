@@ -0,0 +1,264 @@
+package com.atakmap.android.helloworld.elevation;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes the area visible from an observer over the elevation data.
+ *
+ * The elevations of a square grid around the observer are fetched in one
+ * batch from an {@link ElevationSampler}.   Rays are then cast from the
+ * observer to every cell on the edge of the grid, each tracking the highest
+ * angle to the terrain seen so far: a cell is visible when the angle to it is
+ * at or above that horizon.   The curvature of the earth, less refraction, is
+ * taken off the elevations.   The rays are split into sectors which are swept
+ * in parallel on the sampler's pool.
+ */
+public class Viewshed {
+
+    public static final byte OUTSIDE = 0;
+    public static final byte HIDDEN = 1;
+    public static final byte VISIBLE = 2;
+
+    private static final double EARTH_RADIUS = 6371000d;
+
+    // refraction coefficient of the standard atmosphere
+    private static final double REFRACTION = 0.13d;
+
+    private static final double METERS_PER_DEGREE = 111320d;
+
+    // rays swept by one task
+    private static final int SECTOR_RAYS = 64;
+
+    private final ElevationSampler _sampler;
+
+    public Viewshed(ElevationSampler sampler) {
+        _sampler = sampler;
+    }
+
+    /**
+     * @param lat the latitude of the observer
+     * @param lng the longitude of the observer
+     * @param observerHeight the height of the observer above the ground in
+     *            meters
+     * @param targetHeight the height above the ground that must be seen, in
+     *            meters
+     * @param radius the distance to compute the viewshed to, in meters
+     * @param cellSize the size of a cell of the result, in meters
+     * @param model ElevationData.MODEL_TERRAIN or ElevationData.MODEL_SURFACE
+     * @return the viewshed, null if there is no elevation at the observer
+     */
+    public Result compute(double lat, double lng, double observerHeight,
+            double targetHeight, double radius, double cellSize, int model) {
+        if (!(radius > 0) || !(cellSize > 0))
+            throw new IllegalArgumentException(
+                    "radius and cell size must be positive");
+        final int cells = (int) Math.ceil(radius / cellSize);
+        final int size = 2 * cells + 1;
+
+        final double dLat = cells * cellSize / METERS_PER_DEGREE;
+        final double dLng = cells * cellSize
+                / (METERS_PER_DEGREE * Math.cos(Math.toRadians(lat)));
+        final Result result = new Result(size, lat + dLat, lng - dLng,
+                lat - dLat, lng + dLng, cellSize);
+
+        final double[] elevations = _sampler.grid(result.north, result.west,
+                result.south, result.east, size, size, model);
+        final double ground = elevations[cells * size + cells];
+        if (Double.isNaN(ground))
+            return null;
+
+        final Sweep sweep = new Sweep(elevations, result, cells,
+                ground + observerHeight, targetHeight, 0, 8 * cells);
+        if (cells * 8 <= SECTOR_RAYS)
+            sweep.compute();
+        else
+            ElevationSampler.getPool().invoke(sweep);
+
+        // anything within the radius not seen by a ray is hidden
+        final double r2 = (radius / cellSize) * (radius / cellSize);
+        final byte[] state = result.state;
+        state[cells * size + cells] = VISIBLE;
+        for (int y = 0; y < size; ++y) {
+            for (int x = 0; x < size; ++x) {
+                final int i = y * size + x;
+                final double dx = x - cells, dy = y - cells;
+                if (dx * dx + dy * dy > r2 || Double.isNaN(elevations[i]))
+                    state[i] = OUTSIDE;
+                else if (state[i] != VISIBLE)
+                    state[i] = HIDDEN;
+                else
+                    ++result.visible;
+            }
+        }
+        return result;
+    }
+
+    /**************************************************************************/
+
+    /**
+     * Casts a range of the rays
+     */
+    private static class Sweep extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] elevations;
+        private final Result result;
+        private final int cells;
+        private final double eye;
+        private final double targetHeight;
+        private final int from, to;
+
+        Sweep(double[] elevations, Result result, int cells, double eye,
+                double targetHeight, int from, int to) {
+            this.elevations = elevations;
+            this.result = result;
+            this.cells = cells;
+            this.eye = eye;
+            this.targetHeight = targetHeight;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SECTOR_RAYS) {
+                // the curvature drop at a distance is d * d * curve
+                final double curve = (1d - REFRACTION) / (2d * EARTH_RADIUS);
+                final int rays = 8 * cells;
+                for (int ray = from; ray < to; ++ray) {
+                    final double a = 2d * Math.PI * ray / rays;
+                    cast(Math.cos(a), Math.sin(a), curve);
+                }
+                return;
+            }
+            final int mid = (from + to) >>> 1;
+            invokeAll(new Sweep(elevations, result, cells, eye,
+                    targetHeight, from, mid),
+                    new Sweep(elevations, result, cells, eye, targetHeight,
+                            mid, to));
+        }
+
+        private void cast(double dx, double dy, double curve) {
+            final int size = result.size;
+            final double cellSize = result.cellSize;
+            final byte[] state = result.state;
+            double horizon = Double.NEGATIVE_INFINITY;
+            // half cell steps so that no cell along the ray is skipped
+            for (int step = 1; step <= 2 * cells; ++step) {
+                final double t = step * 0.5d;
+                final double gx = cells + dx * t;
+                final double gy = cells - dy * t;
+                final double z = interpolate(gx, gy);
+                if (Double.isNaN(z))
+                    continue;
+                final double d = t * cellSize;
+                final double drop = d * d * curve;
+                final double slope = (z - drop - eye) / d;
+                if ((z - drop + targetHeight - eye) / d >= horizon) {
+                    // only ever set visible, so sweeps may share the cells
+                    state[(int) Math.round(gy) * size
+                            + (int) Math.round(gx)] = VISIBLE;
+                }
+                if (slope > horizon)
+                    horizon = slope;
+            }
+        }
+
+        /**
+         * @return the bilinear elevation at a fractional cell
+         */
+        private double interpolate(double gx, double gy) {
+            final int size = result.size;
+            final int x0 = Math.min((int) gx, size - 2);
+            final int y0 = Math.min((int) gy, size - 2);
+            final double fx = gx - x0, fy = gy - y0;
+            final int i = y0 * size + x0;
+            final double a = elevations[i], b = elevations[i + 1];
+            final double c = elevations[i + size], e = elevations[i + size + 1];
+            return (a * (1 - fx) + b * fx) * (1 - fy)
+                    + (c * (1 - fx) + e * fx) * fy;
+        }
+    }
+
+    /**
+     * A square grid of cells around the observer, north to south and west to
+     * east.
+     */
+    public static class Result {
+        private final int size;
+        private final double north, west, south, east;
+        private final double cellSize;
+        private final byte[] state;
+        private int visible;
+
+        Result(int size, double north, double west, double south,
+                double east, double cellSize) {
+            this.size = size;
+            this.north = north;
+            this.west = west;
+            this.south = south;
+            this.east = east;
+            this.cellSize = cellSize;
+            this.state = new byte[size * size];
+        }
+
+        /**
+         * @return the number of cells along each side
+         */
+        public int getSize() {
+            return size;
+        }
+
+        public double getNorth() {
+            return north;
+        }
+
+        public double getWest() {
+            return west;
+        }
+
+        public double getSouth() {
+            return south;
+        }
+
+        public double getEast() {
+            return east;
+        }
+
+        public double getCellSize() {
+            return cellSize;
+        }
+
+        /**
+         * @param x the column, from the west
+         * @param y the row, from the north
+         * @return {@link #VISIBLE}, {@link #HIDDEN} or {@link #OUTSIDE} for
+         *         a cell beyond the radius or without elevation data
+         */
+        public byte getState(int x, int y) {
+            return state[y * size + x];
+        }
+
+        /**
+         * @return the number of visible cells
+         */
+        public int getVisibleCount() {
+            return visible;
+        }
+
+        /**
+         * @return the cells as colors, row by row from the north, as used by
+         *         a heat map layer; cells outside are transparent
+         */
+        public int[] toARGB(int visibleColor, int hiddenColor) {
+            final int[] argb = new int[state.length];
+            for (int i = 0; i < state.length; ++i) {
+                if (state[i] == VISIBLE)
+                    argb[i] = visibleColor;
+                else if (state[i] == HIDDEN)
+                    argb[i] = hiddenColor;
+            }
+            return argb;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.atakmap.android.helloworld.feed;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Random;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Polls an HTTP feed, such as an external position feed, and hands each new
+ * document to a listener.
+ *
+ * All pollers share one scheduler thread which only queues the requests on
+ * the OkHttp dispatcher, so a slow server does not hold up the other feeds.
+ * The ETag and Last-Modified of the last document are sent back so that an
+ * unchanged feed is answered with a 304 and nothing is parsed.   The body is
+ * handed to the parser as a stream rather than read into a string first.
+ * Each poll is moved by a random part of the interval so that feeds started
+ * together do not keep polling together, and after a failure the interval
+ * doubles up to a maximum until a poll succeeds again.
+ *
+ * Listeners are called on an OkHttp dispatcher thread.
+ *
+ * @param <T> the parsed document
+ */
+public class FeedPoller<T> {
+
+    /**
+     * Reads a document from the feed
+     */
+    public interface Parser<T> {
+        /**
+         * @param body the response body, closed by the poller
+         * @return the document, null to not report this response
+         */
+        T parse(Reader body) throws IOException;
+    }
+
+    public interface Listener<T> {
+        /**
+         * Called with each new document
+         */
+        void onFeedUpdate(FeedPoller<T> feed, T document);
+
+        /**
+         * Called when a poll fails, the next poll is backed off
+         */
+        void onFeedError(FeedPoller<T> feed, Exception e);
+    }
+
+    private static final long DEFAULT_MAX_BACKOFF = TimeUnit.MINUTES
+            .toMillis(5);
+    private static final double DEFAULT_JITTER = 0.1d;
+
+    private static ScheduledThreadPoolExecutor _scheduler;
+
+    private final OkHttpClient _client;
+    private final String _url;
+    private final long _interval;
+    private final Parser<T> _parser;
+    private final Listener<T> _listener;
+    private final Random _random = new Random();
+
+    private long _maxBackoff = DEFAULT_MAX_BACKOFF;
+    private double _jitter = DEFAULT_JITTER;
+
+    // incremented on start and stop so callbacks from before are ignored
+    private int _generation;
+    private boolean _running;
+    private ScheduledFuture<?> _next;
+    private Call _call;
+    private String _etag;
+    private String _lastModified;
+    private int _failures;
+    private long _delay;
+
+    /**
+     * @param url the feed
+     * @param interval the time between polls in milliseconds
+     */
+    public FeedPoller(String url, long interval, Parser<T> parser,
+            Listener<T> listener) {
+        this(SharedHttpClient.getInstance(), url, interval, parser, listener);
+    }
+
+    public FeedPoller(OkHttpClient client, String url, long interval,
+            Parser<T> parser, Listener<T> listener) {
+        if (interval <= 0)
+            throw new IllegalArgumentException("interval must be positive");
+        _client = client;
+        _url = url;
+        _interval = interval;
+        _parser = parser;
+        _listener = listener;
+    }
+
+    private static synchronized ScheduledThreadPoolExecutor getScheduler() {
+        if (_scheduler == null) {
+            _scheduler = new ScheduledThreadPoolExecutor(1,
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread t = new Thread(r, "feed-poller");
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+            _scheduler.setRemoveOnCancelPolicy(true);
+        }
+        return _scheduler;
+    }
+
+    public String getUrl() {
+        return _url;
+    }
+
+    /**
+     * @param maxBackoff the longest time between polls after failures, in
+     *            milliseconds
+     */
+    public synchronized void setMaxBackoff(long maxBackoff) {
+        _maxBackoff = maxBackoff;
+    }
+
+    /**
+     * @param jitter the part of the interval, 0 to 1, by which each poll is
+     *            randomly moved
+     */
+    public synchronized void setJitter(double jitter) {
+        _jitter = Math.max(0d, Math.min(1d, jitter));
+    }
+
+    /**
+     * @return the number of polls in a row that have failed
+     */
+    public synchronized int getFailures() {
+        return _failures;
+    }
+
+    /**
+     * @return the delay before the poll last scheduled, in milliseconds
+     */
+    public synchronized long getDelay() {
+        return _delay;
+    }
+
+    public synchronized boolean isRunning() {
+        return _running;
+    }
+
+    /**
+     * Start polling, the first poll is made within a jitter of the interval.
+     */
+    public synchronized void start() {
+        if (_running)
+            return;
+        _running = true;
+        _failures = 0;
+        schedule(++_generation,
+                (long) (_random.nextDouble() * _jitter * _interval));
+    }
+
+    /**
+     * Stop polling and cancel a request in progress.
+     */
+    public synchronized void stop() {
+        if (!_running)
+            return;
+        _running = false;
+        ++_generation;
+        if (_next != null) {
+            _next.cancel(false);
+            _next = null;
+        }
+        if (_call != null) {
+            _call.cancel();
+            _call = null;
+        }
+    }
+
+    private void schedule(final int generation, long delay) {
+        _delay = delay;
+        _next = getScheduler().schedule(new Runnable() {
+            @Override
+            public void run() {
+                poll(generation);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void poll(final int generation) {
+        if (generation != _generation)
+            return;
+        final Request.Builder b = new Request.Builder().url(_url);
+        if (_etag != null)
+            b.header("If-None-Match", _etag);
+        if (_lastModified != null)
+            b.header("If-Modified-Since", _lastModified);
+        _call = _client.newCall(b.build());
+        _call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                finished(generation, null, e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                T document = null;
+                Exception error = null;
+                try {
+                    document = read(generation, response);
+                } catch (IOException | RuntimeException e) {
+                    error = e;
+                } finally {
+                    response.close();
+                }
+                finished(generation, document, error);
+            }
+        });
+    }
+
+    /**
+     * @return the document, null if the feed has not changed
+     */
+    private T read(int generation, Response response) throws IOException {
+        if (response.code() == 304)
+            return null;
+        if (!response.isSuccessful())
+            throw new IOException("HTTP " + response.code() + " from " + _url);
+
+        final ResponseBody body = response.body();
+        final T document = (body == null) ? null
+                : _parser.parse(body.charStream());
+
+        // only trust the validators once the document has been parsed
+        synchronized (this) {
+            if (generation == _generation) {
+                _etag = response.header("ETag");
+                _lastModified = response.header("Last-Modified");
+            }
+        }
+        return document;
+    }
+
+    private void finished(int generation, T document, Exception error) {
+        synchronized (this) {
+            if (generation != _generation)
+                return;
+            _call = null;
+            _failures = (error == null) ? 0 : _failures + 1;
+            schedule(generation, nextDelay());
+        }
+        if (error != null)
+            _listener.onFeedError(this, error);
+        else if (document != null)
+            _listener.onFeedUpdate(this, document);
+    }
+
+    /**
+     * @return the time to the next poll, the interval doubled for each
+     *         failure up to the maximum and moved by up to the jitter
+     */
+    private long nextDelay() {
+        long delay = _interval;
+        if (_failures > 0) {
+            delay = _interval << Math.min(_failures, 20);
+            if (delay <= 0 || delay > _maxBackoff)
+                delay = Math.max(_interval, _maxBackoff);
+        }
+        final double offset = (2d * _random.nextDouble() - 1d) * _jitter;
+        return Math.max(0L, Math.round(delay * (1d + offset)));
+    }
+}
@@ -0,0 +1,30 @@
+package com.atakmap.android.helloworld.feed;
+
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+
+/**
+ * The one OkHttp client of the plugin.   Every connection should come from
+ * this client, or from {@link OkHttpClient#newBuilder()} on it when other
+ * timeouts are needed, so that they share one connection pool and one
+ * dispatcher thread pool.
+ */
+public final class SharedHttpClient {
+
+    private static OkHttpClient _instance;
+
+    private SharedHttpClient() {
+    }
+
+    public static synchronized OkHttpClient getInstance() {
+        if (_instance == null) {
+            _instance = new OkHttpClient.Builder()
+                    .connectTimeout(10, TimeUnit.SECONDS)
+                    .readTimeout(15, TimeUnit.SECONDS)
+                    .writeTimeout(10, TimeUnit.SECONDS)
+                    .build();
+        }
+        return _instance;
+    }
+}
@@ -0,0 +1,266 @@
+package com.atakmap.android.helloworld.gl;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.graphics.Typeface;
+
+import com.atakmap.android.maps.MapTextFormat;
+import com.atakmap.opengl.GLTexture;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Plugin wide cache of laid out labels.   Each distinct (text, font, color,
+ * background) is laid out and rasterized once, background included, into a
+ * shared label atlas, so drawing a label is a single textured quad no
+ * matter how long the text is or how many markers repeat it.   The quads
+ * are drawn by a {@link GLLabelPass}.
+ *
+ * Renderers hold a reference while they use labels, see
+ * {@link #addReference()}; the atlas textures are released with the last
+ * reference, e.g. when the GL context goes away.   A label evicted from the
+ * cache is no longer {@link Label#isValid() valid} and should be looked up
+ * again.   Must only be used on the GL thread.
+ */
+public final class GLLabelCache implements ShelfAtlas.Listener<GLLabelCache.Label> {
+
+    private static final int MAX_LABELS = 512;
+
+    private static final int ATLAS_SIZE = 1024;
+
+    // gap left between labels so filtering does not bleed neighbors in
+    private static final int PADDING = 2;
+
+    // horizontal margin of the background around the text
+    private static final float MARGIN = 4f;
+
+    private static GLLabelCache instance;
+
+    private final Map<Key, Label> labels = new LinkedHashMap<Key, Label>(
+            64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Label> eldest) {
+            if (size() <= MAX_LABELS)
+                return false;
+            evict(eldest.getValue());
+            return true;
+        }
+    };
+
+    private final ShelfAtlas<Label> atlas = new ShelfAtlas<>(ATLAS_SIZE,
+            PADDING, this);
+    private final Map<ShelfAtlas.Page<Label>, GLTexture> textures = new HashMap<>();
+
+    private int references;
+
+    // reused for lookups so a cache hit does not allocate
+    private final Key scratch = new Key();
+
+    private GLLabelCache() {
+    }
+
+    public static GLLabelCache getInstance() {
+        if (instance == null)
+            instance = new GLLabelCache();
+        return instance;
+    }
+
+    /**
+     * A laid out label, drawn as one quad out of the label atlas.
+     */
+    public static final class Label {
+        public final String text;
+        public final float width;
+        public final float height;
+        public final float descent;
+
+        // the quad relative to the baseline origin, background included
+        final float left;
+        final float bottom;
+        final float quadWidth;
+        final float quadHeight;
+
+        // kept so the label can be loaded again when the atlas is repacked
+        final Bitmap bitmap;
+
+        int texId;
+        float u0, v0, u1, v1;
+        boolean valid;
+
+        Label(String text, MapTextFormat format, int color, int background) {
+            this.text = text;
+
+            final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            paint.setTypeface(format.getTypeface());
+            paint.setTextSize(format.getFontSize());
+            final Paint.FontMetrics fm = paint.getFontMetrics();
+            this.width = paint.measureText(text);
+            this.height = fm.descent - fm.ascent;
+            this.descent = fm.descent;
+
+            this.left = -MARGIN;
+            this.bottom = -descent;
+            this.quadWidth = (float) Math.ceil(width + 2 * MARGIN);
+            this.quadHeight = (float) Math.ceil(height);
+
+            this.bitmap = Bitmap.createBitmap((int) quadWidth,
+                    Math.max(1, (int) quadHeight), Bitmap.Config.ARGB_8888);
+            final Canvas canvas = new Canvas(bitmap);
+            if (background != 0) {
+                final Paint bg = new Paint(Paint.ANTI_ALIAS_FLAG);
+                bg.setColor(background);
+                canvas.drawRoundRect(new RectF(0, 0, quadWidth, quadHeight),
+                        MARGIN, MARGIN, bg);
+            }
+            paint.setColor(color);
+            canvas.drawText(text, MARGIN, -fm.ascent, paint);
+        }
+
+        /**
+         * @return false once the label has been dropped from the cache or
+         *         the cache was cleared, it must then be looked up again
+         */
+        public boolean isValid() {
+            return valid;
+        }
+    }
+
+    /**
+     * Look up the label for the given text, font and colors, laying it out
+     * if it has not been seen before.
+     *
+     * @param background the color of the background, 0 for none
+     */
+    public Label get(String text, MapTextFormat format, int color,
+            int background) {
+        scratch.set(text, format.getTypeface(), format.getFontSize(), color,
+                background);
+        Label label = labels.get(scratch);
+        if (label == null) {
+            label = new Label(text, format, color, background);
+            label.valid = true;
+            // a label larger than a page is never placed and not drawn
+            atlas.add(label, label.bitmap.getWidth(),
+                    label.bitmap.getHeight());
+            labels.put(new Key(scratch), label);
+            atlas.releaseEmptyPages();
+        }
+        return label;
+    }
+
+    /**
+     * Note a renderer that uses labels.   Called on the GL thread.
+     */
+    public void addReference() {
+        ++references;
+    }
+
+    /**
+     * Called on the GL thread by a renderer that no longer uses labels, as
+     * it is released.   The cache is cleared with the last reference.
+     */
+    public void removeReference() {
+        if (references > 0 && --references == 0)
+            clear();
+    }
+
+    /**
+     * Drop all cached labels and release the atlas, e.g. when the GL context
+     * has been lost.
+     */
+    public void clear() {
+        for (Label label : labels.values())
+            label.valid = false;
+        labels.clear();
+        atlas.clear();
+    }
+
+    private void evict(Label label) {
+        label.valid = false;
+        atlas.remove(label);
+    }
+
+    /**************************************************************************/
+
+    @Override
+    public void onPageAdded(ShelfAtlas.Page<Label> page) {
+        textures.put(page, new GLTexture(ATLAS_SIZE, ATLAS_SIZE,
+                Bitmap.Config.ARGB_8888));
+    }
+
+    @Override
+    public void onPageRemoved(ShelfAtlas.Page<Label> page) {
+        final GLTexture texture = textures.remove(page);
+        if (texture != null)
+            texture.release();
+    }
+
+    @Override
+    public void onPlaced(Label label, ShelfAtlas.Slot<Label> slot) {
+        final GLTexture texture = textures.get(slot.page);
+        texture.load(label.bitmap, slot.x, slot.y);
+        label.texId = texture.getTexId();
+
+        // 'v' uses an upper-left origin and the GPU does the flip
+        final float size = ATLAS_SIZE;
+        label.u0 = slot.x / size;
+        label.v0 = slot.y / size;
+        label.u1 = (slot.x + slot.width) / size;
+        label.v1 = (slot.y + slot.height) / size;
+    }
+
+    /**************************************************************************/
+
+    private static final class Key {
+        String text;
+        Typeface typeface;
+        float fontSize;
+        int color;
+        int background;
+
+        Key() {
+        }
+
+        Key(Key other) {
+            set(other.text, other.typeface, other.fontSize, other.color,
+                    other.background);
+        }
+
+        void set(String text, Typeface typeface, float fontSize, int color,
+                int background) {
+            this.text = text;
+            this.typeface = typeface;
+            this.fontSize = fontSize;
+            this.color = color;
+            this.background = background;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+            Key k = (Key) o;
+            return color == k.color && background == k.background
+                    && fontSize == k.fontSize
+                    && text.equals(k.text)
+                    && (typeface == null ? k.typeface == null
+                            : typeface.equals(k.typeface));
+        }
+
+        @Override
+        public int hashCode() {
+            int h = text.hashCode();
+            h = 31 * h + (typeface == null ? 0 : typeface.hashCode());
+            h = 31 * h + Float.floatToIntBits(fontSize);
+            h = 31 * h + color;
+            h = 31 * h + background;
+            return h;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.atakmap.android.helloworld.gl;
+
+import com.atakmap.opengl.GLES20FixedPipeline;
+import com.atakmap.opengl.GLRenderBatch2;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Draws labels from the {@link GLLabelCache}.   A cached label is already
+ * laid out and rasterized, so each one is a single quad out of the label
+ * atlas; nothing about the text is redone per frame.
+ *
+ * Batchable renderers submit their labels to the frame's batch with
+ * {@link #batch(GLRenderBatch2, GLLabelCache.Label, float, float, float)}.
+ * Other renderers {@link #add queue} labels and {@link #flush()} them, which
+ * draws the queued labels with one glDrawArrays per atlas page.   The
+ * buffers are reused between frames.   Must only be used on the GL thread.
+ */
+public class GLLabelPass {
+
+    // x, y, z, u, v
+    private static final int VERTEX_FLOATS = 5;
+    private static final int VERTEX_STRIDE = VERTEX_FLOATS * 4;
+
+    // one quad submitted to a batch, two triangles
+    private static final FloatBuffer quadVertices = allocate(6 * 3);
+    private static final FloatBuffer quadTexCoords = allocate(6 * 2);
+
+    private GLLabelCache.Label[] labels = new GLLabelCache.Label[16];
+    private float[] positions = new float[16 * 3];
+    private int count;
+
+    private FloatBuffer interleaved = allocate(16 * 6 * VERTEX_FLOATS);
+
+    /**
+     * Add the label to the batch with its baseline origin at x, y, z.
+     */
+    public static void batch(GLRenderBatch2 batch, GLLabelCache.Label label,
+            float x, float y, float z) {
+        if (label.texId == 0)
+            return;
+
+        final float x0 = x + label.left;
+        final float y0 = y + label.bottom;
+        final float x1 = x0 + label.quadWidth;
+        final float y1 = y0 + label.quadHeight;
+
+        // top left, top right, bottom right and top left, bottom right,
+        // bottom left
+        quadVertices.clear();
+        quadTexCoords.clear();
+        putCorner(x0, y1, z, label.u0, label.v0);
+        putCorner(x1, y1, z, label.u1, label.v0);
+        putCorner(x1, y0, z, label.u1, label.v1);
+        putCorner(x0, y1, z, label.u0, label.v0);
+        putCorner(x1, y0, z, label.u1, label.v1);
+        putCorner(x0, y0, z, label.u0, label.v1);
+        quadVertices.flip();
+        quadTexCoords.flip();
+
+        batch.batch(label.texId, GLES20FixedPipeline.GL_TRIANGLES, 3,
+                0, quadVertices, 0, quadTexCoords, 1f, 1f, 1f, 1f);
+    }
+
+    private static void putCorner(float x, float y, float z, float u,
+            float v) {
+        quadVertices.put(x);
+        quadVertices.put(y);
+        quadVertices.put(z);
+        quadTexCoords.put(u);
+        quadTexCoords.put(v);
+    }
+
+    /**
+     * Queue a label with its baseline origin at the given screen position.
+     */
+    public void add(GLLabelCache.Label label, float x, float y, float z) {
+        if (label.texId == 0)
+            return;
+        if (count == labels.length) {
+            GLLabelCache.Label[] l = new GLLabelCache.Label[count * 2];
+            System.arraycopy(labels, 0, l, 0, count);
+            labels = l;
+            float[] p = new float[count * 2 * 3];
+            System.arraycopy(positions, 0, p, 0, count * 3);
+            positions = p;
+            interleaved = allocate(count * 2 * 6 * VERTEX_FLOATS);
+        }
+        labels[count] = label;
+        positions[count * 3] = x;
+        positions[count * 3 + 1] = y;
+        positions[count * 3 + 2] = z;
+        count++;
+    }
+
+    /**
+     * Draw and clear the queued labels, with the current matrices.
+     */
+    public void flush() {
+        if (count == 0)
+            return;
+
+        GLES20FixedPipeline.glEnableClientState(
+                GLES20FixedPipeline.GL_VERTEX_ARRAY);
+        GLES20FixedPipeline.glEnableClientState(
+                GLES20FixedPipeline.GL_TEXTURE_COORD_ARRAY);
+        GLES20FixedPipeline.glEnable(GLES20FixedPipeline.GL_TEXTURE_2D);
+        GLES20FixedPipeline.glEnable(GLES20FixedPipeline.GL_BLEND);
+        // Bitmap uploads are premultiplied
+        GLES20FixedPipeline.glBlendFunc(GLES20FixedPipeline.GL_ONE,
+                GLES20FixedPipeline.GL_ONE_MINUS_SRC_ALPHA);
+        GLES20FixedPipeline.glColor4f(1f, 1f, 1f, 1f);
+
+        // labels on the same atlas page go out in one draw; there are only
+        // ever a few pages so each pass picks up the next one left
+        int drawn = 0;
+        while (drawn < count) {
+            int texId = 0;
+            interleaved.clear();
+            int quads = 0;
+            for (int i = 0; i < count; ++i) {
+                final GLLabelCache.Label label = labels[i];
+                if (label == null)
+                    continue;
+                if (texId == 0)
+                    texId = label.texId;
+                else if (label.texId != texId)
+                    continue;
+                putQuad(label, positions[i * 3], positions[i * 3 + 1],
+                        positions[i * 3 + 2]);
+                labels[i] = null;
+                ++quads;
+            }
+            interleaved.flip();
+            drawn += quads;
+
+            final FloatBuffer pos = interleaved.slice();
+            interleaved.position(3);
+            final FloatBuffer tex = interleaved.slice();
+            interleaved.position(0);
+
+            GLES20FixedPipeline.glBindTexture(
+                    GLES20FixedPipeline.GL_TEXTURE_2D, texId);
+            GLES20FixedPipeline.glVertexPointer(3,
+                    GLES20FixedPipeline.GL_FLOAT, VERTEX_STRIDE, pos);
+            GLES20FixedPipeline.glTexCoordPointer(2,
+                    GLES20FixedPipeline.GL_FLOAT, VERTEX_STRIDE, tex);
+            GLES20FixedPipeline.glDrawArrays(GLES20FixedPipeline.GL_TRIANGLES,
+                    0, quads * 6);
+        }
+        count = 0;
+
+        GLES20FixedPipeline.glDisable(GLES20FixedPipeline.GL_BLEND);
+        GLES20FixedPipeline.glDisable(GLES20FixedPipeline.GL_TEXTURE_2D);
+        GLES20FixedPipeline.glDisableClientState(
+                GLES20FixedPipeline.GL_TEXTURE_COORD_ARRAY);
+        GLES20FixedPipeline.glDisableClientState(
+                GLES20FixedPipeline.GL_VERTEX_ARRAY);
+    }
+
+    /**
+     * Drop any queued labels.
+     */
+    public void release() {
+        for (int i = 0; i < count; ++i)
+            labels[i] = null;
+        count = 0;
+    }
+
+    private void putQuad(GLLabelCache.Label label, float x, float y,
+            float z) {
+        final float x0 = x + label.left;
+        final float y0 = y + label.bottom;
+        final float x1 = x0 + label.quadWidth;
+        final float y1 = y0 + label.quadHeight;
+        putVertex(x0, y1, z, label.u0, label.v0);
+        putVertex(x1, y1, z, label.u1, label.v0);
+        putVertex(x1, y0, z, label.u1, label.v1);
+        putVertex(x0, y1, z, label.u0, label.v0);
+        putVertex(x1, y0, z, label.u1, label.v1);
+        putVertex(x0, y0, z, label.u0, label.v1);
+    }
+
+    private void putVertex(float x, float y, float z, float u, float v) {
+        interleaved.put(x);
+        interleaved.put(y);
+        interleaved.put(z);
+        interleaved.put(u);
+        interleaved.put(v);
+    }
+
+    private static FloatBuffer allocate(int floats) {
+        return ByteBuffer.allocateDirect(floats * 4)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+}
@@ -0,0 +1,165 @@
+package com.atakmap.android.helloworld.gl;
+
+import android.opengl.GLES20;
+
+import com.atakmap.map.opengl.GLMapView;
+import com.atakmap.opengl.GLES20FixedPipeline;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * A textured, georeferenced quad whose projected vertices live in a vertex
+ * buffer object.   The corners are only run through {@link GLMapView#forward}
+ * and uploaded again when the corners, the texture extent or the projection
+ * of the pass being drawn have changed; otherwise the draw simply binds the
+ * existing buffer.   Must only be used on the GL thread.
+ */
+public class GLQuad {
+
+    private final int vertexSize;
+    private final int stride;
+
+    // longitude, latitude[, altitude] for ul, ur, lr, ll
+    private final DoubleBuffer points;
+    private final FloatBuffer projected;
+    private final float[] texCoords = new float[8];
+
+    // vertex x, y[, z], u, v for ul, ur, lr, ll
+    private final FloatBuffer interleaved;
+
+    private final ProjectionKey projection = new ProjectionKey();
+    private boolean dirty = true;
+    private int vbo;
+
+    /**
+     * @param vertexSize 2 for surface geometry, 3 to include altitude
+     */
+    public GLQuad(int vertexSize) {
+        this.vertexSize = vertexSize;
+        this.stride = (vertexSize + 2) * 4;
+        this.points = ByteBuffer.allocateDirect(4 * vertexSize * 8)
+                .order(ByteOrder.nativeOrder()).asDoubleBuffer();
+        this.projected = ByteBuffer.allocateDirect(4 * vertexSize * 4)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        this.interleaved = ByteBuffer.allocateDirect(4 * stride)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    /**
+     * Set a corner of the quad.   Corners are ordered upper left, upper right,
+     * lower right, lower left.   The altitude is ignored for surface quads.
+     */
+    public void setCorner(int index, double longitude, double latitude,
+            double altitude) {
+        final int i = index * vertexSize;
+        points.put(i, longitude);
+        points.put(i + 1, latitude);
+        if (vertexSize == 3)
+            points.put(i + 2, Double.isNaN(altitude) ? 0d : altitude);
+        dirty = true;
+    }
+
+    /**
+     * Set the portion of the texture that is mapped onto the quad.   Note
+     * that while 'v' originates in the lower-left, by using an upper-left
+     * origin we will have the GPU do the vertical flip for us.
+     *
+     * @param u the right texture coordinate
+     * @param v the bottom texture coordinate
+     */
+    public void setTextureExtent(float u, float v) {
+        texCoords[0] = 0f; // upper-left
+        texCoords[1] = 0f;
+        texCoords[2] = u; // upper-right
+        texCoords[3] = 0f;
+        texCoords[4] = u; // lower-right
+        texCoords[5] = v;
+        texCoords[6] = 0f; // lower-left
+        texCoords[7] = v;
+        dirty = true;
+    }
+
+    /**
+     * Draw the quad with the given texture.
+     *
+     * @param view the view
+     * @param texId the texture
+     */
+    public void draw(GLMapView view, int texId) {
+        final boolean moved = projection.update(view);
+        if (dirty || moved || vbo == 0)
+            upload(view);
+
+        GLES20FixedPipeline.glEnableClientState(
+                GLES20FixedPipeline.GL_VERTEX_ARRAY);
+        GLES20FixedPipeline.glEnableClientState(
+                GLES20FixedPipeline.GL_TEXTURE_COORD_ARRAY);
+        GLES20FixedPipeline.glEnable(GLES20FixedPipeline.GL_TEXTURE_2D);
+        GLES20FixedPipeline.glEnable(GLES20FixedPipeline.GL_BLEND);
+        GLES20FixedPipeline.glBlendFunc(GLES20FixedPipeline.GL_SRC_ALPHA,
+                GLES20FixedPipeline.GL_ONE_MINUS_SRC_ALPHA);
+        GLES20FixedPipeline.glColor4f(1f, 1f, 1f, 1f);
+        GLES20FixedPipeline.glBindTexture(GLES20FixedPipeline.GL_TEXTURE_2D,
+                texId);
+
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vbo);
+        GLES20FixedPipeline.glVertexPointer(vertexSize,
+                GLES20FixedPipeline.GL_FLOAT, stride, 0);
+        GLES20FixedPipeline.glTexCoordPointer(2,
+                GLES20FixedPipeline.GL_FLOAT, stride, vertexSize * 4);
+        GLES20FixedPipeline.glDrawArrays(
+                GLES20FixedPipeline.GL_TRIANGLE_FAN, 0, 4);
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+
+        GLES20FixedPipeline.glDisable(GLES20FixedPipeline.GL_BLEND);
+        GLES20FixedPipeline.glDisable(GLES20FixedPipeline.GL_TEXTURE_2D);
+        GLES20FixedPipeline.glDisableClientState(
+                GLES20FixedPipeline.GL_TEXTURE_COORD_ARRAY);
+        GLES20FixedPipeline.glDisableClientState(
+                GLES20FixedPipeline.GL_VERTEX_ARRAY);
+    }
+
+    private void upload(GLMapView view) {
+        // transform the corner coordinates to GL x,y[,z]
+        points.clear();
+        projected.clear();
+        view.forward(points, vertexSize, projected, vertexSize);
+
+        interleaved.clear();
+        for (int i = 0; i < 4; ++i) {
+            for (int j = 0; j < vertexSize; ++j)
+                interleaved.put(projected.get(i * vertexSize + j));
+            interleaved.put(texCoords[i * 2]);
+            interleaved.put(texCoords[i * 2 + 1]);
+        }
+        interleaved.flip();
+
+        if (vbo == 0) {
+            int[] id = new int[1];
+            GLES20.glGenBuffers(1, id, 0);
+            vbo = id[0];
+        }
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vbo);
+        GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, 4 * stride, interleaved,
+                GLES20.GL_DYNAMIC_DRAW);
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        dirty = false;
+    }
+
+    /**
+     * Release the vertex buffer object.
+     */
+    public void release() {
+        if (vbo != 0) {
+            GLES20.glDeleteBuffers(1, new int[] {
+                    vbo
+            }, 0);
+            vbo = 0;
+        }
+        projection.invalidate();
+        dirty = true;
+    }
+}
@@ -0,0 +1,112 @@
+package com.atakmap.android.helloworld.gl;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+
+/**
+ * Small pool of direct buffers used to stage RGBA pixel data for a texture
+ * upload without constructing an intermediate Bitmap.   The pool retains at
+ * most two buffers by default so that a producer can fill one buffer while
+ * the GL thread is still uploading the other.   If every retained buffer is
+ * in flight a new one is allocated rather than waiting on the GL thread.
+ */
+public class PixelBufferPool {
+
+    private final ArrayDeque<ByteBuffer> free;
+    private final int maxRetained;
+
+    public PixelBufferPool() {
+        this(2);
+    }
+
+    /**
+     * @param maxRetained the number of released buffers kept for reuse
+     */
+    public PixelBufferPool(int maxRetained) {
+        this.maxRetained = maxRetained;
+        this.free = new ArrayDeque<>(maxRetained);
+    }
+
+    /**
+     * Obtain a buffer large enough to hold width x height RGBA pixels.   The
+     * buffer is positioned at zero with the limit set to the pixel data size.
+     * @param width the pixel width
+     * @param height the pixel height
+     * @return a direct buffer in native byte order
+     */
+    public synchronized ByteBuffer acquire(int width, int height) {
+        final int capacity = width * height * 4;
+        ByteBuffer buf;
+        // undersized buffers are left for the GC, the layer has grown
+        do {
+            buf = free.pollFirst();
+        } while (buf != null && buf.capacity() < capacity);
+
+        if (buf == null)
+            buf = ByteBuffer.allocateDirect(capacity)
+                    .order(ByteOrder.nativeOrder());
+        buf.clear();
+        buf.limit(capacity);
+        return buf;
+    }
+
+    /**
+     * Return a buffer obtained from {@link #acquire(int, int)} to the pool.
+     * @param buf the buffer, may be null
+     */
+    public synchronized void release(ByteBuffer buf) {
+        if (buf != null && free.size() < maxRetained)
+            free.addFirst(buf);
+    }
+
+    /**
+     * Drop all of the retained buffers.
+     */
+    public synchronized void clear() {
+        free.clear();
+    }
+
+    /**
+     * Pack Android ARGB color ints into a buffer suitable for a GL_RGBA /
+     * GL_UNSIGNED_BYTE texture upload.   The color components are
+     * premultiplied by alpha which matches what a Bitmap backed upload would
+     * produce.
+     *
+     * @param argb the colors, row major, width * height in length
+     * @param width the pixel width
+     * @param height the pixel height
+     * @param dst the destination, must have at least width * height * 4 bytes
+     *            remaining
+     */
+    public static void packARGB(int[] argb, int width, int height,
+            ByteBuffer dst) {
+        final int count = width * height;
+        final int base = dst.position();
+        for (int i = 0; i < count; ++i)
+            putPixel(dst, base + (i << 2), argb[i]);
+    }
+
+    /**
+     * Write a single Android ARGB color int as premultiplied RGBA bytes.
+     *
+     * @param dst the destination buffer
+     * @param idx the absolute byte index of the pixel in the buffer
+     * @param c the color
+     */
+    public static void putPixel(ByteBuffer dst, int idx, int c) {
+        final int a = (c >>> 24);
+        int r = (c >> 16) & 0xFF;
+        int g = (c >> 8) & 0xFF;
+        int b = c & 0xFF;
+        if (a != 0xFF) {
+            r = (r * a + 127) / 255;
+            g = (g * a + 127) / 255;
+            b = (b * a + 127) / 255;
+        }
+        dst.put(idx, (byte) r);
+        dst.put(idx + 1, (byte) g);
+        dst.put(idx + 2, (byte) b);
+        dst.put(idx + 3, (byte) a);
+    }
+}
@@ -0,0 +1,77 @@
+package com.atakmap.android.helloworld.gl;
+
+import com.atakmap.map.opengl.GLMapView;
+
+/**
+ * Records the parts of a render pass that determine the result of
+ * {@link GLMapView#forward}, so a renderer can tell whether coordinates it
+ * projected previously are still valid.   The draw version alone is not
+ * relied upon as the surface renderer issues several passes with different
+ * extents per frame.
+ */
+public final class ProjectionKey {
+
+    private boolean valid;
+    private int drawVersion;
+    private int drawSrid;
+    private double drawLat;
+    private double drawLng;
+    private double drawRotation;
+    private double drawTilt;
+    private double drawMapResolution;
+    private float focusx;
+    private float focusy;
+    private int left;
+    private int right;
+    private int top;
+    private int bottom;
+
+    /**
+     * Compare the current pass of the view against the recorded state and
+     * record it.
+     *
+     * @param view the view being drawn
+     * @return true if the projection has changed since the last call
+     */
+    public boolean update(GLMapView view) {
+        final GLMapView.State s = view.currentPass;
+        if (valid
+                && drawVersion == s.drawVersion
+                && drawSrid == s.drawSrid
+                && drawLat == s.drawLat
+                && drawLng == s.drawLng
+                && drawRotation == s.drawRotation
+                && drawTilt == s.drawTilt
+                && drawMapResolution == s.drawMapResolution
+                && focusx == s.focusx
+                && focusy == s.focusy
+                && left == s.left
+                && right == s.right
+                && top == s.top
+                && bottom == s.bottom)
+            return false;
+
+        valid = true;
+        drawVersion = s.drawVersion;
+        drawSrid = s.drawSrid;
+        drawLat = s.drawLat;
+        drawLng = s.drawLng;
+        drawRotation = s.drawRotation;
+        drawTilt = s.drawTilt;
+        drawMapResolution = s.drawMapResolution;
+        focusx = s.focusx;
+        focusy = s.focusy;
+        left = s.left;
+        right = s.right;
+        top = s.top;
+        bottom = s.bottom;
+        return true;
+    }
+
+    /**
+     * Forget the recorded state so the next {@link #update} reports a change.
+     */
+    public void invalidate() {
+        valid = false;
+    }
+}
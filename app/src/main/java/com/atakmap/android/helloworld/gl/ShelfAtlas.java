@@ -0,0 +1,257 @@
+package com.atakmap.android.helloworld.gl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Packs rectangles into square pages, shelf by shelf from the top.
+ *
+ * A removed rectangle leaves dead space on its page.   When a new rectangle
+ * does not fit anywhere, a page with enough dead space is repacked with its
+ * live rectangles before another page is added, so replacing the same
+ * rectangle over and over does not grow the atlas.   Pages left empty are
+ * dropped by {@link #releaseEmptyPages()}.
+ *
+ * @param <K> the key of a rectangle, compared with equals
+ */
+public class ShelfAtlas<K> {
+
+    /**
+     * Told where rectangles go so that their pixels can be loaded
+     */
+    public interface Listener<K> {
+        void onPageAdded(Page<K> page);
+
+        void onPageRemoved(Page<K> page);
+
+        /**
+         * A rectangle was placed, or moved by a repack, and must be loaded
+         * at its slot.
+         */
+        void onPlaced(K key, Slot<K> slot);
+    }
+
+    /**
+     * Where a rectangle is on a page
+     */
+    public static final class Slot<K> {
+        public final Page<K> page;
+        public final int x, y;
+        public final int width, height;
+
+        Slot(Page<K> page, int x, int y, int width, int height) {
+            this.page = page;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    public static final class Page<K> {
+        private final Map<K, Slot<K>> slots = new LinkedHashMap<>();
+        private int shelfX, shelfY, shelfHeight;
+
+        // padded areas of everything placed since the last reset and of the
+        // rectangles still on the page
+        private long placedArea, liveArea;
+
+        /**
+         * @return the keys on the page, in the order they were placed
+         */
+        public Collection<K> getKeys() {
+            return Collections.unmodifiableCollection(slots.keySet());
+        }
+
+        public boolean isEmpty() {
+            return slots.isEmpty();
+        }
+
+        long getDeadArea() {
+            return placedArea - liveArea;
+        }
+
+        private void reset() {
+            slots.clear();
+            shelfX = shelfY = shelfHeight = 0;
+            placedArea = liveArea = 0;
+        }
+    }
+
+    private final int _size;
+    private final int _padding;
+    private final Listener<K> _listener;
+
+    private final List<Page<K>> _pages = new ArrayList<>();
+    private final Map<K, Slot<K>> _slots = new HashMap<>();
+
+    /**
+     * @param size the width and height of a page
+     * @param padding the gap left to the right of and below each rectangle
+     */
+    public ShelfAtlas(int size, int padding, Listener<K> listener) {
+        _size = size;
+        _padding = padding;
+        _listener = listener;
+    }
+
+    /**
+     * Place a rectangle, {@link Listener#onPlaced} is called for it and for
+     * any rectangle moved to make room.
+     *
+     * @return the slot, null if the rectangle is larger than a page
+     */
+    public Slot<K> add(K key, int width, int height) {
+        remove(key);
+        if (width + _padding > _size || height + _padding > _size)
+            return null;
+
+        for (Page<K> page : _pages) {
+            Slot<K> slot = place(page, key, width, height);
+            if (slot != null)
+                return slot;
+        }
+
+        // take back dead space before growing
+        final long area = (long) (width + _padding) * (height + _padding);
+        for (int i = 0; i < _pages.size(); ++i) {
+            final Page<K> page = _pages.get(i);
+            if (page.getDeadArea() < area)
+                continue;
+            repack(page);
+            Slot<K> slot = place(page, key, width, height);
+            if (slot != null)
+                return slot;
+        }
+
+        return place(addPage(), key, width, height);
+    }
+
+    /**
+     * Remove a rectangle, the page keeps its texture until
+     * {@link #releaseEmptyPages()}.
+     *
+     * @return true if the key was in the atlas
+     */
+    public boolean remove(K key) {
+        final Slot<K> slot = _slots.remove(key);
+        if (slot == null)
+            return false;
+        final Page<K> page = slot.page;
+        page.slots.remove(key);
+        if (page.slots.isEmpty())
+            page.reset();
+        else
+            page.liveArea -= area(slot);
+        return true;
+    }
+
+    public Slot<K> getSlot(K key) {
+        return _slots.get(key);
+    }
+
+    /**
+     * @return the number of pages released
+     */
+    public int releaseEmptyPages() {
+        int released = 0;
+        for (int i = _pages.size() - 1; i >= 0; --i) {
+            final Page<K> page = _pages.get(i);
+            if (page.isEmpty()) {
+                _pages.remove(i);
+                _listener.onPageRemoved(page);
+                ++released;
+            }
+        }
+        return released;
+    }
+
+    /**
+     * Remove every rectangle and page
+     */
+    public void clear() {
+        for (Page<K> page : _pages)
+            _listener.onPageRemoved(page);
+        _pages.clear();
+        _slots.clear();
+    }
+
+    public List<Page<K>> getPages() {
+        return Collections.unmodifiableList(_pages);
+    }
+
+    /**************************************************************************/
+
+    private Page<K> addPage() {
+        final Page<K> page = new Page<>();
+        _pages.add(page);
+        _listener.onPageAdded(page);
+        return page;
+    }
+
+    /**
+     * Lay the live rectangles of a page out again from the top.   One that
+     * no longer fits, as shelf packing of fewer rectangles can come out
+     * taller, goes on another page.
+     */
+    private void repack(Page<K> page) {
+        final List<Slot<K>> live = new ArrayList<>(page.slots.values());
+        final List<K> keys = new ArrayList<>(page.slots.keySet());
+        page.reset();
+        final List<Integer> overflow = new ArrayList<>();
+        for (int i = 0; i < keys.size(); ++i) {
+            final Slot<K> old = live.get(i);
+            if (place(page, keys.get(i), old.width, old.height) == null)
+                overflow.add(i);
+        }
+        for (int i : overflow) {
+            final Slot<K> old = live.get(i);
+            Slot<K> slot = null;
+            for (int p = 0; p < _pages.size() && slot == null; ++p) {
+                if (_pages.get(p) != page)
+                    slot = place(_pages.get(p), keys.get(i), old.width,
+                            old.height);
+            }
+            if (slot == null)
+                place(addPage(), keys.get(i), old.width, old.height);
+        }
+    }
+
+    private Slot<K> place(Page<K> page, K key, int width, int height) {
+        final int w = width + _padding;
+        final int h = height + _padding;
+
+        int x = page.shelfX;
+        int y = page.shelfY;
+        int shelfHeight = page.shelfHeight;
+        if (x + w > _size) {
+            // start a new shelf
+            x = 0;
+            y += page.shelfHeight;
+            shelfHeight = 0;
+        }
+        if (y + h > _size)
+            return null;
+
+        page.shelfX = x + w;
+        page.shelfY = y;
+        page.shelfHeight = Math.max(shelfHeight, h);
+
+        final Slot<K> slot = new Slot<>(page, x, y, width, height);
+        page.slots.put(key, slot);
+        page.placedArea += area(slot);
+        page.liveArea += area(slot);
+        _slots.put(key, slot);
+        _listener.onPlaced(key, slot);
+        return slot;
+    }
+
+    private long area(Slot<K> slot) {
+        return (long) (slot.width + _padding) * (slot.height + _padding);
+    }
+}
@@ -1,9 +1,10 @@
 
 package com.atakmap.android.helloworld.heatmap;
 
-import android.graphics.Bitmap;
 import android.util.Pair;
 
+import com.atakmap.android.helloworld.gl.GLQuad;
+import com.atakmap.android.helloworld.gl.PixelBufferPool;
 import com.atakmap.coremap.maps.coords.GeoBounds;
 import com.atakmap.coremap.maps.coords.GeoPoint;
 import com.atakmap.map.MapRenderer;
@@ -19,9 +20,7 @@ import com.atakmap.opengl.GLTexture;
 import com.atakmap.util.Visitor;
 
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.DoubleBuffer;
-import java.nio.FloatBuffer;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class GLSimpleHeatMapLayer extends GLAbstractLayer
         implements SimpleHeatMapLayer.OnLayerChangedListener {
@@ -49,6 +48,25 @@ public class GLSimpleHeatMapLayer extends GLAbstractLayer
 
     private Data frame;
     private final SimpleHeatMapLayer subject;
+    private final PixelBufferPool pixelPool = new PixelBufferPool();
+
+    // at most one frame is waiting on the GL thread, newer frames replace it
+    private final AtomicReference<PendingFrame> pending = new AtomicReference<>();
+    private final Runnable uploadPending = new Runnable() {
+        @Override
+        public void run() {
+            final PendingFrame f = pending.getAndSet(null);
+            if (f == null)
+                return;
+            try {
+                if (frame != null)
+                    frame.update(f.pixels, f.width, f.height, f.ul, f.ur,
+                            f.lr, f.ll);
+            } finally {
+                recycle(f);
+            }
+        }
+    };
 
     public GLSimpleHeatMapLayer(MapRenderer surface,
             SimpleHeatMapLayer subject) {
@@ -68,24 +86,24 @@ public class GLSimpleHeatMapLayer extends GLAbstractLayer
 
     @Override
     protected void drawImpl(GLMapView view) {
-
-        // transform the frame's corner coordinates to GL x,y
-        view.forward(frame.points, frame.vertexCoordinates);
-
         if (frame.texture == null) {
             return;
         }
-        frame.texture.draw(4, GLES20FixedPipeline.GL_FLOAT,
-                frame.textureCoordinates, frame.vertexCoordinates);
+
+        // the corners are only projected again when the view or the frame
+        // has changed since the last draw
+        frame.quad.draw(view, frame.texture.getTexId());
     }
 
     @Override
     public void release() {
         subject.removeOnLayerChangedListener(this);
         // release all frame textures
-        if (this.frame != null && this.frame.texture != null)
-            this.frame.texture.release();
+        if (this.frame != null)
+            this.frame.release();
         this.frame = null;
+        pending.set(null);
+        pixelPool.clear();
         super.release();
 
     }
@@ -94,116 +112,129 @@ public class GLSimpleHeatMapLayer extends GLAbstractLayer
             GeoPoint upperLeft,
             GeoPoint upperRight, GeoPoint lowerRight, GeoPoint lowerLeft) {
 
-        // this example makes use of Bitmap, but does not need to.
+        // stage the pixels in a pooled direct buffer, the GL thread will
+        // upload straight from it and hand it back to the pool
+        final ByteBuffer pixels = pixelPool.acquire(width, height);
+        PixelBufferPool.packARGB(argb, width, height, pixels);
+        submit(new PendingFrame(pixels, width, height,
+                new GeoPoint(upperLeft), new GeoPoint(upperRight),
+                new GeoPoint(lowerRight), new GeoPoint(lowerLeft)));
+    }
 
-        final Bitmap bitmap = Bitmap.createBitmap(argb, width, height,
-                Bitmap.Config.ARGB_8888);
-        final GeoPoint ul = new GeoPoint(upperLeft);
-        final GeoPoint ur = new GeoPoint(upperRight);
-        final GeoPoint lr = new GeoPoint(lowerRight);
-        final GeoPoint ll = new GeoPoint(lowerLeft);
+    private void submit(PendingFrame f) {
+        // if a frame is still waiting for the GL thread it is stale, replace
+        // it and let the already queued event pick up the newest data
+        final PendingFrame stale = pending.getAndSet(f);
+        if (stale != null) {
+            recycle(stale);
+            subject.onFrameDropped();
+            return;
+        }
 
         // offload the actual update to the GL thread -- GL objects may only be
         // updated on the GL thread (e.g. texture).
-        this.renderContext.queueEvent(new Runnable() {
-            public void run() {
-                try {
-                    if (frame != null)
-                        frame.update(bitmap, width, height, ul, ur,
-                                lr, ll);
-                } finally {
-                    // cleanup the bitmap
-                    bitmap.recycle();
-                }
-            }
-        });
+        this.renderContext.queueEvent(uploadPending);
+    }
+
+    private void recycle(PendingFrame f) {
+        pixelPool.release(f.pixels);
+    }
+
+    /**************************************************************************/
+
+    private static class PendingFrame {
+        final ByteBuffer pixels;
+        final int width;
+        final int height;
+        final GeoPoint ul;
+        final GeoPoint ur;
+        final GeoPoint lr;
+        final GeoPoint ll;
+
+        PendingFrame(ByteBuffer pixels, int width, int height,
+                GeoPoint ul, GeoPoint ur, GeoPoint lr, GeoPoint ll) {
+            this.pixels = pixels;
+            this.width = width;
+            this.height = height;
+            this.ul = ul;
+            this.ur = ur;
+            this.lr = lr;
+            this.ll = ll;
+        }
     }
 
     /**************************************************************************/
 
     private static class Data {
         GLTexture texture;
-        final DoubleBuffer points;
-        final FloatBuffer vertexCoordinates;
-        final ByteBuffer textureCoordinates;
+        final GLQuad quad;
 
         Data() {
             this.texture = null;
-            this.points = ByteBuffer.allocateDirect(8 * 2 * 4)
-                    .order(ByteOrder.nativeOrder()).asDoubleBuffer();
-            this.vertexCoordinates = ByteBuffer.allocateDirect(4 * 2 * 4)
-                    .order(ByteOrder.nativeOrder()).asFloatBuffer();
-            this.textureCoordinates = ByteBuffer.allocateDirect(4 * 2 * 4)
-                    .order(ByteOrder.nativeOrder());
+            this.quad = new GLQuad(2);
         }
 
-        // XXX - we could use a java.nio.Buffer in place of a bitmap that
-        //       contains the pixel data. This may be faster as we won't incur
-        //       additional copying during Bitmap construction. The reason
-        //       Bitmap was selected is that we can explicitly clean up object
-        //       when we are done; use of Buffer relies on GC. As is generally
-        //       the case with mobile development we must weigh the options and
-        //       experiment to determine the best utilization of resources
-        //       versus performance
+        // The pixel data arrives as RGBA bytes in a direct buffer rather than
+        // a Bitmap. This avoids the copy made during Bitmap construction and
+        // the buffers are pooled by the layer so there is no per frame
+        // allocation for the GC to chase.
 
-        void update(Bitmap frame, final int width, final int height,
+        void update(ByteBuffer pixels, final int width, final int height,
                 final GeoPoint ul, final GeoPoint ur, final GeoPoint lr,
                 final GeoPoint ll) {
-            // if the bitmap data exceeds the bounds of the texture, allocate a
+            // if the pixel data exceeds the bounds of the texture, allocate a
             // new instance
             if (this.texture == null
                     || (this.texture.getTexWidth() < width || this.texture
                             .getTexHeight() < height)) {
                 if (this.texture != null)
                     this.texture.release();
-                this.texture = new GLTexture(width, height, frame.getConfig());
+                this.texture = new GLTexture(width, height,
+                        GLES20FixedPipeline.GL_RGBA,
+                        GLES20FixedPipeline.GL_UNSIGNED_BYTE);
             }
 
-            this.texture.load(null, 0, 0, width, height);
-
-            // note that while 'v' originates in the lower-left, by using an
-            // upper-left origin we will have the GPU do the vertical flip for
-            // us
-
             // update the texture coordinates to match the size of the new frame
-            this.textureCoordinates.clear();
-            this.textureCoordinates.putFloat(0.0f); // upper-left
-            this.textureCoordinates.putFloat(0.0f);
-            this.textureCoordinates.putFloat((float) width
-                    / (float) this.texture.getTexWidth()); // upper-right
-            this.textureCoordinates.putFloat(0.0f);
-            this.textureCoordinates.putFloat((float) width
-                    / (float) this.texture.getTexWidth()); // lower-right
-            this.textureCoordinates.putFloat((float) height
-                    / (float) this.texture.getTexHeight());
-            this.textureCoordinates.putFloat(0.0f); // lower-left
-            this.textureCoordinates.putFloat((float) height
-                    / (float) this.texture.getTexHeight());
-            this.textureCoordinates.flip();
-
-            // update the corner coordinates for the frame; pairs are ordered
-            // X, Y (longitude, latitude)
-            this.points.clear();
-            this.points.put(ul.getLongitude());
-            this.points.put(ul.getLatitude());
-            this.points.put(ur.getLongitude());
-            this.points.put(ur.getLatitude());
-            this.points.put(lr.getLongitude());
-            this.points.put(lr.getLatitude());
-            this.points.put(ll.getLongitude());
-            this.points.put(ll.getLatitude());
-            this.points.flip();
-
-            // upload the bitmap data
-            this.texture.load(frame);
+            this.quad.setTextureExtent(
+                    (float) width / (float) this.texture.getTexWidth(),
+                    (float) height / (float) this.texture.getTexHeight());
+
+            // update the corner coordinates for the frame
+            this.quad.setCorner(0, ul.getLongitude(), ul.getLatitude(), 0d);
+            this.quad.setCorner(1, ur.getLongitude(), ur.getLatitude(), 0d);
+            this.quad.setCorner(2, lr.getLongitude(), lr.getLatitude(), 0d);
+            this.quad.setCorner(3, ll.getLongitude(), ll.getLatitude(), 0d);
+
+            // upload the pixel data
+            this.texture.load(pixels, 0, 0, width, height);
+        }
+
+        void release() {
+            if (this.texture != null)
+                this.texture.release();
+            this.texture = null;
+            this.quad.release();
         }
     }
 
     @Override
     public void onLayerChanged(SimpleHeatMapLayer simpleHeatMapLayer) {
         GeoPoint[] pts = subject.getPoints();
-        setData(subject.layerARGB, subject.layerWidth, subject.layerHeight,
-                pts[0], pts[1], pts[2], pts[3]);
+        if (subject.grid != null) {
+            // the grid cells are already in the upload format, snapshot them
+            // into a pooled buffer so the producer may keep writing the
+            // mapping while the GL thread uploads this frame
+            final ByteBuffer pixels = pixelPool.acquire(subject.layerWidth,
+                    subject.layerHeight);
+            subject.grid.copyPixels(pixels);
+            submit(new PendingFrame(pixels, subject.layerWidth,
+                    subject.layerHeight,
+                    new GeoPoint(pts[0]), new GeoPoint(pts[1]),
+                    new GeoPoint(pts[2]), new GeoPoint(pts[3])));
+        } else {
+            setData(subject.layerARGB, subject.layerWidth,
+                    subject.layerHeight, pts[0], pts[1], pts[2], pts[3]);
+        }
 
         final SurfaceRendererControl[] ctrl = new SurfaceRendererControl[1];
         renderContext.visitControl(null, new Visitor<SurfaceRendererControl>() {
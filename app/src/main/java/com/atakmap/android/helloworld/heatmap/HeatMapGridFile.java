@@ -0,0 +1,205 @@
+package com.atakmap.android.helloworld.heatmap;
+
+import com.atakmap.android.helloworld.gl.PixelBufferPool;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Memory mapped storage for a heat map grid.   The file is laid out as a
+ * fixed size header followed by the cells:
+ *
+ * <pre>
+ *   0  int     magic ('HMAP')
+ *   4  int     version
+ *   8  int     width
+ *  12  int     height
+ *  16  double  upper left latitude, longitude
+ *  32  double  upper right latitude, longitude
+ *  48  double  lower right latitude, longitude
+ *  64  double  lower left latitude, longitude
+ *  96  byte[]  width * height cells, row major, premultiplied RGBA
+ * </pre>
+ *
+ * The cells are stored in the same format the renderer uploads, so a frame
+ * is a single bulk copy out of the mapped region.   All values are little
+ * endian.   Writes go straight to the mapping and are persisted by the OS,
+ * {@link #flush()} may be used to force them out.
+ *
+ * The cell writes and {@link #copyPixels(ByteBuffer)} hold the lock of the
+ * grid, so a copy never sees half of a {@link #setAll(int[])}.
+ */
+class HeatMapGridFile {
+
+    private static final int MAGIC = 0x50414D48; // 'HMAP'
+    private static final int VERSION = 1;
+    static final int HEADER_SIZE = 96;
+
+    private static final int CORNERS_OFFSET = 16;
+
+    private final File file;
+    private final MappedByteBuffer mapped;
+    private final ByteBuffer cells;
+    private final int width;
+    private final int height;
+
+    private HeatMapGridFile(File file, MappedByteBuffer mapped) {
+        this.file = file;
+        this.mapped = mapped;
+        this.mapped.order(ByteOrder.LITTLE_ENDIAN);
+        this.width = mapped.getInt(8);
+        this.height = mapped.getInt(12);
+
+        ByteBuffer dup = mapped.duplicate();
+        dup.position(HEADER_SIZE);
+        dup.limit(HEADER_SIZE + width * height * 4);
+        this.cells = dup.slice();
+    }
+
+    /**
+     * Create a new grid file, replacing any existing content.   All cells are
+     * initially transparent.
+     *
+     * @param file the file
+     * @param width the grid width
+     * @param height the grid height
+     * @param corners latitude, longitude pairs for the upper left, upper
+     *                right, lower right and lower left corners
+     * @return the mapped grid
+     * @throws IOException if the file could not be created or mapped
+     */
+    static HeatMapGridFile create(File file, int width, int height,
+            double[] corners) throws IOException {
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException(
+                    "invalid grid size " + width + "x" + height);
+
+        final long size = HEADER_SIZE + (long) width * height * 4L;
+        if (size > Integer.MAX_VALUE)
+            throw new IllegalArgumentException(
+                    "grid too large " + width + "x" + height);
+
+        final MappedByteBuffer mapped;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            // truncate so the cells do not retain a previous grid's content
+            raf.setLength(0);
+            raf.setLength(size);
+            mapped = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                    size);
+        }
+        mapped.order(ByteOrder.LITTLE_ENDIAN);
+        mapped.putInt(0, MAGIC);
+        mapped.putInt(4, VERSION);
+        mapped.putInt(8, width);
+        mapped.putInt(12, height);
+
+        HeatMapGridFile grid = new HeatMapGridFile(file, mapped);
+        grid.setCorners(corners);
+        return grid;
+    }
+
+    /**
+     * Map an existing grid file.
+     *
+     * @param file the file
+     * @return the mapped grid
+     * @throws IOException if the file is not a valid grid or could not be
+     *             mapped
+     */
+    static HeatMapGridFile open(File file) throws IOException {
+        final MappedByteBuffer mapped;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            final long size = raf.length();
+            if (size < HEADER_SIZE)
+                throw new IOException("not a heat map grid: " + file);
+            mapped = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                    size);
+        }
+        mapped.order(ByteOrder.LITTLE_ENDIAN);
+        if (mapped.getInt(0) != MAGIC)
+            throw new IOException("not a heat map grid: " + file);
+        if (mapped.getInt(4) != VERSION)
+            throw new IOException("unsupported heat map grid version "
+                    + mapped.getInt(4) + ": " + file);
+
+        final long expected = HEADER_SIZE
+                + (long) mapped.getInt(8) * mapped.getInt(12) * 4L;
+        if (mapped.getInt(8) <= 0 || mapped.getInt(12) <= 0
+                || mapped.capacity() < expected)
+            throw new IOException("truncated heat map grid: " + file);
+
+        return new HeatMapGridFile(file, mapped);
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return latitude, longitude pairs for the upper left, upper right,
+     *         lower right and lower left corners
+     */
+    double[] getCorners() {
+        double[] corners = new double[8];
+        for (int i = 0; i < corners.length; ++i)
+            corners[i] = mapped.getDouble(CORNERS_OFFSET + i * 8);
+        return corners;
+    }
+
+    /**
+     * @param corners latitude, longitude pairs for the upper left, upper
+     *                right, lower right and lower left corners
+     */
+    void setCorners(double[] corners) {
+        for (int i = 0; i < 8; ++i)
+            mapped.putDouble(CORNERS_OFFSET + i * 8, corners[i]);
+    }
+
+    synchronized void set(int x, int y, int argb) {
+        PixelBufferPool.putPixel(cells, (y * width + x) << 2, argb);
+    }
+
+    synchronized void setAll(int[] argb) {
+        if (argb.length != width * height)
+            throw new IllegalStateException(
+                    "data not the same size as the layer");
+        ByteBuffer dst = cells.duplicate();
+        dst.clear();
+        PixelBufferPool.packARGB(argb, width, height, dst);
+    }
+
+    /**
+     * Copy the cells, ready for a texture upload.   The renderer uploads a
+     * copy rather than the mapping itself so that a producer writing the
+     * next frame can not tear the one being drawn.
+     *
+     * @param dst receives width * height * 4 bytes at its position
+     */
+    synchronized void copyPixels(ByteBuffer dst) {
+        final ByteBuffer src = cells.duplicate();
+        src.clear();
+        final int start = dst.position();
+        dst.put(src);
+        dst.position(start);
+    }
+
+    /**
+     * Force any pending writes out to the file.
+     */
+    void flush() {
+        mapped.force();
+    }
+}
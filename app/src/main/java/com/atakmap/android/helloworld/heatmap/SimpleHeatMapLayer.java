@@ -11,14 +11,19 @@ import com.atakmap.coremap.maps.coords.GeoPointMetaData;
 import com.atakmap.coremap.maps.coords.MutableGeoBounds;
 import com.atakmap.map.layer.AbstractLayer;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class SimpleHeatMapLayer extends AbstractLayer {
 
     public static final String TAG = "ExampleLayer";
 
+    // exactly one of layerARGB or grid holds the cell data
     final int[] layerARGB;
+    final HeatMapGridFile grid;
     final int layerWidth;
     final int layerHeight;
 
@@ -31,6 +36,7 @@ public class SimpleHeatMapLayer extends AbstractLayer {
     private final MetaShape metaShape;
 
     private final ConcurrentLinkedQueue<OnLayerChangedListener> layerChangedListeners = new ConcurrentLinkedQueue<>();
+    private final AtomicLong droppedFrames = new AtomicLong();
 
     /**
      * Interface for when any attribute of the grid has been changed
@@ -73,10 +79,74 @@ public class SimpleHeatMapLayer extends AbstractLayer {
             int layerWidth, int layerHeight,
             GeoPoint upperLeft, GeoPoint upperRight,
             GeoPoint lowerRight, GeoPoint lowerLeft) {
+        this(plugin, name, layerWidth, layerHeight,
+                upperLeft, upperRight, lowerRight, lowerLeft,
+                new int[layerHeight * layerWidth], null);
+    }
+
+    /**
+     * Create a simple heat map layer backed by a memory mapped grid file
+     * rather than the heap.   Any existing content in the file is replaced.
+     * Changes made through {@link #setData} and {@link #setCorners} are
+     * written through to the file so the grid survives a plugin restart and
+     * can be reopened with {@link #SimpleHeatMapLayer(Context, String, File)}.
+     *
+     * @param plugin the context
+     * @param name the name
+     * @param layerWidth the data width
+     * @param layerHeight the data height
+     * @param bounds the bounds (not tested over the IDL)
+     * @param file the grid file to create
+     * @throws IOException if the file could not be created or mapped
+     */
+    public SimpleHeatMapLayer(Context plugin, final String name,
+            int layerWidth, int layerHeight,
+            GeoBounds bounds, File file) throws IOException {
+        this(plugin, name, HeatMapGridFile.create(file, layerWidth,
+                layerHeight, new double[] {
+                        bounds.getNorth(), bounds.getWest(),
+                        bounds.getNorth(), bounds.getEast(),
+                        bounds.getSouth(), bounds.getEast(),
+                        bounds.getSouth(), bounds.getWest()
+                }));
+    }
+
+    /**
+     * Open a simple heat map layer from a grid file previously created with
+     * {@link #SimpleHeatMapLayer(Context, String, int, int, GeoBounds, File)}.
+     * The file is mapped rather than read so opening is independent of the
+     * grid size.
+     *
+     * @param plugin the context
+     * @param name the name
+     * @param file the existing grid file
+     * @throws IOException if the file is not a valid grid
+     */
+    public SimpleHeatMapLayer(Context plugin, final String name, File file)
+            throws IOException {
+        this(plugin, name, HeatMapGridFile.open(file));
+    }
+
+    private SimpleHeatMapLayer(Context plugin, final String name,
+            HeatMapGridFile grid) {
+        this(plugin, name, grid.getWidth(), grid.getHeight(),
+                cornerAt(grid.getCorners(), 0),
+                cornerAt(grid.getCorners(), 1),
+                cornerAt(grid.getCorners(), 2),
+                cornerAt(grid.getCorners(), 3),
+                null, grid);
+    }
+
+    private SimpleHeatMapLayer(Context plugin, final String name,
+            int layerWidth, int layerHeight,
+            GeoPoint upperLeft, GeoPoint upperRight,
+            GeoPoint lowerRight, GeoPoint lowerLeft,
+            int[] layerARGB, HeatMapGridFile grid) {
         super(name);
 
         this.pluginContext = plugin;
-        layerARGB = new int[layerHeight * layerWidth];
+        this.layerARGB = layerARGB;
+        this.grid = grid;
         this.upperLeft = upperLeft;
         this.upperRight = upperRight;
         this.lowerRight = lowerRight;
@@ -108,6 +178,10 @@ public class SimpleHeatMapLayer extends AbstractLayer {
                 pluginContext, "menus/layer_menu.xml"));
     }
 
+    private static GeoPoint cornerAt(double[] corners, int i) {
+        return new GeoPoint(corners[i * 2], corners[i * 2 + 1]);
+    }
+
     /**
      * Return the geobounds for the Simple Heat Map Layer based on the povided geopoints.
      *
@@ -127,6 +201,14 @@ public class SimpleHeatMapLayer extends AbstractLayer {
         return metaShape;
     }
 
+    public int getLayerWidth() {
+        return layerWidth;
+    }
+
+    public int getLayerHeight() {
+        return layerHeight;
+    }
+
     /**
      * Modify a single point in a heat map
      *
@@ -135,7 +217,10 @@ public class SimpleHeatMapLayer extends AbstractLayer {
      * @param argb the data value
      */
     public void setData(int x, int y, int argb) {
-        layerARGB[y * layerHeight + x] = argb;
+        if (grid != null)
+            grid.set(x, y, argb);
+        else
+            layerARGB[y * layerWidth + x] = argb;
     }
 
     /**
@@ -143,6 +228,10 @@ public class SimpleHeatMapLayer extends AbstractLayer {
      * @param values the array sizes eneds to match the orginal layer size.
      */
     public void setData(int[] values) {
+        if (grid != null) {
+            grid.setAll(values);
+            return;
+        }
         if (values.length != layerARGB.length)
             throw new IllegalStateException(
                     "data not the same size as the layer");
@@ -160,11 +249,21 @@ public class SimpleHeatMapLayer extends AbstractLayer {
         upperRight = corners[1];
         lowerRight = corners[2];
         lowerLeft = corners[3];
+        if (grid != null) {
+            grid.setCorners(new double[] {
+                    upperLeft.getLatitude(), upperLeft.getLongitude(),
+                    upperRight.getLatitude(), upperRight.getLongitude(),
+                    lowerRight.getLatitude(), lowerRight.getLongitude(),
+                    lowerLeft.getLatitude(), lowerLeft.getLongitude()
+            });
+        }
         this.dispatchFrameChanged();
     }
 
     /**
-     * Causes the heat map to be refreshed visually.
+     * Causes the heat map to be refreshed visually.   The cells as they are
+     * at this call are what is drawn, later changes are picked up by the
+     * next refresh.
      */
     public void refresh() {
         this.dispatchFrameChanged();
@@ -183,6 +282,42 @@ public class SimpleHeatMapLayer extends AbstractLayer {
         });
     }
 
+    /**
+     * Returns true if the layer is backed by a memory mapped grid file.
+     */
+    public boolean isPersistent() {
+        return grid != null;
+    }
+
+    /**
+     * Force any changes to a memory mapped grid out to the file.   This is a
+     * no-op for a layer that is held on the heap.
+     */
+    public void flush() {
+        if (grid != null)
+            grid.flush();
+    }
+
+    /**
+     * Returns the number of frames that were superseded by a newer call to
+     * {@link #refresh()} or {@link #setCorners(GeoPoint[])} before the
+     * renderer could upload them.   Only the newest pending frame is ever
+     * uploaded, so a producer refreshing faster than the map draws will see
+     * this climb.
+     *
+     * @return the dropped frame count since the layer was created
+     */
+    public long getDroppedFrameCount() {
+        return droppedFrames.get();
+    }
+
+    /**
+     * Called by the renderer when a pending frame is replaced before upload.
+     */
+    void onFrameDropped() {
+        droppedFrames.incrementAndGet();
+    }
+
     /**
      * Adds a listener for changes to the queue
      *
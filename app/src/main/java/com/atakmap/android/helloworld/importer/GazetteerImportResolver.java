@@ -0,0 +1,184 @@
+package com.atakmap.android.helloworld.importer;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import com.atakmap.android.helloworld.index.Gazetteer;
+import com.atakmap.android.helloworld.speechtotext.GeocodeService;
+import com.atakmap.android.importfiles.sort.ImportInternalSDResolver;
+import com.atakmap.android.maps.MapView;
+import com.atakmap.coremap.filesystem.FileSystemUtils;
+import com.atakmap.coremap.io.IOProviderFactory;
+import com.atakmap.coremap.log.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Imports place name lists used to resolve spoken addresses offline.
+ * Matches files named e.g. "places.gazetteer.csv" or
+ * "places.gazetteer.geojson".   A CSV file needs name, lat and lon columns,
+ * a GeoJSON file point features with a "name" property.   The gazetteer is
+ * rebuilt from every imported list each time one is imported.
+ */
+public class GazetteerImportResolver extends ImportInternalSDResolver {
+
+    private static final String TAG = "GazetteerImportResolver";
+
+    public static final String CSV_EXT = ".csv";
+    public static final String GEOJSON_EXT = ".geojson";
+    private static final String SUFFIX = ".gazetteer";
+
+    private final MapView mapView;
+    private final String ext;
+
+    /**
+     * @param ext {@link #CSV_EXT} or {@link #GEOJSON_EXT}
+     */
+    public GazetteerImportResolver(MapView mapView, String ext) {
+        super(ext, HelloImportResolver.TOOL_NAME, true, false,
+                "Speech Gazetteer");
+        this.mapView = mapView;
+        this.ext = ext;
+    }
+
+    public boolean match(File file) {
+        return super.match(file) && file.getName().toLowerCase(Locale.US)
+                .endsWith(SUFFIX + ext);
+    }
+
+    protected void onFileSorted(File src, File dst, Set<SortFlags> flags) {
+        super.onFileSorted(src, dst, flags);
+        rebuild();
+    }
+
+    /**
+     * Build the gazetteer from every imported list.
+     */
+    private void rebuild() {
+        final File dir = FileSystemUtils.getItem(HelloImportResolver.TOOL_NAME);
+        final File[] files = IOProviderFactory.listFiles(dir);
+        if (files == null)
+            return;
+
+        final Gazetteer.Builder builder = new Gazetteer.Builder();
+        for (File f : files) {
+            final String name = f.getName().toLowerCase(Locale.US);
+            try (Reader r = new InputStreamReader(
+                    IOProviderFactory.getInputStream(f),
+                    StandardCharsets.UTF_8)) {
+                if (name.endsWith(SUFFIX + CSV_EXT))
+                    builder.addCsv(r);
+                else if (name.endsWith(SUFFIX + GEOJSON_EXT))
+                    addGeoJson(builder, r);
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "Unable to read " + f, e);
+            }
+        }
+
+        try {
+            builder.write(FileSystemUtils
+                    .getItem(GeocodeService.GAZETTEER_FILE));
+            GeocodeService.getInstance(mapView.getContext())
+                    .reloadGazetteer();
+            Log.d(TAG, "gazetteer rebuilt with " + builder.size()
+                    + " places");
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to write the gazetteer", e);
+        }
+    }
+
+    /**
+     * Stream the point features out of a GeoJSON feature collection.
+     */
+    private static void addGeoJson(Gazetteer.Builder builder, Reader r)
+            throws IOException {
+        final JsonReader jr = new JsonReader(r);
+        jr.beginObject();
+        while (jr.hasNext()) {
+            if (!jr.nextName().equals("features")) {
+                jr.skipValue();
+                continue;
+            }
+            jr.beginArray();
+            while (jr.hasNext())
+                addFeature(builder, jr);
+            jr.endArray();
+        }
+        jr.endObject();
+    }
+
+    private static void addFeature(Gazetteer.Builder builder, JsonReader jr)
+            throws IOException {
+        String name = null;
+        double lat = Double.NaN, lng = Double.NaN;
+        boolean point = false;
+        jr.beginObject();
+        while (jr.hasNext()) {
+            switch (jr.nextName()) {
+                case "properties":
+                    if (jr.peek() != JsonToken.BEGIN_OBJECT) {
+                        jr.skipValue();
+                        break;
+                    }
+                    jr.beginObject();
+                    while (jr.hasNext()) {
+                        if (jr.nextName().equals("name")
+                                && jr.peek() == JsonToken.STRING)
+                            name = jr.nextString();
+                        else
+                            jr.skipValue();
+                    }
+                    jr.endObject();
+                    break;
+                case "geometry":
+                    if (jr.peek() != JsonToken.BEGIN_OBJECT) {
+                        jr.skipValue();
+                        break;
+                    }
+                    jr.beginObject();
+                    while (jr.hasNext()) {
+                        switch (jr.nextName()) {
+                            case "type":
+                                point = "Point".equals(jr.nextString());
+                                break;
+                            case "coordinates":
+                                if (jr.peek() != JsonToken.BEGIN_ARRAY) {
+                                    jr.skipValue();
+                                    break;
+                                }
+                                jr.beginArray();
+                                int i = 0;
+                                while (jr.hasNext()) {
+                                    if (jr.peek() != JsonToken.NUMBER)
+                                        jr.skipValue();
+                                    else if (i == 0)
+                                        lng = jr.nextDouble();
+                                    else if (i == 1)
+                                        lat = jr.nextDouble();
+                                    else
+                                        jr.skipValue();
+                                    i++;
+                                }
+                                jr.endArray();
+                                break;
+                            default:
+                                jr.skipValue();
+                        }
+                    }
+                    jr.endObject();
+                    break;
+                default:
+                    jr.skipValue();
+            }
+        }
+        jr.endObject();
+        if (point)
+            builder.add(name, lat, lng);
+    }
+}
@@ -0,0 +1,190 @@
+package com.atakmap.android.helloworld.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Burkhard-Keller tree of string keys for finding the keys within an edit
+ * distance of a search.   Each child of a node is stored under its distance
+ * from the node, so a search only descends into the children whose distance
+ * could be within range by the triangle inequality and visits a small part
+ * of the tree.
+ *
+ * Several values may share a key.   A removed key stays in the tree with no
+ * values until more than half of the keys are empty, when the tree is
+ * rebuilt.   Not thread safe.
+ *
+ * @param <T> the value stored under a key
+ */
+public class BKTree<T> {
+
+    private static class Node<T> {
+        final String key;
+        final Set<T> values = new HashSet<>();
+        Map<Integer, Node<T>> children;
+
+        Node(String key) {
+            this.key = key;
+        }
+    }
+
+    private Node<T> root;
+    private int keys;
+    private int emptyKeys;
+    private int size;
+
+    // rows for the distance computation
+    private int[] row = new int[16];
+    private int[] prev = new int[16];
+
+    public void add(String key, T value) {
+        Node<T> n = root;
+        boolean created = false;
+        if (n == null) {
+            n = root = new Node<>(key);
+            created = true;
+        }
+        while (!created) {
+            final int d = distance(key, n.key);
+            if (d == 0)
+                break;
+            if (n.children == null)
+                n.children = new HashMap<>();
+            Node<T> c = n.children.get(d);
+            if (c == null) {
+                n.children.put(d, c = new Node<>(key));
+                created = true;
+            }
+            n = c;
+        }
+        if (created)
+            ++keys;
+        else if (n.values.isEmpty())
+            --emptyKeys;
+        if (n.values.add(value))
+            ++size;
+    }
+
+    public boolean remove(String key, T value) {
+        final Node<T> n = findNode(key);
+        if (n == null || !n.values.remove(value))
+            return false;
+        --size;
+        if (n.values.isEmpty() && ++emptyKeys * 2 > keys)
+            rebuild();
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        root = null;
+        keys = 0;
+        emptyKeys = 0;
+        size = 0;
+    }
+
+    /**
+     * Find the values whose key is closest to the query.
+     *
+     * @param query the key to search for
+     * @param maxDistance the largest edit distance to accept
+     * @param out receives the values at the smallest distance found
+     * @return that distance, -1 if no key is within maxDistance
+     */
+    public int search(String query, int maxDistance, Collection<T> out) {
+        if (root == null)
+            return -1;
+        final List<Node<T>> best = new ArrayList<>();
+        int bestDistance = maxDistance;
+
+        final List<Node<T>> stack = new ArrayList<>();
+        stack.add(root);
+        while (!stack.isEmpty()) {
+            final Node<T> n = stack.remove(stack.size() - 1);
+            final int d = distance(query, n.key);
+            if (d <= bestDistance && !n.values.isEmpty()) {
+                if (d < bestDistance) {
+                    bestDistance = d;
+                    best.clear();
+                }
+                best.add(n);
+            }
+            if (n.children == null)
+                continue;
+            // anything further than the best so far is of no interest
+            for (Map.Entry<Integer, Node<T>> e : n.children.entrySet()) {
+                if (Math.abs(e.getKey() - d) <= bestDistance)
+                    stack.add(e.getValue());
+            }
+        }
+        if (best.isEmpty())
+            return -1;
+        for (Node<T> n : best)
+            out.addAll(n.values);
+        return bestDistance;
+    }
+
+    private Node<T> findNode(String key) {
+        Node<T> n = root;
+        while (n != null) {
+            final int d = distance(key, n.key);
+            if (d == 0)
+                return n;
+            n = (n.children == null) ? null : n.children.get(d);
+        }
+        return null;
+    }
+
+    private void rebuild() {
+        final List<Node<T>> live = new ArrayList<>();
+        final List<Node<T>> stack = new ArrayList<>();
+        if (root != null)
+            stack.add(root);
+        while (!stack.isEmpty()) {
+            final Node<T> n = stack.remove(stack.size() - 1);
+            if (!n.values.isEmpty())
+                live.add(n);
+            if (n.children != null)
+                stack.addAll(n.children.values());
+        }
+        clear();
+        for (Node<T> n : live) {
+            for (T v : n.values)
+                add(n.key, v);
+        }
+    }
+
+    /**
+     * @return the Levenshtein distance between the strings
+     */
+    int distance(String a, String b) {
+        final int m = b.length();
+        if (prev.length <= m) {
+            prev = new int[m + 1];
+            row = new int[m + 1];
+        }
+        for (int j = 0; j <= m; ++j)
+            prev[j] = j;
+        for (int i = 1; i <= a.length(); ++i) {
+            final char c = a.charAt(i - 1);
+            row[0] = i;
+            for (int j = 1; j <= m; ++j) {
+                final int cost = (b.charAt(j - 1) == c) ? 0 : 1;
+                row[j] = Math.min(Math.min(row[j - 1] + 1, prev[j] + 1),
+                        prev[j - 1] + cost);
+            }
+            final int[] t = prev;
+            prev = row;
+            row = t;
+        }
+        return prev[m];
+    }
+}
@@ -0,0 +1,450 @@
+package com.atakmap.android.helloworld.index;
+
+import com.atakmap.coremap.io.IOProvider;
+import com.atakmap.coremap.io.IOProviderFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Read only place name index stored as a sorted string table and memory
+ * mapped when opened, so lookups touch only the pages they need and do not
+ * load the table into the heap.   Names are keyed by their letters and
+ * digits in lower case, so "Rally Point", "rally-point" and "rallypoint" are
+ * the same key; several places may share a key.
+ *
+ * Exact and prefix lookups are a binary search of the table.   A fuzzy
+ * lookup searches a {@link BKTree} of the distinct keys, built on the first
+ * fuzzy lookup, so a name misheard anywhere, its first letter included, is
+ * found without comparing every key.   Files are accessed through the
+ * {@link IOProviderFactory}.
+ *
+ * <pre>
+ * int     magic
+ * int     count
+ * int     offset[count]   record offsets, in key order
+ * records                 u16 keyLength, key, double lat, double lng,
+ *                         u16 nameLength, name   (UTF-8)
+ * </pre>
+ */
+public class Gazetteer implements Closeable {
+
+    private static final int MAGIC = 0x475A5431; // GZT1
+
+    /**
+     * A place in the gazetteer
+     */
+    public static class Entry {
+        public final String name;
+        public final double latitude;
+        public final double longitude;
+
+        public Entry(String name, double latitude, double longitude) {
+            this.name = name;
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+
+        @Override
+        public String toString() {
+            return name + " (" + latitude + ", " + longitude + ")";
+        }
+    }
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int count;
+
+    // record indices by key, built on the first fuzzy lookup; guarded by this
+    private BKTree<Integer> fuzzy;
+
+    private Gazetteer(FileChannel channel, MappedByteBuffer buffer) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.count = buffer.getInt(4);
+    }
+
+    /**
+     * Map a gazetteer written by {@link Builder#write(File)}.
+     */
+    public static Gazetteer open(File f) throws IOException {
+        final FileChannel channel = IOProviderFactory.getChannel(f, "r");
+        try {
+            final long length = channel.size();
+            final MappedByteBuffer buf = channel.map(
+                    FileChannel.MapMode.READ_ONLY, 0, length);
+            if (length < 8 || buf.getInt(0) != MAGIC)
+                throw new IOException("not a gazetteer: " + f);
+            return new Gazetteer(channel, buf);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return the letters and digits of the name in lower case
+     */
+    public static String normalize(String name) {
+        final StringBuilder sb = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); ++i) {
+            final char c = name.charAt(i);
+            if (Character.isLetterOrDigit(c))
+                sb.append(Character.toLowerCase(c));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the places whose name matches exactly, once normalized
+     */
+    public List<Entry> find(String name) {
+        final List<Entry> ret = new ArrayList<>();
+        final byte[] key = keyBytes(name);
+        if (key.length == 0)
+            return ret;
+        for (int i = lowerBound(key); i < count
+                && compareKey(i, key, false) == 0; ++i)
+            ret.add(entry(i));
+        return ret;
+    }
+
+    /**
+     * @param prefix the start of the name
+     * @param limit the maximum number of places to return
+     * @return the places whose normalized name starts with the prefix, in
+     *         name order
+     */
+    public List<Entry> findPrefix(String prefix, int limit) {
+        final List<Entry> ret = new ArrayList<>();
+        final byte[] key = keyBytes(prefix);
+        for (int i = lowerBound(key); i < count && ret.size() < limit
+                && compareKey(i, key, true) == 0; ++i)
+            ret.add(entry(i));
+        return ret;
+    }
+
+    /**
+     * @param name the name as spoken
+     * @param maxEdits the largest edit distance to accept
+     * @return the places closest to the name by edit distance, an exact
+     *         match if there is one
+     */
+    public List<Entry> findFuzzy(String name, int maxEdits) {
+        final List<Entry> exact = find(name);
+        if (!exact.isEmpty() || maxEdits <= 0)
+            return exact;
+
+        final String key = normalize(name);
+        final List<Entry> ret = new ArrayList<>();
+        if (key.isEmpty())
+            return ret;
+        final List<Integer> hits = new ArrayList<>();
+        synchronized (this) {
+            if (fuzzy == null)
+                fuzzy = buildFuzzyIndex();
+            fuzzy.search(key, maxEdits, hits);
+        }
+        // in name order, as the other lookups
+        Collections.sort(hits);
+        for (int i : hits)
+            ret.add(entry(i));
+        return ret;
+    }
+
+    /**************************************************************************/
+
+    private static byte[] keyBytes(String name) {
+        return normalize(name).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the index of the first key not less than the given key
+     */
+    private int lowerBound(byte[] key) {
+        int lo = 0, hi = count;
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (compareKey(mid, key, false) < 0)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Compare the key of a record with the given key, unsigned byte order.
+     *
+     * @param prefix compare only the first key.length bytes of the record
+     */
+    private int compareKey(int index, byte[] key, boolean prefix) {
+        final int off = buffer.getInt(8 + index * 4);
+        final int len = buffer.getShort(off) & 0xFFFF;
+        final int n = Math.min(len, key.length);
+        for (int i = 0; i < n; ++i) {
+            final int c = (buffer.get(off + 2 + i) & 0xFF) - (key[i] & 0xFF);
+            if (c != 0)
+                return c;
+        }
+        if (prefix && len >= key.length)
+            return 0;
+        return len - key.length;
+    }
+
+    /**
+     * @return a tree of every key, holding the indices of its records
+     */
+    private BKTree<Integer> buildFuzzyIndex() {
+        final BKTree<Integer> tree = new BKTree<>();
+        final ByteBuffer b = buffer.duplicate();
+        byte[] bytes = new byte[64];
+        for (int i = 0; i < count; ++i) {
+            final int off = buffer.getInt(8 + i * 4);
+            final int len = buffer.getShort(off) & 0xFFFF;
+            if (bytes.length < len)
+                bytes = new byte[len];
+            b.position(off + 2);
+            b.get(bytes, 0, len);
+            // records sharing a key land on the same node
+            tree.add(new String(bytes, 0, len, StandardCharsets.UTF_8), i);
+        }
+        return tree;
+    }
+
+    private Entry entry(int index) {
+        int off = buffer.getInt(8 + index * 4);
+        off += 2 + (buffer.getShort(off) & 0xFFFF);
+        final double lat = buffer.getDouble(off);
+        final double lng = buffer.getDouble(off + 8);
+        off += 16;
+        final int nameLen = buffer.getShort(off) & 0xFFFF;
+        final byte[] name = new byte[nameLen];
+        final ByteBuffer b = buffer.duplicate();
+        b.position(off + 2);
+        b.get(name);
+        return new Entry(new String(name, StandardCharsets.UTF_8), lat, lng);
+    }
+
+    /**
+     * @return the entries sorted by distance from the given point, nearest
+     *         first
+     */
+    public static List<Entry> sortByDistance(List<Entry> entries,
+            final double latitude, final double longitude) {
+        final List<Entry> ret = new ArrayList<>(entries);
+        final double cos = Math.cos(Math.toRadians(latitude));
+        Collections.sort(ret, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry a, Entry b) {
+                return Double.compare(dist(a), dist(b));
+            }
+
+            private double dist(Entry e) {
+                double dLat = e.latitude - latitude;
+                double dLng = (e.longitude - longitude) * cos;
+                return dLat * dLat + dLng * dLng;
+            }
+        });
+        return ret;
+    }
+
+    /**************************************************************************/
+
+    /**
+     * Collects places and writes them out as a gazetteer file.
+     */
+    public static class Builder {
+
+        private final List<Entry> entries = new ArrayList<>();
+
+        public Builder add(String name, double latitude, double longitude) {
+            if (name == null || normalize(name).isEmpty()
+                    || Double.isNaN(latitude) || Double.isNaN(longitude))
+                return this;
+            entries.add(new Entry(name.trim(), latitude, longitude));
+            return this;
+        }
+
+        public int size() {
+            return entries.size();
+        }
+
+        /**
+         * Add the places in a CSV file.   The first line names the columns,
+         * a "name" column and "lat"/"latitude" and "lon"/"lng"/"longitude"
+         * columns are required.   Quoted fields are supported.
+         *
+         * @return the number of places added
+         */
+        public int addCsv(Reader reader) throws IOException {
+            final BufferedReader br = new BufferedReader(reader);
+            final String header = br.readLine();
+            if (header == null)
+                return 0;
+            final List<String> cols = parseCsvLine(header);
+            int name = -1, lat = -1, lng = -1;
+            for (int i = 0; i < cols.size(); ++i) {
+                switch (cols.get(i).trim().toLowerCase(Locale.US)) {
+                    case "name":
+                        name = i;
+                        break;
+                    case "lat":
+                    case "latitude":
+                        lat = i;
+                        break;
+                    case "lon":
+                    case "lng":
+                    case "long":
+                    case "longitude":
+                        lng = i;
+                        break;
+                }
+            }
+            if (name < 0 || lat < 0 || lng < 0)
+                throw new IOException("missing name, lat or lon column");
+
+            final int before = entries.size();
+            String line;
+            while ((line = br.readLine()) != null) {
+                final List<String> f = parseCsvLine(line);
+                if (f.size() <= Math.max(name, Math.max(lat, lng)))
+                    continue;
+                try {
+                    add(f.get(name), Double.parseDouble(f.get(lat).trim()),
+                            Double.parseDouble(f.get(lng).trim()));
+                } catch (NumberFormatException ignored) {
+                }
+            }
+            return entries.size() - before;
+        }
+
+        static List<String> parseCsvLine(String line) {
+            final List<String> ret = new ArrayList<>();
+            final StringBuilder sb = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); ++i) {
+                final char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < line.length()
+                            && line.charAt(i + 1) == '"') {
+                        sb.append('"');
+                        ++i;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        sb.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    ret.add(sb.toString());
+                    sb.setLength(0);
+                } else {
+                    sb.append(c);
+                }
+            }
+            ret.add(sb.toString());
+            return ret;
+        }
+
+        /**
+         * Sort the places and write the table.   The file is written to a
+         * temporary file of its own next to the destination and renamed, so
+         * an open table is never seen half written.
+         */
+        public void write(File f) throws IOException {
+            final int n = entries.size();
+            final byte[][] keys = new byte[n][];
+            final byte[][] names = new byte[n][];
+            final Integer[] order = new Integer[n];
+            for (int i = 0; i < n; ++i) {
+                keys[i] = keyBytes(entries.get(i).name);
+                names[i] = truncate(entries.get(i).name
+                        .getBytes(StandardCharsets.UTF_8));
+                keys[i] = truncate(keys[i]);
+                order[i] = i;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return compareBytes(keys[a], keys[b]);
+                }
+            });
+
+            final File tmp = IOProviderFactory.createTempFile(f.getName(),
+                    ".tmp", f.getParentFile());
+            boolean written = false;
+            try {
+                try (DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(
+                                IOProviderFactory.getOutputStream(tmp)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(n);
+                    int off = 8 + n * 4;
+                    for (Integer i : order) {
+                        out.writeInt(off);
+                        off += 2 + keys[i].length + 16 + 2 + names[i].length;
+                    }
+                    for (Integer i : order) {
+                        final Entry e = entries.get(i);
+                        out.writeShort(keys[i].length);
+                        out.write(keys[i]);
+                        out.writeDouble(e.latitude);
+                        out.writeDouble(e.longitude);
+                        out.writeShort(names[i].length);
+                        out.write(names[i]);
+                    }
+                }
+                if (!IOProviderFactory.renameTo(tmp, f)) {
+                    if (!IOProviderFactory.delete(f, IOProvider.SECURE_DELETE)
+                            || !IOProviderFactory.renameTo(tmp, f))
+                        throw new IOException("unable to replace " + f);
+                }
+                written = true;
+            } finally {
+                if (!written && IOProviderFactory.exists(tmp))
+                    IOProviderFactory.delete(tmp, IOProvider.SECURE_DELETE);
+            }
+        }
+
+        private static byte[] truncate(byte[] b) {
+            return (b.length <= 0xFFFF) ? b : Arrays.copyOf(b,
+                    0xFFFF);
+        }
+
+        private static int compareBytes(byte[] a, byte[] b) {
+            final int n = Math.min(a.length, b.length);
+            for (int i = 0; i < n; ++i) {
+                final int c = (a[i] & 0xFF) - (b[i] & 0xFF);
+                if (c != 0)
+                    return c;
+            }
+            return a.length - b.length;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.atakmap.android.helloworld.index;
+
+import com.atakmap.android.maps.MapItem;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hash index of map items on a few metadata keys, used to answer the
+ * metadata based {@link com.atakmap.android.maps.DeepMapItemQuery} searches
+ * without visiting every item.   A query is narrowed to the smallest set of
+ * items sharing one of the indexed values, the remaining criteria are then
+ * checked on just those items.   The values are captured when the item is
+ * added; items whose indexed metadata changes must be added again.
+ * Not thread safe.
+ */
+public class MetadataIndex {
+
+    public static final String[] DEFAULT_KEYS = {
+            "uid", "type", "callsign", "title"
+    };
+
+    private final String[] keys;
+    private final Map<String, Map<String, Set<MapItem>>> index = new HashMap<>();
+
+    // the values each item was indexed under, so removal does not depend on
+    // the item's current metadata
+    private final Map<MapItem, String[]> items = new IdentityHashMap<>();
+
+    public MetadataIndex() {
+        this(DEFAULT_KEYS);
+    }
+
+    public MetadataIndex(String... keys) {
+        this.keys = keys;
+        for (String k : keys)
+            index.put(k, new HashMap<String, Set<MapItem>>());
+    }
+
+    /**
+     * Add an item, or re-index it if already present.
+     */
+    public void add(MapItem item) {
+        remove(item);
+        final String[] values = new String[keys.length];
+        for (int i = 0; i < keys.length; ++i) {
+            values[i] = getValue(item, keys[i]);
+            if (values[i] == null)
+                continue;
+            final Map<String, Set<MapItem>> byValue = index.get(keys[i]);
+            Set<MapItem> set = byValue.get(values[i]);
+            if (set == null)
+                byValue.put(values[i], set = new HashSet<>());
+            set.add(item);
+        }
+        items.put(item, values);
+    }
+
+    public boolean remove(MapItem item) {
+        final String[] values = items.remove(item);
+        if (values == null)
+            return false;
+        for (int i = 0; i < keys.length; ++i) {
+            if (values[i] == null)
+                continue;
+            final Map<String, Set<MapItem>> byValue = index.get(keys[i]);
+            final Set<MapItem> set = byValue.get(values[i]);
+            if (set != null && set.remove(item) && set.isEmpty())
+                byValue.remove(values[i]);
+        }
+        return true;
+    }
+
+    public void clear() {
+        for (Map<String, Set<MapItem>> byValue : index.values())
+            byValue.clear();
+        items.clear();
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * Narrow a query to the items that could match.   The returned items
+     * still need to be checked with {@link #matches(MapItem, Map)} unless the
+     * query is empty.
+     *
+     * @param metadata the query, may be null
+     * @return the candidates, every item if the query has no indexed key
+     */
+    public Collection<MapItem> candidates(Map<String, String> metadata) {
+        Collection<MapItem> best = items.keySet();
+        if (metadata == null)
+            return best;
+        for (Map.Entry<String, String> e : metadata.entrySet()) {
+            final Map<String, Set<MapItem>> byValue = index.get(e.getKey());
+            if (byValue == null)
+                continue;
+            final Set<MapItem> set = byValue.get(e.getValue());
+            if (set == null)
+                return Collections.emptySet();
+            if (set.size() < best.size())
+                best = set;
+        }
+        return best;
+    }
+
+    /**
+     * @return true if every entry in the query equals the item's value
+     */
+    public static boolean matches(MapItem item, Map<String, String> metadata) {
+        if (metadata == null)
+            return true;
+        for (Map.Entry<String, String> e : metadata.entrySet()) {
+            final String v = getValue(item, e.getKey());
+            if (v == null ? e.getValue() != null : !v.equals(e.getValue()))
+                return false;
+        }
+        return true;
+    }
+
+    private static String getValue(MapItem item, String key) {
+        switch (key) {
+            case "uid":
+                return item.getUID();
+            case "type":
+                return item.getType();
+            case "title":
+                return item.getTitle();
+            default:
+                return item.getMetaString(key, null);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.atakmap.android.helloworld.index;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Substring search index over short strings such as titles.   Each string is
+ * lower cased once and broken into trigrams when it is added; a search only
+ * visits the values sharing the rarest trigram of the search terms and then
+ * confirms the match against the stored lower case string.   Searches shorter
+ * than a trigram fall back to a scan of the stored strings.
+ *
+ * @param <T> the indexed value
+ */
+public class NGramIndex<T> {
+
+    private static final int N = 3;
+
+    private final Map<String, Set<T>> grams = new HashMap<>();
+    private final Map<T, String> strings = new HashMap<>();
+
+    /**
+     * Index a value under the given text, replacing any previous text.
+     */
+    public synchronized void put(T value, String text) {
+        final String lower = text.toLowerCase();
+        final String existing = strings.get(value);
+        if (lower.equals(existing))
+            return;
+        if (existing != null)
+            remove(value);
+
+        strings.put(value, lower);
+        for (int i = 0; i + N <= lower.length(); ++i) {
+            final String g = lower.substring(i, i + N);
+            Set<T> set = grams.get(g);
+            if (set == null)
+                grams.put(g, set = new HashSet<>());
+            set.add(value);
+        }
+    }
+
+    public synchronized boolean remove(T value) {
+        final String lower = strings.remove(value);
+        if (lower == null)
+            return false;
+        for (int i = 0; i + N <= lower.length(); ++i) {
+            final String g = lower.substring(i, i + N);
+            final Set<T> set = grams.get(g);
+            if (set != null && set.remove(value) && set.isEmpty())
+                grams.remove(g);
+        }
+        return true;
+    }
+
+    public synchronized boolean contains(T value) {
+        return strings.containsKey(value);
+    }
+
+    public synchronized int size() {
+        return strings.size();
+    }
+
+    public synchronized void clear() {
+        grams.clear();
+        strings.clear();
+    }
+
+    /**
+     * @param terms the search terms, matched case insensitively as a substring
+     * @return the values whose text contains the terms
+     */
+    public synchronized Set<T> find(String terms) {
+        final String lower = terms.toLowerCase();
+        final Set<T> ret = new HashSet<>();
+        if (lower.length() < N) {
+            for (Map.Entry<T, String> e : strings.entrySet()) {
+                if (e.getValue().contains(lower))
+                    ret.add(e.getKey());
+            }
+            return ret;
+        }
+
+        // every trigram of the terms must be present, start from the rarest
+        Set<T> candidates = null;
+        for (int i = 0; i + N <= lower.length(); ++i) {
+            final Set<T> set = grams.get(lower.substring(i, i + N));
+            if (set == null)
+                return ret;
+            if (candidates == null || set.size() < candidates.size())
+                candidates = set;
+        }
+        for (T value : candidates) {
+            if (strings.get(value).contains(lower))
+                ret.add(value);
+        }
+        return ret;
+    }
+}
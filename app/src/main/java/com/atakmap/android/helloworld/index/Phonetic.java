@@ -0,0 +1,86 @@
+package com.atakmap.android.helloworld.index;
+
+/**
+ * Reduces a name to a rough phonetic key so that names a speech recognizer
+ * commonly confuses compare as equal, or nearly so, by edit distance.   All
+ * vowels become 'a', letters that sound alike share one letter, an 'h' after
+ * the first letter is dropped and repeated sounds collapse, so "Avalon",
+ * "Avelon" and "avallon" all encode as "avalan".   Digits are kept,
+ * everything else is removed.
+ */
+public final class Phonetic {
+
+    private Phonetic() {
+    }
+
+    public static String encode(String name) {
+        final StringBuilder sb = new StringBuilder(name.length());
+        final int n = name.length();
+        for (int i = 0; i < n; ++i) {
+            final char c = Character.toLowerCase(name.charAt(i));
+            final char next = (i + 1 < n)
+                    ? Character.toLowerCase(name.charAt(i + 1))
+                    : 0;
+            char out;
+            switch (c) {
+                case 'a':
+                case 'e':
+                case 'i':
+                case 'o':
+                case 'u':
+                case 'y':
+                    out = 'a';
+                    break;
+                case 'c':
+                    // soft c before e, i and y
+                    out = (next == 'e' || next == 'i' || next == 'y') ? 's'
+                            : 'k';
+                    break;
+                case 'q':
+                    out = 'k';
+                    break;
+                case 'z':
+                    out = 's';
+                    break;
+                case 'p':
+                    if (next == 'h') {
+                        out = 'f';
+                        ++i;
+                    } else {
+                        out = 'p';
+                    }
+                    break;
+                case 'h':
+                    // only sounded at the start of the name
+                    if (sb.length() > 0)
+                        continue;
+                    out = 'h';
+                    break;
+                default:
+                    if (!Character.isLetterOrDigit(c))
+                        continue;
+                    out = c;
+            }
+            // digits are not sounds, "11" must not become "1"
+            if (Character.isDigit(out) || sb.length() == 0
+                    || sb.charAt(sb.length() - 1) != out)
+                sb.append(out);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the digits of the name, in order; a recognizer does not
+     *         confuse "3" with "1" the way it confuses letters, so digits
+     *         are compared exactly rather than by sound
+     */
+    public static String digits(String name) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < name.length(); ++i) {
+            final char c = name.charAt(i);
+            if (c >= '0' && c <= '9')
+                sb.append(c);
+        }
+        return sb.toString();
+    }
+}
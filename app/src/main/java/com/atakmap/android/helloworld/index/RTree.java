@@ -0,0 +1,403 @@
+package com.atakmap.android.helloworld.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * A small in-memory R-tree (Guttman, quadratic split) of values keyed by
+ * their bounding boxes.   Each value appears at most once; inserting a value
+ * that is already present moves it to the new bounds.   Coordinates are
+ * plain x/y, callers indexing geodetic data pass longitude as x and latitude
+ * as y.   Not thread safe.
+ *
+ * @param <T> the indexed value
+ */
+public class RTree<T> {
+
+    private static final int MAX_ENTRIES = 16;
+    private static final int MIN_ENTRIES = MAX_ENTRIES * 2 / 5;
+
+    private final Map<T, Entry<T>> entries = new HashMap<>();
+    private Node root = new Node(true);
+
+    /**
+     * Distance from a query point to a box.   Must be zero for a point
+     * inside the box and must never decrease from a box to a box it
+     * contains, so that nodes can be pruned by their bounds.
+     */
+    public interface Metric {
+        double distance(double x, double y, double minX, double minY,
+                double maxX, double maxY);
+    }
+
+    /**
+     * Receives values in increasing distance order.
+     */
+    public interface NearestVisitor<T> {
+        /**
+         * @return false to stop the search
+         */
+        boolean visit(T value, double distance);
+    }
+
+    /**
+     * Add a value, or move it if it is already indexed.
+     */
+    public void insert(T value, double minX, double minY, double maxX,
+            double maxY) {
+        remove(value);
+        Entry<T> e = new Entry<>(value);
+        e.set(minX, minY, maxX, maxY);
+        entries.put(value, e);
+        insert(e);
+    }
+
+    /**
+     * @return true if the value was indexed
+     */
+    public boolean remove(T value) {
+        Entry<T> e = entries.remove(value);
+        if (e == null)
+            return false;
+        Node leaf = e.parent;
+        leaf.children.remove(e);
+        condense(leaf);
+        return true;
+    }
+
+    public boolean contains(T value) {
+        return entries.containsKey(value);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void clear() {
+        entries.clear();
+        root = new Node(true);
+    }
+
+    /**
+     * Collect every value whose bounds contain the point.
+     */
+    public void search(double x, double y, Collection<? super T> out) {
+        search(x, y, x, y, out);
+    }
+
+    /**
+     * Collect every value whose bounds intersect the box.
+     */
+    public void search(double minX, double minY, double maxX, double maxY,
+            Collection<? super T> out) {
+        if (root.children.isEmpty())
+            return;
+        search(root, minX, minY, maxX, maxY, out);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void search(Node node, double minX, double minY, double maxX,
+            double maxY, Collection<? super T> out) {
+        for (Box b : node.children) {
+            if (!b.intersects(minX, minY, maxX, maxY))
+                continue;
+            if (node.leaf)
+                out.add(((Entry<T>) b).value);
+            else
+                search((Node) b, minX, minY, maxX, maxY, out);
+        }
+    }
+
+    /**
+     * Visit values in increasing distance from the point, best-first, until
+     * the visitor stops the search or the next value is further than the
+     * maximum distance.
+     */
+    @SuppressWarnings("unchecked")
+    public void nearest(double x, double y, double maxDistance,
+            Metric metric, NearestVisitor<? super T> visitor) {
+        if (root.children.isEmpty())
+            return;
+        final PriorityQueue<Candidate> queue = new PriorityQueue<>();
+        queue.add(new Candidate(root, 0d));
+        while (!queue.isEmpty()) {
+            final Candidate c = queue.poll();
+            if (c.distance > maxDistance)
+                return;
+            if (c.box instanceof Entry) {
+                if (!visitor.visit(((Entry<T>) c.box).value, c.distance))
+                    return;
+                continue;
+            }
+            for (Box b : ((Node) c.box).children) {
+                final double d = metric.distance(x, y, b.minX, b.minY,
+                        b.maxX, b.maxY);
+                if (d <= maxDistance)
+                    queue.add(new Candidate(b, d));
+            }
+        }
+    }
+
+    /**************************************************************************/
+
+    private void insert(Entry<T> e) {
+        Node leaf = chooseLeaf(root, e);
+        leaf.add(e);
+        Node split = leaf.children.size() > MAX_ENTRIES ? split(leaf) : null;
+        adjust(leaf, split);
+    }
+
+    private Node chooseLeaf(Node node, Box b) {
+        while (!node.leaf) {
+            Node best = null;
+            double bestEnlargement = Double.MAX_VALUE;
+            double bestArea = Double.MAX_VALUE;
+            for (Box c : node.children) {
+                final double area = c.area();
+                final double enlargement = c.unionArea(b) - area;
+                if (enlargement < bestEnlargement
+                        || (enlargement == bestEnlargement
+                                && area < bestArea)) {
+                    best = (Node) c;
+                    bestEnlargement = enlargement;
+                    bestArea = area;
+                }
+            }
+            node = best;
+        }
+        return node;
+    }
+
+    /**
+     * Propagate bounds and splits from a modified node up to the root.
+     */
+    private void adjust(Node node, Node split) {
+        while (node != root) {
+            Node parent = node.parent;
+            node.recompute();
+            if (split != null) {
+                split.recompute();
+                parent.add(split);
+                split = parent.children.size() > MAX_ENTRIES ? split(parent)
+                        : null;
+            }
+            node = parent;
+        }
+        root.recompute();
+        if (split != null) {
+            split.recompute();
+            Node newRoot = new Node(false);
+            newRoot.add(root);
+            newRoot.add(split);
+            newRoot.recompute();
+            root = newRoot;
+        }
+    }
+
+    /**
+     * Quadratic split, the node keeps one group and the returned sibling
+     * takes the other.
+     */
+    private Node split(Node node) {
+        final List<Box> pool = new ArrayList<>(node.children);
+        node.children.clear();
+        final Node sibling = new Node(node.leaf);
+
+        // pick the two seeds that would waste the most area together
+        int seedA = 0, seedB = 1;
+        double worst = -Double.MAX_VALUE;
+        for (int i = 0; i < pool.size(); ++i) {
+            for (int j = i + 1; j < pool.size(); ++j) {
+                final Box a = pool.get(i);
+                final Box b = pool.get(j);
+                final double waste = a.unionArea(b) - a.area() - b.area();
+                if (waste > worst) {
+                    worst = waste;
+                    seedA = i;
+                    seedB = j;
+                }
+            }
+        }
+        final Box a = pool.get(seedA);
+        final Box b = pool.get(seedB);
+        pool.remove(seedB);
+        pool.remove(seedA);
+        node.add(a);
+        node.recompute();
+        sibling.add(b);
+        sibling.recompute();
+
+        while (!pool.isEmpty()) {
+            // make sure both groups end up with the minimum fill
+            if (node.children.size() + pool.size() == MIN_ENTRIES) {
+                for (Box c : pool)
+                    node.add(c);
+                break;
+            }
+            if (sibling.children.size() + pool.size() == MIN_ENTRIES) {
+                for (Box c : pool)
+                    sibling.add(c);
+                break;
+            }
+
+            // assign the entry with the strongest preference next
+            int pick = 0;
+            double maxDiff = -1d;
+            for (int i = 0; i < pool.size(); ++i) {
+                final Box c = pool.get(i);
+                final double d = Math.abs((node.unionArea(c) - node.area())
+                        - (sibling.unionArea(c) - sibling.area()));
+                if (d > maxDiff) {
+                    maxDiff = d;
+                    pick = i;
+                }
+            }
+            final Box c = pool.remove(pick);
+            final double growNode = node.unionArea(c) - node.area();
+            final double growSibling = sibling.unionArea(c) - sibling.area();
+            final Node target;
+            if (growNode != growSibling)
+                target = growNode < growSibling ? node : sibling;
+            else if (node.area() != sibling.area())
+                target = node.area() < sibling.area() ? node : sibling;
+            else
+                target = node.children.size() <= sibling.children.size()
+                        ? node
+                        : sibling;
+            target.add(c);
+            target.expand(c);
+        }
+        node.recompute();
+        sibling.recompute();
+        return sibling;
+    }
+
+    /**
+     * Remove underfull nodes on the way up from a leaf that lost an entry
+     * and reinsert their entries.
+     */
+    @SuppressWarnings("unchecked")
+    private void condense(Node node) {
+        final List<Entry<T>> orphans = new ArrayList<>();
+        while (node != root) {
+            Node parent = node.parent;
+            if (node.children.size() < MIN_ENTRIES) {
+                parent.children.remove(node);
+                collect(node, orphans);
+            } else {
+                node.recompute();
+            }
+            node = parent;
+        }
+        root.recompute();
+        if (!root.leaf && root.children.size() == 1) {
+            root = (Node) root.children.get(0);
+            root.parent = null;
+        } else if (root.children.isEmpty()) {
+            root = new Node(true);
+        }
+        for (Entry<T> e : orphans)
+            insert(e);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void collect(Node node, List<Entry<T>> out) {
+        for (Box b : node.children) {
+            if (node.leaf)
+                out.add((Entry<T>) b);
+            else
+                collect((Node) b, out);
+        }
+    }
+
+    /**************************************************************************/
+
+    static class Box {
+        double minX;
+        double minY;
+        double maxX;
+        double maxY;
+        Node parent;
+
+        void set(double minX, double minY, double maxX, double maxY) {
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+        }
+
+        void expand(Box b) {
+            minX = Math.min(minX, b.minX);
+            minY = Math.min(minY, b.minY);
+            maxX = Math.max(maxX, b.maxX);
+            maxY = Math.max(maxY, b.maxY);
+        }
+
+        double area() {
+            return (maxX - minX) * (maxY - minY);
+        }
+
+        double unionArea(Box b) {
+            return (Math.max(maxX, b.maxX) - Math.min(minX, b.minX))
+                    * (Math.max(maxY, b.maxY) - Math.min(minY, b.minY));
+        }
+
+        boolean intersects(double minX, double minY, double maxX,
+                double maxY) {
+            return this.minX <= maxX && this.maxX >= minX
+                    && this.minY <= maxY && this.maxY >= minY;
+        }
+    }
+
+    static final class Node extends Box {
+        final boolean leaf;
+        final List<Box> children = new ArrayList<>(MAX_ENTRIES + 1);
+
+        Node(boolean leaf) {
+            this.leaf = leaf;
+        }
+
+        void add(Box b) {
+            children.add(b);
+            b.parent = this;
+        }
+
+        void recompute() {
+            if (children.isEmpty()) {
+                set(0d, 0d, 0d, 0d);
+                return;
+            }
+            final Box first = children.get(0);
+            set(first.minX, first.minY, first.maxX, first.maxY);
+            for (int i = 1; i < children.size(); ++i)
+                expand(children.get(i));
+        }
+    }
+
+    private static final class Candidate implements Comparable<Candidate> {
+        final Box box;
+        final double distance;
+
+        Candidate(Box box, double distance) {
+            this.box = box;
+            this.distance = distance;
+        }
+
+        @Override
+        public int compareTo(Candidate o) {
+            return Double.compare(distance, o.distance);
+        }
+    }
+
+    static final class Entry<T> extends Box {
+        final T value;
+
+        Entry(T value) {
+            this.value = value;
+        }
+    }
+}
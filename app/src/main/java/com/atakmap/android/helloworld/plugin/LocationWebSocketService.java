@@ -3,6 +3,7 @@ package com.atakmap.android.helloworld.plugin;
 import android.os.Handler;
 import android.os.Looper;
 
+import com.atakmap.android.helloworld.feed.SharedHttpClient;
 import com.atakmap.coremap.log.Log;
 
 import org.json.JSONException;
@@ -41,8 +42,9 @@ public class LocationWebSocketService {
         this.websocketUrl = url;
         this.reconnectHandler = new Handler(Looper.getMainLooper());
 
-        // Configure OkHttp client with timeouts
-        this.client = new OkHttpClient.Builder()
+        // Configure OkHttp client with timeouts, sharing the plugin's
+        // connection pool and dispatcher
+        this.client = SharedHttpClient.getInstance().newBuilder()
                 .connectTimeout(10, TimeUnit.SECONDS)
                 .readTimeout(0, TimeUnit.MILLISECONDS) // No timeout for WebSocket
                 .writeTimeout(10, TimeUnit.SECONDS)
@@ -253,9 +255,8 @@ public class LocationWebSocketService {
      * Clean up resources
      */
     public void dispose() {
+        // the dispatcher belongs to the shared client and is left running
+        // for the feeds and for the next service
         disconnect();
-        if (client != null) {
-            client.dispatcher().executorService().shutdown();
-        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,175 @@
+package com.atakmap.android.helloworld.routes;
+
+import androidx.annotation.NonNull;
+
+import com.atakmap.coremap.maps.coords.GeoCalculations;
+import com.atakmap.coremap.maps.coords.GeoPoint;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Precomputed geometry of a route for finding the point a distance along it.
+ * The slant distance from the start to every vertex and the bearing and
+ * inclination of every segment are computed once, so a point at a distance
+ * is a binary search for its segment and one
+ * {@link GeoCalculations#pointAtDistance} instead of a walk of the route.
+ *
+ * The index does not follow changes to the route, build a new one when the
+ * points change.
+ */
+public class RouteGeometryIndex {
+
+    // within this many segments a forward scan beats a binary search
+    private static final int SCAN_SEGMENTS = 8;
+
+    private final GeoPoint[] points;
+
+    // distance from the first point to each point, in meters
+    private final double[] cumulative;
+
+    // bearing and inclination from each point to the next
+    private final double[] azimuth;
+    private final double[] inclination;
+
+    public RouteGeometryIndex(@NonNull List<GeoPoint> points) {
+        this(points.toArray(new GeoPoint[0]));
+    }
+
+    public RouteGeometryIndex(@NonNull GeoPoint[] points) {
+        if (points.length == 0)
+            throw new IllegalArgumentException("route has no points");
+        this.points = points.clone();
+
+        final int n = this.points.length;
+        cumulative = new double[n];
+        azimuth = new double[Math.max(0, n - 1)];
+        inclination = new double[azimuth.length];
+        for (int i = 1; i < n; ++i) {
+            final GeoPoint a = this.points[i - 1];
+            final GeoPoint b = this.points[i];
+            final double dist = GeoCalculations.slantDistanceTo(a, b);
+            cumulative[i] = cumulative[i - 1] + dist;
+            azimuth[i - 1] = GeoCalculations.bearingTo(a, b);
+            if (dist <= 0 || Double.isNaN(a.getAltitude())
+                    || Double.isNaN(b.getAltitude())) {
+                inclination[i - 1] = 0;
+            } else {
+                final double height = b.getAltitude() - a.getAltitude();
+                inclination[i - 1] = Math
+                        .asin(Math.max(-1d, Math.min(1d, height / dist)));
+            }
+        }
+    }
+
+    /**
+     * @return the number of points on the route
+     */
+    public int size() {
+        return points.length;
+    }
+
+    /**
+     * @return the slant length of the route in meters
+     */
+    public double getLength() {
+        return cumulative[cumulative.length - 1];
+    }
+
+    /**
+     * @return the distance along the route to the point at the index
+     */
+    public double getDistanceTo(int index) {
+        return cumulative[index];
+    }
+
+    /**
+     * @param distance the distance along the route in meters
+     * @return the index of the segment the distance falls on, the segment
+     *         from that point to the next
+     */
+    public int segmentAt(double distance) {
+        return segmentAt(distance, 0);
+    }
+
+    /**
+     * @param distance the distance along the route in meters
+     * @return the point on the route at the distance, the first or last
+     *         point when the distance is before the start or past the end
+     */
+    public GeoPoint pointAt(double distance) {
+        return pointOn(segmentAt(distance, 0), distance);
+    }
+
+    /**
+     * Find the points at many distances in one pass.   Distances in
+     * increasing order, such as the frames of an animation, are found by
+     * stepping forward from the last segment, in any other order by a binary
+     * search.
+     *
+     * @param distances the distances along the route in meters
+     * @return the point at each distance, as for {@link #pointAt(double)}
+     */
+    public GeoPoint[] pointsAt(@NonNull double[] distances) {
+        final GeoPoint[] out = new GeoPoint[distances.length];
+        int segment = 0;
+        for (int i = 0; i < distances.length; ++i) {
+            segment = segmentAt(distances[i], segment);
+            out[i] = pointOn(segment, distances[i]);
+        }
+        return out;
+    }
+
+    /**
+     * @param start the distance of the first sample in meters
+     * @param step the distance between samples in meters
+     * @param count the number of samples
+     * @return the points spaced evenly along the route
+     */
+    public GeoPoint[] sample(double start, double step, int count) {
+        final double[] distances = new double[count];
+        for (int i = 0; i < count; ++i)
+            distances[i] = start + step * i;
+        return pointsAt(distances);
+    }
+
+    private int segmentAt(double distance, int hint) {
+        final int last = Math.max(0, points.length - 2);
+        if (!(distance > 0))
+            return 0;
+        if (distance >= getLength())
+            return last;
+
+        // step forward from the hint when the distance is just ahead
+        if (hint >= 0 && hint <= last && cumulative[hint] <= distance) {
+            final int end = Math.min(last, hint + SCAN_SEGMENTS);
+            int i = hint;
+            while (i < end && cumulative[i + 1] <= distance)
+                ++i;
+            if (cumulative[i + 1] > distance)
+                return i;
+        }
+
+        // the last point at or before the distance
+        final int i = Arrays.binarySearch(cumulative, distance);
+        if (i < 0)
+            return Math.min(last, -i - 2);
+        // on a vertex, take the last of any zero length segments
+        int j = i;
+        while (j < last && cumulative[j + 1] == distance)
+            ++j;
+        return Math.min(last, j);
+    }
+
+    private GeoPoint pointOn(int segment, double distance) {
+        if (points.length == 1 || !(distance > 0))
+            return points[0];
+        if (distance >= getLength())
+            return points[points.length - 1];
+        final double offset = distance - cumulative[segment];
+        if (offset <= 0)
+            return points[segment];
+        return GeoCalculations.pointAtDistance(points[segment],
+                azimuth[segment], offset, inclination[segment]);
+    }
+}
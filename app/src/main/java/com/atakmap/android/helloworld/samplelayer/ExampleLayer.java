@@ -12,16 +12,15 @@ import com.atakmap.coremap.maps.coords.MutableGeoBounds;
 import com.atakmap.map.layer.AbstractLayer;
 
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 
+import java.io.IOException;
 import java.util.UUID;
 
 public class ExampleLayer extends AbstractLayer {
 
     public static final String TAG = "ExampleLayer";
 
-    final int[] layerARGB;
+    final TiledImageSource source;
     final int layerWidth;
     final int layerHeight;
 
@@ -33,7 +32,17 @@ public class ExampleLayer extends AbstractLayer {
     private final Context pluginContext;
     private final MetaShape metaShape;
 
-    public ExampleLayer(Context plugin, final String name, final String uri) {
+    /**
+     * Create an example layer for an image file.   Only the image bounds are
+     * read here, the pixels are decoded a tile at a time when rendered.
+     *
+     * @param plugin the plugin context
+     * @param name the name of the layer
+     * @param uri the path to the image file
+     * @throws IOException if the image could not be read
+     */
+    public ExampleLayer(Context plugin, final String name, final String uri)
+            throws IOException {
         super(name);
 
         this.pluginContext = plugin;
@@ -43,20 +52,16 @@ public class ExampleLayer extends AbstractLayer {
         this.lowerRight = GeoPoint.createMutable();
         this.lowerLeft = GeoPoint.createMutable();
 
-        final Bitmap bitmap = BitmapFactory.decodeFile(uri);
+        source = new TiledImageSource(uri);
         upperLeft.set(50, -50);
         upperRight.set(50, -40);
         lowerRight.set(40, -40);
         lowerLeft.set(40, -50);
 
-        layerWidth = bitmap.getWidth();
-        layerHeight = bitmap.getHeight();
+        layerWidth = source.getWidth();
+        layerHeight = source.getHeight();
         Log.d(TAG,
-                "decode file: " + uri + " " + layerWidth + " " + layerHeight);
-        layerARGB = new int[layerHeight * layerWidth];
-
-        bitmap.getPixels(layerARGB, 0, layerWidth, 0, 0, layerWidth,
-                layerHeight);
+                "open file: " + uri + " " + layerWidth + " " + layerHeight);
 
         metaShape = new MetaShape(UUID.randomUUID().toString()) {
             @Override
@@ -79,7 +84,6 @@ public class ExampleLayer extends AbstractLayer {
         metaShape.setType("hello_world_layer");
         metaShape.setMetaString("menu", PluginMenuParser.getMenu(
                 pluginContext, "menus/layer_menu.xml"));
-        bitmap.recycle();
     }
 
     public GeoBounds getBounds() {
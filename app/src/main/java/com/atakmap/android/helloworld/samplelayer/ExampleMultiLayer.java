@@ -12,16 +12,15 @@ import com.atakmap.coremap.maps.coords.MutableGeoBounds;
 import com.atakmap.map.layer.AbstractLayer;
 
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 
+import java.io.IOException;
 import java.util.UUID;
 
 public class ExampleMultiLayer extends AbstractLayer {
 
     public static final String TAG = "ExampleMultiLayer";
 
-    final int[] layerARGB;
+    final TiledImageSource source;
     final int layerWidth;
     final int layerHeight;
 
@@ -33,10 +32,24 @@ public class ExampleMultiLayer extends AbstractLayer {
     private final Context pluginContext;
     private final MetaShape metaShape;
 
+    /**
+     * Create an example layer for an image file displayed at the altitude
+     * of the supplied corners.   Only the image bounds are read here, the
+     * pixels are decoded a tile at a time when rendered.
+     *
+     * @param plugin the plugin context
+     * @param name the name of the layer
+     * @param uri the path to the image file
+     * @param ul the upper left corner
+     * @param ur the upper right corner
+     * @param lr the lower right corner
+     * @param ll the lower left corner
+     * @throws IOException if the image could not be read
+     */
     public ExampleMultiLayer(Context plugin, final String name,
             final String uri,
             final GeoPoint ul, final GeoPoint ur,
-            final GeoPoint lr, final GeoPoint ll) {
+            final GeoPoint lr, final GeoPoint ll) throws IOException {
         super(name);
 
         this.pluginContext = plugin;
@@ -46,21 +59,16 @@ public class ExampleMultiLayer extends AbstractLayer {
         this.lowerRight = GeoPoint.createMutable();
         this.lowerLeft = GeoPoint.createMutable();
 
-        final Bitmap bitmap = BitmapFactory.decodeFile(uri);
+        source = new TiledImageSource(uri);
         upperRight.set(ur);
         lowerRight.set(lr);
         lowerLeft.set(ll);
         upperLeft.set(ul);
 
-        layerWidth = bitmap.getWidth();
-        layerHeight = bitmap.getHeight();
+        layerWidth = source.getWidth();
+        layerHeight = source.getHeight();
         Log.d(TAG,
-                "decode file: " + uri + " " + layerWidth + " " + layerHeight);
-        layerARGB = new int[layerHeight * layerWidth];
-
-        bitmap.getPixels(layerARGB, 0, layerWidth, 0, 0, layerWidth,
-                layerHeight);
-        bitmap.recycle();
+                "open file: " + uri + " " + layerWidth + " " + layerHeight);
         metaShape = new MetaShape(UUID.randomUUID().toString()) {
             @Override
             public GeoPointMetaData[] getMetaDataPoints() {
@@ -83,7 +91,6 @@ public class ExampleMultiLayer extends AbstractLayer {
         metaShape.setType("hello_world_multilayer");
         metaShape.setMetaString("menu", PluginMenuParser.getMenu(
                 pluginContext, "menus/layer_menu.xml"));
-        bitmap.recycle();
     }
 
     public GeoBounds getBounds() {
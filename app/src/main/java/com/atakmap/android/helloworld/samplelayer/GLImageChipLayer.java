@@ -0,0 +1,357 @@
+package com.atakmap.android.helloworld.samplelayer;
+
+import android.graphics.Bitmap;
+import android.util.Pair;
+
+import com.atakmap.android.helloworld.gl.ShelfAtlas;
+import com.atakmap.coremap.maps.coords.GeoBounds;
+import com.atakmap.coremap.maps.coords.GeoPoint;
+import com.atakmap.map.MapRenderer;
+import com.atakmap.map.layer.Layer;
+import com.atakmap.map.layer.control.SurfaceRendererControl;
+import com.atakmap.map.layer.feature.geometry.Envelope;
+import com.atakmap.map.layer.opengl.GLAbstractLayer;
+import com.atakmap.map.layer.opengl.GLLayer2;
+import com.atakmap.map.layer.opengl.GLLayerSpi2;
+import com.atakmap.map.opengl.GLMapView;
+import com.atakmap.opengl.GLES20FixedPipeline;
+import com.atakmap.opengl.GLTexture;
+import com.atakmap.util.Visitor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Renderer for {@link ImageChipLayer}.   Chips are packed into shared
+ * ATLAS_SIZE x ATLAS_SIZE textures by a {@link ShelfAtlas}, which takes back
+ * the space of replaced and removed chips.   Each frame
+ * the chips are culled against the bounds of the current pass, the corners
+ * of the survivors are projected in a single forward call and written to one
+ * interleaved position / texture coordinate buffer, and every atlas is then
+ * drawn with a single glDrawArrays.
+ */
+public class GLImageChipLayer extends GLAbstractLayer
+        implements ImageChipLayer.OnChipsChangedListener,
+        ShelfAtlas.Listener<ImageChipLayer.Chip> {
+
+    public final static GLLayerSpi2 SPI = new GLLayerSpi2() {
+        @Override
+        public int getPriority() {
+            // ImageChipLayer : Layer
+            return 1;
+        }
+
+        @Override
+        public GLLayer2 create(Pair<MapRenderer, Layer> object) {
+            if (!(object.second instanceof ImageChipLayer))
+                return null;
+            return new GLImageChipLayer(object.first,
+                    (ImageChipLayer) object.second);
+        }
+    };
+
+    private static final int ATLAS_SIZE = 2048;
+
+    // gap left between chips so filtering does not bleed neighbors in
+    private static final int PADDING = 2;
+
+    // x, y, u, v
+    private static final int VERTEX_FLOATS = 4;
+    private static final int VERTEX_STRIDE = VERTEX_FLOATS * 4;
+
+    /*************************************************************************/
+
+    private final ImageChipLayer subject;
+
+    // all state below is only touched on the GL thread
+    private final Map<String, GLChip> chips = new HashMap<>();
+    private final Map<ShelfAtlas.Page<ImageChipLayer.Chip>, GLTexture> textures = new HashMap<>();
+    private final ShelfAtlas<ImageChipLayer.Chip> atlas = new ShelfAtlas<>(
+            ATLAS_SIZE, PADDING, this);
+
+    private int[] drawFirst = new int[4];
+    private int[] drawCount = new int[4];
+
+    private DoubleBuffer points;
+    private FloatBuffer projected;
+    private FloatBuffer interleaved;
+
+    private final AtomicBoolean syncQueued = new AtomicBoolean(false);
+    private final Runnable sync = new Runnable() {
+        @Override
+        public void run() {
+            syncQueued.set(false);
+            syncChips();
+        }
+    };
+
+    public GLImageChipLayer(MapRenderer surface, ImageChipLayer subject) {
+        super(surface, subject);
+        this.subject = subject;
+    }
+
+    @Override
+    protected void init() {
+        super.init();
+        subject.addOnChipsChangedListener(this);
+        syncChips();
+    }
+
+    @Override
+    public void onChipsChanged(ImageChipLayer layer) {
+        // a burst of adds results in a single sync on the GL thread
+        if (syncQueued.compareAndSet(false, true))
+            renderContext.queueEvent(sync);
+    }
+
+    @Override
+    public void release() {
+        subject.removeOnChipsChangedListener(this);
+        atlas.clear();
+        chips.clear();
+        points = null;
+        projected = null;
+        interleaved = null;
+        super.release();
+    }
+
+    /**
+     * Bring the atlases in line with the chips currently on the layer.
+     */
+    private void syncChips() {
+        final List<ImageChipLayer.Chip> current = subject.getChips();
+        final Map<String, ImageChipLayer.Chip> live = new HashMap<>();
+        for (ImageChipLayer.Chip c : current)
+            live.put(c.uid, c);
+        final List<GeoBounds> dirty = new ArrayList<>();
+
+        // free removed and replaced chips first so that their space can be
+        // taken by the new ones
+        Iterator<GLChip> it = chips.values().iterator();
+        while (it.hasNext()) {
+            GLChip chip = it.next();
+            if (live.get(chip.source.uid) != chip.source) {
+                atlas.remove(chip.source);
+                dirty.add(chip.source.bounds);
+                it.remove();
+            }
+        }
+
+        for (ImageChipLayer.Chip c : current) {
+            if (chips.containsKey(c.uid) || c.bitmap.isRecycled())
+                continue;
+            if (atlas.add(c, c.bitmap.getWidth(),
+                    c.bitmap.getHeight()) != null)
+                dirty.add(c.bounds);
+        }
+        atlas.releaseEmptyPages();
+
+        ensureCapacity(chips.size());
+        markDirty(dirty);
+    }
+
+    @Override
+    public void onPageAdded(ShelfAtlas.Page<ImageChipLayer.Chip> page) {
+        textures.put(page, new GLTexture(ATLAS_SIZE, ATLAS_SIZE,
+                Bitmap.Config.ARGB_8888));
+    }
+
+    @Override
+    public void onPageRemoved(ShelfAtlas.Page<ImageChipLayer.Chip> page) {
+        final GLTexture texture = textures.remove(page);
+        if (texture != null)
+            texture.release();
+    }
+
+    @Override
+    public void onPlaced(ImageChipLayer.Chip c,
+            ShelfAtlas.Slot<ImageChipLayer.Chip> slot) {
+        textures.get(slot.page).load(c.bitmap, slot.x, slot.y);
+        chips.put(c.uid, new GLChip(c, slot));
+    }
+
+    private void ensureCapacity(int count) {
+        if (points != null && points.capacity() >= count * 8)
+            return;
+        int cap = 64;
+        while (cap < count)
+            cap <<= 1;
+        points = ByteBuffer.allocateDirect(cap * 8 * 8)
+                .order(ByteOrder.nativeOrder()).asDoubleBuffer();
+        projected = ByteBuffer.allocateDirect(cap * 8 * 4)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        interleaved = ByteBuffer.allocateDirect(cap * 6 * VERTEX_STRIDE)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    @Override
+    protected void drawImpl(GLMapView view) {
+        if (chips.isEmpty())
+            return;
+
+        final double north = view.currentPass.northBound;
+        final double south = view.currentPass.southBound;
+        final double east = view.currentPass.eastBound;
+        final double west = view.currentPass.westBound;
+
+        final List<ShelfAtlas.Page<ImageChipLayer.Chip>> pages = atlas
+                .getPages();
+        if (drawFirst.length < pages.size()) {
+            drawFirst = new int[pages.size() * 2];
+            drawCount = new int[pages.size() * 2];
+        }
+
+        // cull and gather the corners of the visible chips, page by page
+        int visible = 0;
+        points.clear();
+        for (int i = 0; i < pages.size(); ++i) {
+            drawFirst[i] = visible;
+            drawCount[i] = 0;
+            for (ImageChipLayer.Chip c : pages.get(i).getKeys()) {
+                final GLChip chip = chips.get(c.uid);
+                final GeoBounds b = c.bounds;
+                if (b.getSouth() > north || b.getNorth() < south
+                        || b.getWest() > east || b.getEast() < west)
+                    continue;
+                putPoint(c.upperLeft);
+                putPoint(c.upperRight);
+                putPoint(c.lowerRight);
+                putPoint(c.lowerLeft);
+                chip.drawIndex = visible++;
+                drawCount[i]++;
+            }
+        }
+        if (visible == 0)
+            return;
+        points.flip();
+
+        // one projection for every corner of every visible chip
+        projected.clear();
+        view.forward(points, 2, projected, 2);
+
+        // two triangles per chip, UL UR LR and UL LR LL
+        interleaved.clear();
+        for (ShelfAtlas.Page<ImageChipLayer.Chip> page : pages) {
+            for (ImageChipLayer.Chip c : page.getKeys()) {
+                final GLChip chip = chips.get(c.uid);
+                if (chip.drawIndex < 0)
+                    continue;
+                final int p = chip.drawIndex * 8;
+                putVertex(p, chip.u0, chip.v0);
+                putVertex(p + 2, chip.u1, chip.v0);
+                putVertex(p + 4, chip.u1, chip.v1);
+                putVertex(p, chip.u0, chip.v0);
+                putVertex(p + 4, chip.u1, chip.v1);
+                putVertex(p + 6, chip.u0, chip.v1);
+                chip.drawIndex = -1;
+            }
+        }
+        interleaved.flip();
+
+        GLES20FixedPipeline.glEnableClientState(
+                GLES20FixedPipeline.GL_VERTEX_ARRAY);
+        GLES20FixedPipeline.glEnableClientState(
+                GLES20FixedPipeline.GL_TEXTURE_COORD_ARRAY);
+        GLES20FixedPipeline.glEnable(GLES20FixedPipeline.GL_TEXTURE_2D);
+        GLES20FixedPipeline.glEnable(GLES20FixedPipeline.GL_BLEND);
+        // Bitmap uploads are premultiplied
+        GLES20FixedPipeline.glBlendFunc(GLES20FixedPipeline.GL_ONE,
+                GLES20FixedPipeline.GL_ONE_MINUS_SRC_ALPHA);
+        GLES20FixedPipeline.glColor4f(1f, 1f, 1f, 1f);
+
+        for (int i = 0; i < pages.size(); ++i) {
+            if (drawCount[i] == 0)
+                continue;
+            final int offset = drawFirst[i] * 6 * VERTEX_FLOATS;
+
+            interleaved.position(offset);
+            final FloatBuffer pos = interleaved.slice();
+            interleaved.position(offset + 2);
+            final FloatBuffer tex = interleaved.slice();
+            interleaved.position(0);
+
+            GLES20FixedPipeline.glBindTexture(
+                    GLES20FixedPipeline.GL_TEXTURE_2D,
+                    textures.get(pages.get(i)).getTexId());
+            GLES20FixedPipeline.glVertexPointer(2,
+                    GLES20FixedPipeline.GL_FLOAT, VERTEX_STRIDE, pos);
+            GLES20FixedPipeline.glTexCoordPointer(2,
+                    GLES20FixedPipeline.GL_FLOAT, VERTEX_STRIDE, tex);
+            GLES20FixedPipeline.glDrawArrays(GLES20FixedPipeline.GL_TRIANGLES,
+                    0, drawCount[i] * 6);
+        }
+
+        GLES20FixedPipeline.glDisable(GLES20FixedPipeline.GL_BLEND);
+        GLES20FixedPipeline.glDisable(GLES20FixedPipeline.GL_TEXTURE_2D);
+        GLES20FixedPipeline.glDisableClientState(
+                GLES20FixedPipeline.GL_TEXTURE_COORD_ARRAY);
+        GLES20FixedPipeline.glDisableClientState(
+                GLES20FixedPipeline.GL_VERTEX_ARRAY);
+    }
+
+    private void putPoint(GeoPoint p) {
+        points.put(p.getLongitude());
+        points.put(p.getLatitude());
+    }
+
+    private void putVertex(int projectedIndex, float u, float v) {
+        interleaved.put(projected.get(projectedIndex));
+        interleaved.put(projected.get(projectedIndex + 1));
+        interleaved.put(u);
+        interleaved.put(v);
+    }
+
+    private void markDirty(List<GeoBounds> dirty) {
+        if (dirty.isEmpty())
+            return;
+
+        final SurfaceRendererControl[] ctrl = new SurfaceRendererControl[1];
+        renderContext.visitControl(null, new Visitor<SurfaceRendererControl>() {
+            @Override
+            public void visit(SurfaceRendererControl object) {
+                ctrl[0] = object;
+            }
+        }, SurfaceRendererControl.class);
+        if (ctrl[0] == null)
+            return;
+
+        double north = -90d, south = 90d, east = -180d, west = 180d;
+        for (GeoBounds b : dirty) {
+            north = Math.max(north, b.getNorth());
+            south = Math.min(south, b.getSouth());
+            east = Math.max(east, b.getEast());
+            west = Math.min(west, b.getWest());
+        }
+        ctrl[0].markDirty(new Envelope(west, south, 0d, east, north, 0d),
+                true);
+    }
+
+    /**************************************************************************/
+
+    private static class GLChip {
+        final ImageChipLayer.Chip source;
+        final float u0, v0, u1, v1;
+        int drawIndex = -1;
+
+        GLChip(ImageChipLayer.Chip source,
+                ShelfAtlas.Slot<ImageChipLayer.Chip> slot) {
+            this.source = source;
+
+            // sample from texel centers so the padding is never touched;
+            // 'v' uses an upper-left origin and the GPU does the flip
+            final float size = ATLAS_SIZE;
+            this.u0 = (slot.x + 0.5f) / size;
+            this.v0 = (slot.y + 0.5f) / size;
+            this.u1 = (slot.x + slot.width - 0.5f) / size;
+            this.v1 = (slot.y + slot.height - 0.5f) / size;
+        }
+    }
+}
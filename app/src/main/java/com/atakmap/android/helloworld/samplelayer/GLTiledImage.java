@@ -0,0 +1,320 @@
+package com.atakmap.android.helloworld.samplelayer;
+
+import android.graphics.Bitmap;
+
+import com.atakmap.android.helloworld.gl.GLQuad;
+import com.atakmap.coremap.maps.coords.GeoCalculations;
+import com.atakmap.coremap.maps.coords.GeoPoint;
+import com.atakmap.map.MapRenderer;
+import com.atakmap.map.layer.control.SurfaceRendererControl;
+import com.atakmap.map.layer.feature.geometry.Envelope;
+import com.atakmap.map.opengl.GLMapView;
+import com.atakmap.opengl.GLTexture;
+import com.atakmap.util.Visitor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Draws a {@link TiledImageSource} stretched over four corner points.   Each
+ * frame the subsample level is chosen from the map resolution, only the
+ * tiles that intersect the view are requested and tiles that are not yet
+ * decoded are covered by the nearest coarser tile that is already resident.
+ * Decoded tiles are recycled as soon as they are uploaded, a tile whose
+ * texture is discarded is decoded again the next time it is needed.
+ * Projected tile vertices are kept in vertex buffers and only recomputed
+ * when the view or the corners change.
+ * All methods other than the constructor must be called on the GL thread.
+ */
+class GLTiledImage implements TiledImageSource.OnTileDecodedListener {
+
+    // textures kept resident beyond the ones drawn in the current frame
+    private static final int MAX_TEXTURES = 96;
+
+    private static final Comparator<Tile> COARSEST_FIRST = new Comparator<Tile>() {
+        @Override
+        public int compare(Tile a, Tile b) {
+            return Integer.compare(b.level, a.level);
+        }
+    };
+
+    private final MapRenderer renderContext;
+    private final TiledImageSource source;
+    private final int vertexSize;
+
+    private final Map<Long, Tile> tiles = new HashMap<>();
+    private final List<Tile> drawList = new ArrayList<>();
+    private final List<Tile> fallbackList = new ArrayList<>();
+
+    // latitude, longitude, altitude for ul, ur, lr, ll
+    private final double[] corners = new double[12];
+    private double metersPerPixel;
+    private int drawFrame;
+
+    /**
+     * @param renderContext the render context
+     * @param source the tiled image
+     * @param altitude true to render the corners at their altitude, false
+     *                 to render on the surface
+     */
+    GLTiledImage(MapRenderer renderContext, TiledImageSource source,
+            boolean altitude) {
+        this.renderContext = renderContext;
+        this.source = source;
+        this.vertexSize = altitude ? 3 : 2;
+        source.setOnTileDecodedListener(this);
+    }
+
+    void setCorners(GeoPoint ul, GeoPoint ur, GeoPoint lr, GeoPoint ll) {
+        final GeoPoint[] pts = new GeoPoint[] {
+                ul, ur, lr, ll
+        };
+        for (int i = 0; i < pts.length; ++i) {
+            corners[i * 3] = pts[i].getLatitude();
+            corners[i * 3 + 1] = pts[i].getLongitude();
+            corners[i * 3 + 2] = Double.isNaN(pts[i].getAltitude()) ? 0d
+                    : pts[i].getAltitude();
+        }
+        metersPerPixel = GeoCalculations.distanceTo(ul, ur)
+                / source.getWidth();
+        for (Tile t : tiles.values())
+            t.pointsValid = false;
+    }
+
+    void draw(GLMapView view) {
+        source.beginFrame();
+        drawFrame++;
+
+        final int level = selectLevel(view.currentPass.drawMapResolution);
+        final int cols = source.getTileColumns(level);
+        final int rows = source.getTileRows(level);
+
+        drawList.clear();
+        fallbackList.clear();
+        for (int row = 0; row < rows; ++row) {
+            for (int col = 0; col < cols; ++col) {
+                if (!intersects(view, level, col, row))
+                    continue;
+
+                Tile t = getResident(level, col, row);
+                if (t != null) {
+                    drawList.add(t);
+                    continue;
+                }
+
+                // cover the hole with the closest resident ancestor
+                for (int l = level + 1; l <= source.getMaxLevel(); ++l) {
+                    final int shift = l - level;
+                    Tile parent = tiles.get(key(l, col >> shift,
+                            row >> shift));
+                    if (parent != null) {
+                        if (parent.lastDrawn != drawFrame) {
+                            parent.lastDrawn = drawFrame;
+                            fallbackList.add(parent);
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+
+        // coarse tiles first so the detailed tiles draw over them
+        Collections.sort(fallbackList, COARSEST_FIRST);
+        for (Tile t : fallbackList)
+            drawTile(view, t);
+        for (Tile t : drawList)
+            drawTile(view, t);
+
+        trim();
+    }
+
+    private Tile getResident(int level, int col, int row) {
+        final long k = key(level, col, row);
+        Tile t = tiles.get(k);
+        if (t == null) {
+            Bitmap bmp = source.takeTile(level, col, row);
+            if (bmp == null)
+                return null;
+            t = new Tile(level, col, row);
+            try {
+                t.upload(bmp);
+            } finally {
+                // the texture is now the only copy of the pixels
+                bmp.recycle();
+            }
+            tiles.put(k, t);
+        }
+        t.lastDrawn = drawFrame;
+        return t;
+    }
+
+    private void drawTile(GLMapView view, Tile t) {
+        if (!t.pointsValid)
+            t.updatePoints();
+        t.quad.draw(view, t.texture.getTexId());
+    }
+
+    private int selectLevel(double mapResolution) {
+        if (metersPerPixel <= 0d || mapResolution <= metersPerPixel)
+            return 0;
+        final int level = (int) Math
+                .floor(Math.log(mapResolution / metersPerPixel) / Math.log(2));
+        return Math.min(level, source.getMaxLevel());
+    }
+
+    private boolean intersects(GLMapView view, int level, int col, int row) {
+        final int span = TiledImageSource.TILE_SIZE << level;
+        final double u0 = (double) (col * span) / source.getWidth();
+        final double v0 = (double) (row * span) / source.getHeight();
+        final double u1 = Math.min(1d,
+                (double) ((col + 1) * span) / source.getWidth());
+        final double v1 = Math.min(1d,
+                (double) ((row + 1) * span) / source.getHeight());
+
+        double north = -90d, south = 90d, east = -180d, west = 180d;
+        for (int i = 0; i < 4; ++i) {
+            final double u = (i == 1 || i == 2) ? u1 : u0;
+            final double v = (i >= 2) ? v1 : v0;
+            final double lat = interpolate(u, v, 0);
+            final double lng = interpolate(u, v, 1);
+            north = Math.max(north, lat);
+            south = Math.min(south, lat);
+            east = Math.max(east, lng);
+            west = Math.min(west, lng);
+        }
+        return !(south > view.currentPass.northBound
+                || north < view.currentPass.southBound
+                || west > view.currentPass.eastBound
+                || east < view.currentPass.westBound);
+    }
+
+    /**
+     * Bilinear interpolation of the corners.
+     * @param u the horizontal image fraction
+     * @param v the vertical image fraction
+     * @param c 0 latitude, 1 longitude, 2 altitude
+     */
+    private double interpolate(double u, double v, int c) {
+        return corners[c] * (1 - u) * (1 - v)
+                + corners[3 + c] * u * (1 - v)
+                + corners[6 + c] * u * v
+                + corners[9 + c] * (1 - u) * v;
+    }
+
+    private void trim() {
+        if (tiles.size() <= MAX_TEXTURES)
+            return;
+        Iterator<Tile> it = tiles.values().iterator();
+        while (it.hasNext() && tiles.size() > MAX_TEXTURES) {
+            Tile t = it.next();
+            if (t.lastDrawn != drawFrame) {
+                t.release();
+                it.remove();
+            }
+        }
+    }
+
+    void release() {
+        source.setOnTileDecodedListener(null);
+        for (Tile t : tiles.values())
+            t.release();
+        tiles.clear();
+        drawList.clear();
+        fallbackList.clear();
+        source.close();
+    }
+
+    @Override
+    public void onTileDecoded(TiledImageSource source, int level, int col,
+            int row) {
+        if (vertexSize == 2) {
+            // surface content is cached, invalidate the region covered by
+            // the image so the new tile is picked up
+            final SurfaceRendererControl[] ctrl = new SurfaceRendererControl[1];
+            renderContext.visitControl(null,
+                    new Visitor<SurfaceRendererControl>() {
+                        @Override
+                        public void visit(SurfaceRendererControl object) {
+                            ctrl[0] = object;
+                        }
+                    }, SurfaceRendererControl.class);
+            if (ctrl[0] != null) {
+                double north = -90d, south = 90d, east = -180d, west = 180d;
+                for (int i = 0; i < 4; ++i) {
+                    north = Math.max(north, corners[i * 3]);
+                    south = Math.min(south, corners[i * 3]);
+                    east = Math.max(east, corners[i * 3 + 1]);
+                    west = Math.min(west, corners[i * 3 + 1]);
+                }
+                ctrl[0].markDirty(new Envelope(west, south, 0d,
+                        east, north, 0d), true);
+            }
+        }
+        renderContext.requestRefresh();
+    }
+
+    private static long key(int level, int col, int row) {
+        return ((long) level << 56) | ((long) col << 28) | row;
+    }
+
+    /**************************************************************************/
+
+    private class Tile {
+        final int level;
+        final int col;
+        final int row;
+        final GLQuad quad;
+        GLTexture texture;
+        boolean pointsValid;
+        int lastDrawn;
+
+        Tile(int level, int col, int row) {
+            this.level = level;
+            this.col = col;
+            this.row = row;
+            this.quad = new GLQuad(vertexSize);
+        }
+
+        void upload(Bitmap bmp) {
+            final int width = bmp.getWidth();
+            final int height = bmp.getHeight();
+            this.texture = new GLTexture(width, height, bmp.getConfig());
+            this.texture.load(bmp);
+
+            this.quad.setTextureExtent(
+                    (float) width / (float) texture.getTexWidth(),
+                    (float) height / (float) texture.getTexHeight());
+        }
+
+        void updatePoints() {
+            final int span = TiledImageSource.TILE_SIZE << level;
+            final double u0 = (double) (col * span) / source.getWidth();
+            final double v0 = (double) (row * span) / source.getHeight();
+            final double u1 = Math.min(1d,
+                    (double) ((col + 1) * span) / source.getWidth());
+            final double v1 = Math.min(1d,
+                    (double) ((row + 1) * span) / source.getHeight());
+
+            setCorner(0, u0, v0);
+            setCorner(1, u1, v0);
+            setCorner(2, u1, v1);
+            setCorner(3, u0, v1);
+            this.pointsValid = true;
+        }
+
+        private void setCorner(int index, double u, double v) {
+            this.quad.setCorner(index, interpolate(u, v, 1),
+                    interpolate(u, v, 0), interpolate(u, v, 2));
+        }
+
+        void release() {
+            this.texture.release();
+            this.quad.release();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.atakmap.android.helloworld.samplelayer;
+
+import android.graphics.Bitmap;
+
+import com.atakmap.coremap.maps.coords.GeoBounds;
+import com.atakmap.coremap.maps.coords.GeoPoint;
+import com.atakmap.map.layer.AbstractLayer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A single layer holding many small georeferenced images (chips), for
+ * example sensor snapshots.   Unlike {@link ExampleMultiLayer}, where every
+ * image is its own layer with its own texture and draw call, the renderer
+ * for this layer packs the chips into shared texture atlases and draws all
+ * of the visible chips on an atlas in one call.
+ *
+ * The layer is rendered by {@link GLImageChipLayer}, register
+ * {@link GLImageChipLayer#SPI} with the GLLayerFactory before adding it.
+ */
+public class ImageChipLayer extends AbstractLayer {
+
+    public static final String TAG = "ImageChipLayer";
+
+    /** largest chip dimension accepted, larger images belong in a layer of their own */
+    public static final int MAX_CHIP_SIZE = 512;
+
+    private final Map<String, Chip> chips = new LinkedHashMap<>();
+
+    private final ConcurrentLinkedQueue<OnChipsChangedListener> listeners = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Interface for when chips have been added or removed
+     */
+    public interface OnChipsChangedListener {
+        void onChipsChanged(ImageChipLayer layer);
+    }
+
+    /**
+     * A georeferenced image.   The chip keeps its Bitmap for the life of the
+     * chip so the renderer can upload it again if it is recreated; chips are
+     * expected to be small.
+     */
+    public static class Chip {
+        final String uid;
+        final Bitmap bitmap;
+        final GeoPoint upperLeft;
+        final GeoPoint upperRight;
+        final GeoPoint lowerRight;
+        final GeoPoint lowerLeft;
+        final GeoBounds bounds;
+
+        Chip(String uid, Bitmap bitmap, GeoPoint ul, GeoPoint ur,
+                GeoPoint lr, GeoPoint ll) {
+            this.uid = uid;
+            this.bitmap = bitmap;
+            this.upperLeft = new GeoPoint(ul);
+            this.upperRight = new GeoPoint(ur);
+            this.lowerRight = new GeoPoint(lr);
+            this.lowerLeft = new GeoPoint(ll);
+            this.bounds = GeoBounds.createFromPoints(new GeoPoint[] {
+                    ul, ur, lr, ll
+            });
+        }
+
+        public String getUID() {
+            return uid;
+        }
+
+        public GeoBounds getBounds() {
+            return bounds;
+        }
+    }
+
+    public ImageChipLayer(String name) {
+        super(name);
+    }
+
+    /**
+     * Add a chip, replacing any existing chip with the same uid.
+     *
+     * @param uid the unique identifier for the chip
+     * @param bitmap the image, no larger than {@link #MAX_CHIP_SIZE} on a side
+     * @param ul the upper left corner
+     * @param ur the upper right corner
+     * @param lr the lower right corner
+     * @param ll the lower left corner
+     */
+    public void addChip(String uid, Bitmap bitmap, GeoPoint ul, GeoPoint ur,
+            GeoPoint lr, GeoPoint ll) {
+        if (bitmap.getWidth() > MAX_CHIP_SIZE
+                || bitmap.getHeight() > MAX_CHIP_SIZE)
+            throw new IllegalArgumentException("chip " + uid + " is "
+                    + bitmap.getWidth() + "x" + bitmap.getHeight()
+                    + ", the limit is " + MAX_CHIP_SIZE);
+
+        synchronized (this) {
+            chips.put(uid, new Chip(uid, bitmap, ul, ur, lr, ll));
+        }
+        dispatchChipsChanged();
+    }
+
+    /**
+     * Remove a chip
+     *
+     * @param uid the unique identifier for the chip
+     * @return true if the chip was removed
+     */
+    public boolean removeChip(String uid) {
+        final boolean removed;
+        synchronized (this) {
+            removed = chips.remove(uid) != null;
+        }
+        if (removed)
+            dispatchChipsChanged();
+        return removed;
+    }
+
+    /**
+     * Remove all of the chips
+     */
+    public void clear() {
+        synchronized (this) {
+            chips.clear();
+        }
+        dispatchChipsChanged();
+    }
+
+    public synchronized int getChipCount() {
+        return chips.size();
+    }
+
+    /**
+     * @return a snapshot of the chips, in insertion order
+     */
+    public synchronized List<Chip> getChips() {
+        return new ArrayList<>(chips.values());
+    }
+
+    public void addOnChipsChangedListener(OnChipsChangedListener l) {
+        listeners.add(l);
+    }
+
+    public void removeOnChipsChangedListener(OnChipsChangedListener l) {
+        listeners.remove(l);
+    }
+
+    private void dispatchChipsChanged() {
+        for (OnChipsChangedListener l : listeners)
+            l.onChipsChanged(this);
+    }
+}
@@ -0,0 +1,307 @@
+package com.atakmap.android.helloworld.samplelayer;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.util.LruCache;
+
+import com.atakmap.coremap.log.Log;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lazily decoded, tiled view of an image file.   Only the image dimensions
+ * are read up front; pixel data is decoded a tile at a time with a
+ * {@link BitmapRegionDecoder} on a small background pool when a renderer asks
+ * for it.   Tiles are addressed by subsample level, where level N is decoded
+ * with an inSampleSize of 2^N, so a zoomed out view only decodes a handful of
+ * coarse tiles.
+ *
+ * A decoded tile is only held until a renderer takes it with
+ * {@link #takeTile(int, int, int)}; the renderer uploads it and recycles the
+ * Bitmap so the texture is the only resident copy of the pixels.   If the
+ * texture is later discarded, or the GL context is lost and the renderer
+ * recreated, the tile is simply decoded again from the file.   Tiles that
+ * are decoded but never taken wait in a small byte bounded area shared by
+ * every source and are recycled when pushed out.
+ */
+public class TiledImageSource {
+
+    private static final String TAG = "TiledImageSource";
+
+    /** tile dimension, in decoded pixels */
+    public static final int TILE_SIZE = 256;
+
+    private static final int READY_BYTES = (int) Math.min(
+            8L * 1024L * 1024L, Runtime.getRuntime().maxMemory() / 16L);
+
+    // decoded tiles waiting to be taken by a renderer
+    private static final LruCache<Key, Bitmap> readyTiles = new LruCache<Key, Bitmap>(
+            READY_BYTES) {
+        @Override
+        protected int sizeOf(Key key, Bitmap value) {
+            return value.getByteCount();
+        }
+
+        @Override
+        protected void entryRemoved(boolean evicted, Key key, Bitmap oldValue,
+                Bitmap newValue) {
+            // a taken tile belongs to the renderer, an evicted one to nobody
+            if (evicted)
+                oldValue.recycle();
+        }
+    };
+
+    private static final ThreadPoolExecutor decoderPool;
+    static {
+        // newest requests are serviced first, they are the ones that
+        // reflect what is currently on screen
+        decoderPool = new ThreadPoolExecutor(2, 2, 30L, TimeUnit.SECONDS,
+                new LinkedBlockingDeque<Runnable>() {
+                    @Override
+                    public boolean offer(Runnable r) {
+                        return super.offerFirst(r);
+                    }
+                }, new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r,
+                                "tile-decoder-" + count.incrementAndGet());
+                        t.setDaemon(true);
+                        t.setPriority(Thread.MIN_PRIORITY);
+                        return t;
+                    }
+                });
+        decoderPool.allowCoreThreadTimeOut(true);
+    }
+
+    private static final AtomicInteger nextId = new AtomicInteger();
+
+    /**
+     * Callback for when a requested tile becomes available.
+     */
+    public interface OnTileDecodedListener {
+        void onTileDecoded(TiledImageSource source, int level, int col,
+                int row);
+    }
+
+    private final int id = nextId.incrementAndGet();
+    private final String path;
+    private final int width;
+    private final int height;
+    private final int maxLevel;
+
+    // tiles waiting on the decoder mapped to the frame they were last wanted
+    private final Map<Key, Long> pending = new ConcurrentHashMap<>();
+    private volatile long frame;
+
+    private BitmapRegionDecoder decoder;
+    private OnTileDecodedListener listener;
+
+    /**
+     * @param path the image file
+     * @throws IOException if the image dimensions could not be read
+     */
+    public TiledImageSource(String path) throws IOException {
+        this.path = path;
+
+        BitmapFactory.Options opts = new BitmapFactory.Options();
+        opts.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, opts);
+        if (opts.outWidth <= 0 || opts.outHeight <= 0)
+            throw new IOException("unable to read image bounds: " + path);
+        this.width = opts.outWidth;
+        this.height = opts.outHeight;
+
+        int level = 0;
+        while ((TILE_SIZE << level) < Math.max(width, height))
+            level++;
+        this.maxLevel = level;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the coarsest level, at which the whole image is one tile
+     */
+    public int getMaxLevel() {
+        return maxLevel;
+    }
+
+    public int getTileColumns(int level) {
+        final int span = TILE_SIZE << level;
+        return (width + span - 1) / span;
+    }
+
+    public int getTileRows(int level) {
+        final int span = TILE_SIZE << level;
+        return (height + span - 1) / span;
+    }
+
+    public synchronized void setOnTileDecodedListener(
+            OnTileDecodedListener l) {
+        this.listener = l;
+    }
+
+    /**
+     * Marks the start of a new render frame.   Requests that have not been
+     * repeated since the previous frame are considered stale and are skipped
+     * by the decoder.
+     */
+    public void beginFrame() {
+        frame++;
+    }
+
+    /**
+     * Hands over the decoded tile if it is ready, otherwise schedules it for
+     * decoding and returns null.   This never blocks on the decoder.   The
+     * caller owns the returned Bitmap and is expected to recycle it once the
+     * pixels have been uploaded.
+     *
+     * @param level the subsample level
+     * @param col the tile column at that level
+     * @param row the tile row at that level
+     * @return the tile or null if it is not yet available
+     */
+    public Bitmap takeTile(final int level, final int col, final int row) {
+        final Key key = new Key(id, level, col, row);
+        Bitmap bmp = readyTiles.remove(key);
+        if (bmp != null)
+            return bmp;
+
+        if (pending.put(key, frame) == null) {
+            decoderPool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    decode(key);
+                }
+            });
+        }
+        return null;
+    }
+
+    private void decode(Key key) {
+        final Long wanted = pending.get(key);
+        if (wanted == null || wanted < frame - 1) {
+            // scrolled out of view before we got to it
+            pending.remove(key);
+            return;
+        }
+
+        Bitmap bmp = null;
+        try {
+            final int span = TILE_SIZE << key.level;
+            final Rect region = new Rect(key.col * span, key.row * span,
+                    Math.min((key.col + 1) * span, width),
+                    Math.min((key.row + 1) * span, height));
+
+            BitmapFactory.Options opts = new BitmapFactory.Options();
+            opts.inSampleSize = 1 << key.level;
+            opts.inPreferredConfig = Bitmap.Config.ARGB_8888;
+
+            final BitmapRegionDecoder d = getDecoder();
+            if (d != null)
+                bmp = d.decodeRegion(region, opts);
+        } catch (Exception e) {
+            Log.e(TAG, "error decoding tile " + key + " from " + path, e);
+        } finally {
+            if (bmp != null)
+                readyTiles.put(key, bmp);
+            pending.remove(key);
+        }
+
+        final OnTileDecodedListener l;
+        synchronized (this) {
+            l = listener;
+        }
+        if (bmp != null && l != null)
+            l.onTileDecoded(this, key.level, key.col, key.row);
+    }
+
+    private synchronized BitmapRegionDecoder getDecoder() throws IOException {
+        if (decoder == null || decoder.isRecycled())
+            decoder = BitmapRegionDecoder.newInstance(path, false);
+        return decoder;
+    }
+
+    /**
+     * Releases the region decoder and any decoded tiles for this source that
+     * have not been taken.   The decoder is reopened on the next request.
+     */
+    public void close() {
+        pending.clear();
+        synchronized (this) {
+            if (decoder != null)
+                decoder.recycle();
+            decoder = null;
+        }
+        for (Key k : readyTiles.snapshot().keySet()) {
+            if (k.source != id)
+                continue;
+            Bitmap bmp = readyTiles.remove(k);
+            if (bmp != null)
+                bmp.recycle();
+        }
+    }
+
+    /**************************************************************************/
+
+    private static final class Key {
+        final int source;
+        final int level;
+        final int col;
+        final int row;
+
+        Key(int source, int level, int col, int row) {
+            this.source = source;
+            this.level = level;
+            this.col = col;
+            this.row = row;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+            Key k = (Key) o;
+            return source == k.source && level == k.level && col == k.col
+                    && row == k.row;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = source;
+            h = 31 * h + level;
+            h = 31 * h + col;
+            h = 31 * h + row;
+            return h;
+        }
+
+        @Override
+        public String toString() {
+            return level + "/" + col + "/" + row;
+        }
+    }
+}
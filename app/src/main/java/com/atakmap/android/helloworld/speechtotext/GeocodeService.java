@@ -0,0 +1,480 @@
+package com.atakmap.android.helloworld.speechtotext;
+
+import android.content.Context;
+import android.location.Address;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.atakmap.android.helloworld.index.Gazetteer;
+import com.atakmap.android.user.geocode.GeocodeManager;
+import com.atakmap.coremap.filesystem.FileSystemUtils;
+import com.atakmap.coremap.io.IOProviderFactory;
+import com.atakmap.coremap.log.Log;
+import com.atakmap.coremap.maps.coords.GeoBounds;
+import com.atakmap.coremap.maps.coords.GeoPoint;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resolves spoken addresses, first against the offline gazetteer if one has
+ * been imported and then with the selected ATAK geocoder on a small shared
+ * pool.   Geocoder results are cached by the normalized address and a coarse
+ * cell around the center of the search bounds, in memory and optionally in a
+ * file so that repeated commands resolve without a network round trip.
+ * Concurrent requests for the same address and cell share one lookup.
+ *
+ * Only the memory cache is consulted on the calling thread; the gazetteer,
+ * the cache file and the geocoder are all read on the pool.   Listeners are
+ * always called on the UI thread.
+ */
+public class GeocodeService {
+
+    private static final String TAG = "GeocodeService";
+
+    private static final int MEMORY_CACHE_SIZE = 128;
+    private static final int DISK_CACHE_SIZE = 2048;
+
+    public static final String GAZETTEER_FILE = "tools/helloworld/gazetteer.gzt";
+
+    // size of the bounds cell in degrees, results from neighbouring cells
+    // are not shared since a geocoder ranks results by the search area
+    private static final double CELL_DEGREES = 1d;
+
+    /**
+     * Callback for when a lookup completes, called on the UI thread
+     */
+    public interface OnGeocodeListener {
+        /**
+         * @param address the address as requested
+         * @param point the first result, null if the address was not found
+         */
+        void onGeocode(String address, GeoPoint point);
+    }
+
+    private static GeocodeService _instance;
+
+    private final Context _context;
+    private final ThreadPoolExecutor _pool;
+    private final Handler _ui = new Handler(Looper.getMainLooper());
+
+    private final Map<String, GeoPoint> _memory = new LinkedHashMap<String, GeoPoint>(
+            16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(
+                Map.Entry<String, GeoPoint> eldest) {
+            return size() > MEMORY_CACHE_SIZE;
+        }
+    };
+    private final ConcurrentHashMap<String, Request> _pending = new ConcurrentHashMap<>();
+
+    // guarded by _diskLock, which is held for the file I/O so that lookups
+    // on the memory cache never wait on it
+    private final Object _diskLock = new Object();
+    private File _diskFile;
+    private Map<String, GeoPoint> _disk;
+
+    private Gazetteer _gazetteer;
+    private boolean _gazetteerLoaded;
+
+    private GeocodeService(Context context) {
+        _context = context;
+        _pool = new ThreadPoolExecutor(2, 2, 30L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r,
+                                "geocoder-" + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        _pool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @param context the map view context, used to reach the geocoder
+     */
+    public static synchronized GeocodeService getInstance(Context context) {
+        if (_instance == null) {
+            _instance = new GeocodeService(context.getApplicationContext());
+            _instance.setDiskCache(FileSystemUtils
+                    .getItem("tools/helloworld/geocode_cache.txt"));
+        }
+        return _instance;
+    }
+
+    /**
+     * Persist results to the given file, or stop persisting them.
+     *
+     * @param file the cache file, null to keep results in memory only
+     */
+    public void setDiskCache(File file) {
+        synchronized (_diskLock) {
+            _diskFile = file;
+            _disk = null;
+        }
+    }
+
+    /**
+     * Reopen the gazetteer file, after it has been rebuilt.   Results held in
+     * memory are dropped so that the new names take precedence.
+     */
+    public synchronized void reloadGazetteer() {
+        synchronized (_memory) {
+            _memory.clear();
+        }
+        if (_gazetteer != null) {
+            try {
+                _gazetteer.close();
+            } catch (IOException ignored) {
+            }
+        }
+        _gazetteer = null;
+        _gazetteerLoaded = false;
+    }
+
+    private synchronized Gazetteer getGazetteer() {
+        if (!_gazetteerLoaded) {
+            _gazetteerLoaded = true;
+            final File f = FileSystemUtils.getItem(GAZETTEER_FILE);
+            if (IOProviderFactory.exists(f)) {
+                try {
+                    _gazetteer = Gazetteer.open(f);
+                } catch (IOException e) {
+                    Log.e(TAG, "error opening " + f, e);
+                }
+            }
+        }
+        return _gazetteer;
+    }
+
+    /**
+     * @return the gazetteer place nearest the center of the bounds with the
+     *         name, allowing for a misheard letter or two
+     */
+    private GeoPoint findPlace(String address, GeoBounds bounds) {
+        final Gazetteer g = getGazetteer();
+        if (g == null)
+            return null;
+        final int maxEdits = Gazetteer.normalize(address).length() < 6 ? 1
+                : 2;
+        List<Gazetteer.Entry> places = g.findFuzzy(address, maxEdits);
+        if (places.isEmpty())
+            return null;
+        if (places.size() > 1 && bounds != null) {
+            places = Gazetteer.sortByDistance(places,
+                    (bounds.getNorth() + bounds.getSouth()) / 2d,
+                    (bounds.getEast() + bounds.getWest()) / 2d);
+        }
+        return new GeoPoint(places.get(0).latitude, places.get(0).longitude);
+    }
+
+    /**
+     * Look up an address.
+     *
+     * @param address the address as spoken
+     * @param bounds the area to search, normally the map bounds, may be null
+     * @param l notified with the result, may be null
+     * @return the pending result
+     */
+    public Future<GeoPoint> lookup(final String address, GeoBounds bounds,
+            OnGeocodeListener l) {
+        final String key = getKey(address, bounds);
+        final GeoPoint cached;
+        synchronized (_memory) {
+            cached = _memory.get(key);
+        }
+        if (cached != null) {
+            final Request r = new Request(key, address, null);
+            r.set(cached);
+            if (l != null)
+                r.addListener(l);
+            return r;
+        }
+
+        Request r = new Request(key, address, bounds);
+        final Request existing = _pending.putIfAbsent(key, r);
+        if (existing != null)
+            r = existing;
+        if (l != null)
+            r.addListener(l);
+        if (existing == null)
+            _pool.execute(r);
+        return r;
+    }
+
+    /**
+     * Forget every cached result, including those on disk.
+     */
+    public void clear() {
+        synchronized (_memory) {
+            _memory.clear();
+        }
+        _pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (_diskLock) {
+                    _disk = new LinkedHashMap<>();
+                    if (_diskFile != null)
+                        rewriteDisk();
+                }
+            }
+        });
+    }
+
+    /**************************************************************************/
+
+    private GeoPoint resolve(String key, String address, GeoBounds bounds) {
+        // gazetteer names are not cached, the table is already an index
+        GeoPoint gp = findPlace(address, bounds);
+        if (gp != null)
+            return gp;
+
+        synchronized (_diskLock) {
+            gp = getDisk().get(key);
+        }
+        if (gp != null) {
+            synchronized (_memory) {
+                _memory.put(key, gp);
+            }
+            return gp;
+        }
+
+        List<Address> addressList = null;
+        try {
+            addressList = GeocodeManager.getInstance(_context)
+                    .getSelectedGeocoder().getLocation(address, bounds);
+        } catch (Exception e) {
+            Log.e(TAG, "error geocoding " + address, e);
+        }
+        if (FileSystemUtils.isEmpty(addressList))
+            return null;
+
+        gp = new GeoPoint(addressList.get(0).getLatitude(),
+                addressList.get(0).getLongitude());
+        synchronized (_memory) {
+            _memory.put(key, gp);
+        }
+        synchronized (_diskLock) {
+            if (_diskFile != null) {
+                getDisk().put(key, gp);
+                appendDisk(key, gp);
+            }
+        }
+        return gp;
+    }
+
+    static String normalize(String address) {
+        return address.toLowerCase(Locale.US).replaceAll("[^\\p{L}\\p{N}]+",
+                " ").trim();
+    }
+
+    private static String getKey(String address, GeoBounds bounds) {
+        final String cell;
+        if (bounds == null) {
+            cell = "*";
+        } else {
+            double lat = (bounds.getNorth() + bounds.getSouth()) / 2d;
+            double lng = (bounds.getEast() + bounds.getWest()) / 2d;
+            cell = (int) Math.floor(lat / CELL_DEGREES) + ","
+                    + (int) Math.floor(lng / CELL_DEGREES);
+        }
+        return normalize(address) + "|" + cell;
+    }
+
+    /**
+     * @return the disk entries, loaded on first use.   Must hold _diskLock.
+     */
+    private Map<String, GeoPoint> getDisk() {
+        if (_disk != null)
+            return _disk;
+        _disk = new LinkedHashMap<>();
+        if (_diskFile == null || !IOProviderFactory.exists(_diskFile))
+            return _disk;
+
+        int lines = 0;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(
+                        IOProviderFactory.getInputStream(_diskFile),
+                        StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines++;
+                final String[] parts = line.split("\t");
+                if (parts.length != 3)
+                    continue;
+                try {
+                    // re-insert so the newest entry for a key wins the order
+                    _disk.remove(parts[0]);
+                    _disk.put(parts[0],
+                            new GeoPoint(Double.parseDouble(parts[1]),
+                                    Double.parseDouble(parts[2])));
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "error reading " + _diskFile, e);
+        }
+        if (lines > DISK_CACHE_SIZE)
+            rewriteDisk();
+        return _disk;
+    }
+
+    /**
+     * Must hold _diskLock.
+     */
+    private void appendDisk(String key, GeoPoint gp) {
+        final File parent = _diskFile.getParentFile();
+        if (parent != null && !IOProviderFactory.exists(parent)
+                && !IOProviderFactory.mkdirs(parent)) {
+            Log.e(TAG, "unable to create " + parent);
+            return;
+        }
+        try (OutputStream os = IOProviderFactory.getOutputStream(_diskFile,
+                true);
+                Writer w = new OutputStreamWriter(os,
+                        StandardCharsets.UTF_8)) {
+            writeEntry(w, key, gp);
+        } catch (IOException e) {
+            Log.e(TAG, "error writing " + _diskFile, e);
+        }
+    }
+
+    /**
+     * Rewrite the file with the newest entries only.   Must hold _diskLock.
+     */
+    private void rewriteDisk() {
+        final List<Map.Entry<String, GeoPoint>> entries = new ArrayList<>(
+                _disk.entrySet());
+        final int start = Math.max(0, entries.size() - DISK_CACHE_SIZE / 2);
+        _disk.clear();
+        try (OutputStream os = IOProviderFactory.getOutputStream(_diskFile,
+                false);
+                Writer w = new OutputStreamWriter(os,
+                        StandardCharsets.UTF_8)) {
+            for (int i = start; i < entries.size(); i++) {
+                final Map.Entry<String, GeoPoint> e = entries.get(i);
+                _disk.put(e.getKey(), e.getValue());
+                writeEntry(w, e.getKey(), e.getValue());
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "error writing " + _diskFile, e);
+        }
+    }
+
+    private static void writeEntry(Writer w, String key, GeoPoint gp)
+            throws IOException {
+        w.write(key);
+        w.write('\t');
+        w.write(Double.toString(gp.getLatitude()));
+        w.write('\t');
+        w.write(Double.toString(gp.getLongitude()));
+        w.write('\n');
+    }
+
+    /**************************************************************************/
+
+    /**
+     * A lookup shared by every caller asking for the same key while it is
+     * outstanding.
+     */
+    private final class Request extends FutureTask<GeoPoint> {
+
+        private final String key;
+        private final String address;
+        private final List<OnGeocodeListener> listeners = new ArrayList<>();
+        private boolean finished;
+
+        Request(final String key, final String address,
+                final GeoBounds bounds) {
+            super(new Callable<GeoPoint>() {
+                @Override
+                public GeoPoint call() {
+                    return resolve(key, address, bounds);
+                }
+            });
+            this.key = key;
+            this.address = address;
+        }
+
+        @Override
+        protected void set(GeoPoint v) {
+            super.set(v);
+        }
+
+        void addListener(OnGeocodeListener l) {
+            synchronized (this) {
+                if (!finished) {
+                    listeners.add(l);
+                    return;
+                }
+            }
+            notify(Collections.singletonList(l));
+        }
+
+        @Override
+        protected void done() {
+            _pending.remove(key, this);
+            final List<OnGeocodeListener> notify;
+            synchronized (this) {
+                finished = true;
+                notify = new ArrayList<>(listeners);
+                listeners.clear();
+            }
+            if (!notify.isEmpty())
+                notify(notify);
+        }
+
+        /**
+         * Call the listeners with the result on the UI thread.
+         */
+        private void notify(final List<OnGeocodeListener> notify) {
+            final GeoPoint gp = getResult();
+            _ui.post(new Runnable() {
+                @Override
+                public void run() {
+                    for (OnGeocodeListener l : notify) {
+                        try {
+                            l.onGeocode(address, gp);
+                        } catch (Exception e) {
+                            Log.e(TAG, "error in geocode listener", e);
+                        }
+                    }
+                }
+            });
+        }
+
+        private GeoPoint getResult() {
+            try {
+                return get();
+            } catch (Exception e) {
+                Log.e(TAG, "geocode failed for " + address, e);
+                return null;
+            }
+        }
+    }
+}
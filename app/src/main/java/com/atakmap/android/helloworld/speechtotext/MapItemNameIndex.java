@@ -0,0 +1,297 @@
+package com.atakmap.android.helloworld.speechtotext;
+
+import com.atakmap.android.helloworld.index.BKTree;
+import com.atakmap.android.helloworld.index.Phonetic;
+import com.atakmap.android.maps.MapEvent;
+import com.atakmap.android.maps.MapEventDispatcher;
+import com.atakmap.android.maps.MapGroup;
+import com.atakmap.android.maps.MapItem;
+import com.atakmap.android.maps.MapView;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the map items by callsign and by title, so a spoken name is
+ * resolved with a hash lookup instead of a deep search of the map groups.
+ * Names are matched ignoring case and repeated spaces.   The index is filled
+ * from the map once and then kept current from the item added, removed and
+ * refreshed events and from changes to the callsign and title metadata.
+ *
+ * Names are also kept in BK-trees by their phonetic encoding, so a name the
+ * speech recognizer got slightly wrong still finds the item.   There is a
+ * tree per sequence of digits in the name, so "Alpha 3" is never taken for
+ * "Alpha 1".
+ */
+public class MapItemNameIndex implements
+        MapEventDispatcher.MapEventDispatchListener,
+        MapItem.OnMetadataChangedListener {
+
+    public static final String CALLSIGN = "callsign";
+    public static final String TITLE = "title";
+
+    private static MapItemNameIndex _instance;
+
+    private final MapView _mapView;
+
+    // normalized name to items, per field
+    private final Map<String, Set<MapItem>> _callsigns = new HashMap<>();
+    private final Map<String, Set<MapItem>> _titles = new HashMap<>();
+
+    // digits of the name to phonetic name to items, per field
+    private final Map<String, BKTree<MapItem>> _fuzzyCallsigns = new HashMap<>();
+    private final Map<String, BKTree<MapItem>> _fuzzyTitles = new HashMap<>();
+
+    // the names each item was indexed under
+    private final Map<MapItem, String[]> _items = new IdentityHashMap<>();
+
+    private MapItemNameIndex(MapView mapView) {
+        _mapView = mapView;
+        MapEventDispatcher d = _mapView.getMapEventDispatcher();
+        d.addMapEventListener(MapEvent.ITEM_ADDED, this);
+        d.addMapEventListener(MapEvent.ITEM_REMOVED, this);
+        d.addMapEventListener(MapEvent.ITEM_REFRESH, this);
+        _mapView.getRootGroup().deepForEachItem(
+                new MapGroup.MapItemsCallback() {
+                    @Override
+                    public boolean onItemFunction(MapItem item) {
+                        add(item);
+                        return false;
+                    }
+                });
+    }
+
+    public static synchronized MapItemNameIndex getInstance(MapView mapView) {
+        if (_instance == null)
+            _instance = new MapItemNameIndex(mapView);
+        return _instance;
+    }
+
+    /**
+     * Stop tracking the map, a later {@link #getInstance(MapView)} starts
+     * over.
+     */
+    public static synchronized void dispose() {
+        if (_instance == null)
+            return;
+        MapEventDispatcher d = _instance._mapView.getMapEventDispatcher();
+        d.removeMapEventListener(MapEvent.ITEM_ADDED, _instance);
+        d.removeMapEventListener(MapEvent.ITEM_REMOVED, _instance);
+        d.removeMapEventListener(MapEvent.ITEM_REFRESH, _instance);
+        synchronized (_instance) {
+            for (MapItem item : _instance._items.keySet()) {
+                item.removeOnMetadataChangedListener(CALLSIGN, _instance);
+                item.removeOnMetadataChangedListener(TITLE, _instance);
+            }
+            _instance._items.clear();
+            _instance._callsigns.clear();
+            _instance._titles.clear();
+            _instance._fuzzyCallsigns.clear();
+            _instance._fuzzyTitles.clear();
+        }
+        _instance = null;
+    }
+
+    /**
+     * Find an item by name.
+     *
+     * @param field {@link #CALLSIGN} or {@link #TITLE}
+     * @param name the name as spoken
+     * @param group only return an item within this group, null for any
+     * @return the item, null if none has the name
+     */
+    public synchronized MapItem find(String field, String name,
+            MapGroup group) {
+        if (name == null)
+            return null;
+        final Set<MapItem> items = (CALLSIGN.equals(field) ? _callsigns
+                : _titles).get(normalize(name));
+        if (items == null)
+            return null;
+        for (MapItem item : items) {
+            if (group == null || isWithin(item, group))
+                return item;
+        }
+        return null;
+    }
+
+    /**
+     * Find an item by name, allowing for recognition errors.   An exact
+     * match is preferred, otherwise the item whose name sounds closest to
+     * the spoken one within a small edit distance is returned.   The digits
+     * of the name must match exactly.   As the item found may be acted on
+     * without the name being repeated back, nothing is returned when more
+     * than one item is equally close.
+     *
+     * @param field {@link #CALLSIGN} or {@link #TITLE}
+     * @param name the name as spoken
+     * @param group only return an item within this group, null for any
+     * @return the item, null if no name is close enough or the name is
+     *         ambiguous
+     */
+    public synchronized MapItem findClosest(String field, String name,
+            MapGroup group) {
+        if (name == null)
+            return null;
+        final Set<MapItem> exact = (CALLSIGN.equals(field) ? _callsigns
+                : _titles).get(normalize(name));
+        if (exact != null) {
+            final MapItem item = only(exact, group);
+            if (item != null || countWithin(exact, group) > 1)
+                return item;
+        }
+
+        final String key = Phonetic.encode(name);
+        final BKTree<MapItem> fuzzy = (CALLSIGN.equals(field)
+                ? _fuzzyCallsigns
+                : _fuzzyTitles).get(Phonetic.digits(name));
+        if (key.isEmpty() || fuzzy == null)
+            return null;
+        final List<MapItem> matches = new ArrayList<>();
+        fuzzy.search(key, key.length() <= 4 ? 1 : 2, matches);
+        return only(matches, group);
+    }
+
+    /**
+     * @return the one item within the group, null if there are none or more
+     *         than one
+     */
+    private static MapItem only(Collection<MapItem> items, MapGroup group) {
+        MapItem found = null;
+        for (MapItem item : items) {
+            if (group != null && !isWithin(item, group))
+                continue;
+            if (found != null && found != item)
+                return null;
+            found = item;
+        }
+        return found;
+    }
+
+    private static int countWithin(Collection<MapItem> items,
+            MapGroup group) {
+        int count = 0;
+        for (MapItem item : items) {
+            if (group == null || isWithin(item, group))
+                ++count;
+        }
+        return count;
+    }
+
+    /**
+     * @return the items with the name in any group, must not be modified
+     */
+    public synchronized Set<MapItem> findAll(String field, String name) {
+        final Set<MapItem> items = (CALLSIGN.equals(field) ? _callsigns
+                : _titles).get(normalize(name));
+        return items == null ? Collections.<MapItem> emptySet()
+                : new HashSet<>(items);
+    }
+
+    static String normalize(String name) {
+        return name.trim().replaceAll("\\s+", " ").toLowerCase(Locale.US);
+    }
+
+    private static boolean isWithin(MapItem item, MapGroup group) {
+        for (MapGroup g = item.getGroup(); g != null; g = g.getParentGroup()) {
+            if (g == group)
+                return true;
+        }
+        return false;
+    }
+
+    /**************************************************************************/
+
+    @Override
+    public void onMapEvent(MapEvent event) {
+        final MapItem item = event.getItem();
+        if (item == null)
+            return;
+        final String type = event.getType();
+        if (MapEvent.ITEM_REMOVED.equals(type)) {
+            item.removeOnMetadataChangedListener(CALLSIGN, this);
+            item.removeOnMetadataChangedListener(TITLE, this);
+            remove(item);
+        } else {
+            add(item);
+        }
+    }
+
+    @Override
+    public void onMetadataChanged(MapItem item, String field) {
+        add(item);
+    }
+
+    private void add(MapItem item) {
+        final String callsign = item.getMetaString(CALLSIGN, null);
+        final String title = item.getTitle();
+        synchronized (this) {
+            final String[] names = _items.get(item);
+            final String[] updated = {
+                    callsign == null ? null : normalize(callsign),
+                    title == null ? null : normalize(title)
+            };
+            if (names != null) {
+                if (equals(names[0], updated[0])
+                        && equals(names[1], updated[1]))
+                    return;
+                remove(item);
+            } else {
+                item.addOnMetadataChangedListener(CALLSIGN, this);
+                item.addOnMetadataChangedListener(TITLE, this);
+            }
+            put(_callsigns, _fuzzyCallsigns, updated[0], item);
+            put(_titles, _fuzzyTitles, updated[1], item);
+            _items.put(item, updated);
+        }
+    }
+
+    private synchronized void remove(MapItem item) {
+        final String[] names = _items.remove(item);
+        if (names == null)
+            return;
+        take(_callsigns, _fuzzyCallsigns, names[0], item);
+        take(_titles, _fuzzyTitles, names[1], item);
+    }
+
+    private static void put(Map<String, Set<MapItem>> index,
+            Map<String, BKTree<MapItem>> fuzzy, String name, MapItem item) {
+        if (name == null || name.isEmpty())
+            return;
+        Set<MapItem> set = index.get(name);
+        if (set == null)
+            index.put(name, set = new HashSet<>());
+        set.add(item);
+        final String digits = Phonetic.digits(name);
+        BKTree<MapItem> tree = fuzzy.get(digits);
+        if (tree == null)
+            fuzzy.put(digits, tree = new BKTree<>());
+        tree.add(Phonetic.encode(name), item);
+    }
+
+    private static void take(Map<String, Set<MapItem>> index,
+            Map<String, BKTree<MapItem>> fuzzy, String name, MapItem item) {
+        if (name == null || name.isEmpty())
+            return;
+        final Set<MapItem> set = index.get(name);
+        if (set != null && set.remove(item) && set.isEmpty())
+            index.remove(name);
+        final String digits = Phonetic.digits(name);
+        final BKTree<MapItem> tree = fuzzy.get(digits);
+        if (tree != null && tree.remove(Phonetic.encode(name), item)
+                && tree.size() == 0)
+            fuzzy.remove(digits);
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -0,0 +1,310 @@
+package com.atakmap.android.helloworld.speechtotext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Matches speech input against sets of synonym phrases in a single pass.
+ * Phrases are added under a category (0 to 63), a phrase may belong to more
+ * than one category.   Once {@link #compile()} is called the phrases are
+ * stored as a token trie in flat arrays and the matcher is immutable, so a
+ * single instance can be shared between threads.
+ *
+ * Input is split on whitespace and lower cased, each token is looked up once
+ * in the token dictionary and every phrase starting at every token is
+ * reported with its token span.
+ */
+public class PhraseMatcher {
+
+    public static final int MAX_CATEGORIES = 64;
+
+    private final Map<String, Integer> tokenIds = new HashMap<>();
+
+    // build time trie, discarded by compile()
+    private BuildNode root = new BuildNode();
+
+    // compiled trie, node 0 is the root.   The children of node n are
+    // childKeys/childNodes[childStart[n] .. childStart[n + 1]), sorted by key
+    private int[] childStart;
+    private int[] childKeys;
+    private int[] childNodes;
+    private long[] nodeMasks;
+    private int maxDepth;
+
+    /**
+     * Add a phrase under the given category.
+     *
+     * @param phrase one or more whitespace separated words
+     * @param category the category, 0 to 63
+     */
+    public void add(String phrase, int category) {
+        if (root == null)
+            throw new IllegalStateException("matcher is compiled");
+        if (category < 0 || category >= MAX_CATEGORIES)
+            throw new IllegalArgumentException("category " + category);
+        final String[] tokens = tokenize(phrase);
+        if (tokens.length == 0)
+            return;
+        BuildNode n = root;
+        for (String t : tokens) {
+            Integer id = tokenIds.get(t);
+            if (id == null)
+                tokenIds.put(t, id = tokenIds.size());
+            BuildNode c = n.children.get(id);
+            if (c == null)
+                n.children.put(id, c = new BuildNode());
+            n = c;
+        }
+        n.mask |= 1L << category;
+        maxDepth = Math.max(maxDepth, tokens.length);
+    }
+
+    public void addAll(String[] phrases, int category) {
+        for (String p : phrases)
+            add(p, category);
+    }
+
+    /**
+     * Flatten the trie, no phrases may be added afterwards.
+     */
+    public void compile() {
+        if (root == null)
+            return;
+        // breadth first so each node's children are contiguous
+        final List<BuildNode> order = new ArrayList<>();
+        order.add(root);
+        int edges = 0;
+        for (int i = 0; i < order.size(); ++i) {
+            final BuildNode n = order.get(i);
+            for (BuildNode c : n.children.values())
+                order.add(c);
+            edges += n.children.size();
+        }
+
+        childStart = new int[order.size() + 1];
+        childKeys = new int[edges];
+        childNodes = new int[edges];
+        nodeMasks = new long[order.size()];
+        int next = 1;
+        int e = 0;
+        for (int i = 0; i < order.size(); ++i) {
+            final BuildNode n = order.get(i);
+            nodeMasks[i] = n.mask;
+            childStart[i] = e;
+            for (Map.Entry<Integer, BuildNode> c : n.children.entrySet()) {
+                childKeys[e] = c.getKey();
+                childNodes[e] = next++;
+                ++e;
+            }
+        }
+        childStart[order.size()] = e;
+        root = null;
+    }
+
+    /**
+     * @return the categories of a phrase that exactly matches the whole
+     *         text, 0 if the text is not a known phrase
+     */
+    public long categories(String text) {
+        final String[] tokens = tokenize(text);
+        if (tokens.length == 0)
+            return 0L;
+        int node = 0;
+        for (String t : tokens) {
+            final Integer id = tokenIds.get(t);
+            if (id == null)
+                return 0L;
+            node = child(node, id);
+            if (node < 0)
+                return 0L;
+        }
+        return nodeMasks[node];
+    }
+
+    /**
+     * Find every phrase in the input.
+     *
+     * @param input the speech input
+     * @return the matches, ordered by start token and then by length
+     */
+    public Result match(String input) {
+        if (root != null)
+            compile();
+        final String[] raw = split(input);
+        final int[] ids = new int[raw.length];
+        for (int i = 0; i < raw.length; ++i) {
+            final Integer id = tokenIds.get(raw[i].toLowerCase(Locale.US));
+            ids[i] = (id == null) ? -1 : id;
+        }
+
+        final Result r = new Result(raw);
+        for (int i = 0; i < ids.length; ++i) {
+            int node = 0;
+            final int limit = Math.min(ids.length, i + maxDepth);
+            for (int j = i; j < limit && ids[j] >= 0; ++j) {
+                node = child(node, ids[j]);
+                if (node < 0)
+                    break;
+                if (nodeMasks[node] != 0L)
+                    r.add(i, j + 1, nodeMasks[node]);
+            }
+        }
+        return r;
+    }
+
+    private int child(int node, int key) {
+        final int idx = Arrays.binarySearch(childKeys, childStart[node],
+                childStart[node + 1], key);
+        return (idx < 0) ? -1 : childNodes[idx];
+    }
+
+    static String[] split(String input) {
+        final String s = (input == null) ? "" : input.trim();
+        if (s.isEmpty())
+            return new String[0];
+        return s.split("\\s+");
+    }
+
+    private static String[] tokenize(String phrase) {
+        final String[] tokens = split(phrase);
+        for (int i = 0; i < tokens.length; ++i)
+            tokens[i] = tokens[i].toLowerCase(Locale.US);
+        return tokens;
+    }
+
+    /**************************************************************************/
+
+    private static class BuildNode {
+        // sorted so the compiled child keys can be binary searched
+        final TreeMap<Integer, BuildNode> children = new TreeMap<>();
+        long mask;
+    }
+
+    /**
+     * The phrases found in one input.   Token positions refer to the input
+     * split on whitespace, spans are [start, end).
+     */
+    public static class Result {
+
+        private final String[] tokens;
+        private int count;
+        private int[] starts = new int[8];
+        private int[] ends = new int[8];
+        private long[] masks = new long[8];
+
+        Result(String[] tokens) {
+            this.tokens = tokens;
+        }
+
+        private void add(int start, int end, long mask) {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+                masks = Arrays.copyOf(masks, count * 2);
+            }
+            starts[count] = start;
+            ends[count] = end;
+            masks[count] = mask;
+            ++count;
+        }
+
+        /**
+         * @return the number of input tokens
+         */
+        public int length() {
+            return tokens.length;
+        }
+
+        /**
+         * @return the input token as spoken, case preserved
+         */
+        public String token(int i) {
+            return tokens[i];
+        }
+
+        /**
+         * @return the number of matches
+         */
+        public int count() {
+            return count;
+        }
+
+        public int start(int match) {
+            return starts[match];
+        }
+
+        public int end(int match) {
+            return ends[match];
+        }
+
+        public boolean is(int match, int category) {
+            return (masks[match] & (1L << category)) != 0L;
+        }
+
+        public boolean has(int category) {
+            return first(category) >= 0;
+        }
+
+        /**
+         * @return the first match of the category, -1 if none
+         */
+        public int first(int category) {
+            for (int i = 0; i < count; ++i) {
+                if (is(i, category))
+                    return i;
+            }
+            return -1;
+        }
+
+        /**
+         * @return the last match of the category, -1 if none.   When several
+         *         matches start at the same token the longest is returned.
+         */
+        public int last(int category) {
+            for (int i = count - 1; i >= 0; --i) {
+                if (is(i, category))
+                    return i;
+            }
+            return -1;
+        }
+
+        /**
+         * @return the longest match of the category starting at the given
+         *         token, -1 if none
+         */
+        public int at(int start, int category) {
+            int ret = -1;
+            for (int i = 0; i < count && starts[i] <= start; ++i) {
+                if (starts[i] == start && is(i, category))
+                    ret = i;
+            }
+            return ret;
+        }
+
+        /**
+         * @return the tokens [from, to) joined by single spaces
+         */
+        public String text(int from, int to) {
+            final StringBuilder sb = new StringBuilder();
+            for (int i = Math.max(from, 0); i < Math.min(to,
+                    tokens.length); ++i) {
+                if (sb.length() > 0)
+                    sb.append(' ');
+                sb.append(tokens[i]);
+            }
+            return sb.toString();
+        }
+
+        /**
+         * @return the text of the input after the given match
+         */
+        public String textAfter(int match) {
+            return text(ends[match], tokens.length);
+        }
+    }
+}
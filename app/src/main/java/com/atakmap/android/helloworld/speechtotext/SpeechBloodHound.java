@@ -3,24 +3,19 @@ package com.atakmap.android.helloworld.speechtotext;
 
 import android.content.Context;
 import android.content.Intent;
-import android.location.Address;
 import android.widget.Toast;
 
 import com.atakmap.android.bloodhound.BloodHoundTool;
-import com.atakmap.android.helloworld.plugin.R;
 import com.atakmap.android.ipc.AtakBroadcast;
 import com.atakmap.android.maps.MapGroup;
 import com.atakmap.android.maps.MapItem;
 import com.atakmap.android.maps.MapView;
 import com.atakmap.android.routes.Route;
 import com.atakmap.android.user.PlacePointTool;
-import com.atakmap.android.user.geocode.GeocodeManager;
-import com.atakmap.coremap.filesystem.FileSystemUtils;
 import com.atakmap.coremap.log.Log;
 import com.atakmap.coremap.maps.coords.GeoBounds;
 import com.atakmap.coremap.maps.coords.GeoPoint;
 
-import java.util.List;
 import java.util.UUID;
 
 /**
@@ -30,8 +25,7 @@ import java.util.UUID;
  */
 public class SpeechBloodHound extends SpeechActivity {
     private final String TAG = "SPEECH_BLOODHOUND";
-    private final String[] routeArray;
-    private final String[] callsignArray;
+    private final SpeechVocabulary vocabulary;
 
     /**
      * Constructor.
@@ -44,9 +38,7 @@ public class SpeechBloodHound extends SpeechActivity {
     public SpeechBloodHound(MapView view, String input, Context context) {
         super(view, context);
         Log.d(TAG, "============INSIDE SPEECH BLOOD HOUND==========");
-        routeArray = context.getResources().getStringArray(R.array.route_array);
-        callsignArray = context.getResources()
-                .getStringArray(R.array.callsign_array);
+        vocabulary = SpeechVocabulary.getInstance(context);
         analyzeSpeech(input);
     }
 
@@ -63,77 +55,50 @@ public class SpeechBloodHound extends SpeechActivity {
     @Override
     void analyzeSpeech(final String input) {
         String mapGroupType;
-        String temp = input.replace("call sign", "callsign");
-        String[] destArr = temp.split(" ");
-        StringBuilder destName = new StringBuilder();
-        int indexR = -1, indexC = -1;
-        for (int i = 0; i < destArr.length; i++) {
-            for (String s : routeArray) {
-                if (destArr[i].equalsIgnoreCase(s)) {
-                    indexR = i;
-                    break;
-                }
-            }
-            for (String s : callsignArray) {
-                if (destArr[i].equalsIgnoreCase(s)) {
-                    indexC = i;
-                    break;
-                }
-            }
-        }
-        if (indexR != -1) {
-            for (int i = indexR + 1; i < destArr.length; i++) {
-                destName.append(destArr[i]);
-                destName.append(" ");
-            }
-            String routeName = destName.toString().trim();
+        PhraseMatcher.Result r = vocabulary.match(input);
+        int route = r.last(SpeechVocabulary.ROUTE);
+        int callsign = r.last(SpeechVocabulary.CALLSIGN);
+        if (route != -1) {
+            String routeName = r.textAfter(route);
             Log.d(TAG, "=========Route name ========" + routeName);
             mapGroupType = "Route";
             UIDFinder(routeName, mapGroupType);
-        } else if (indexC != -1) {
-            for (int i = indexC + 1; i < destArr.length; i++) {
-                destName.append(destArr[i]);
-                destName.append(" ");
-            }
-            String callsign = destName.toString().trim();
-            Log.d(TAG, "=======callsign ===== " + callsign);
+        } else if (callsign != -1) {
+            String callsignName = r.textAfter(callsign);
+            Log.d(TAG, "=======callsign ===== " + callsignName);
             mapGroupType = "Cursor on Target";
-            UIDFinder(callsign, mapGroupType);
+            UIDFinder(callsignName, mapGroupType);
         } else {
             //If no callsign or route, plots a point at the address and BloodHounds to it.
             GeoBounds gb = getView().getBounds();
 
-            Thread t = new Thread(new Runnable() {
-                @Override
-                public void run() {
-                    List<Address> addressList =
-                            GeocodeManager.getInstance(getView().getContext()).getSelectedGeocoder().getLocation(input, gb);
-                    GeoPoint gp = null;
-                    if (!FileSystemUtils.isEmpty(addressList)) {
-                        gp = new GeoPoint(addressList.get(0).getLatitude(), addressList.get(0).getLongitude());
-                    }
-                    if (gp != null) {
-                        Log.d(TAG, "Inside GeocodingTask result listener");
-                        PlacePointTool.MarkerCreator marker = new PlacePointTool.MarkerCreator(
-                                gp);
-                        String randomUID = UUID.randomUUID().toString();
-                        marker.setCallsign(input).setUid(randomUID)
-                                .setType("b-m-p-w-GOTO");
-                        marker.placePoint();
-                        startActivity(randomUID);
-                    } else {
-                        getView().post(new Runnable() {
-                            @Override
-                            public void run() {
-                                Toast.makeText(getView().getContext(),
-                                        "Address not found, Try moving map",
-                                        Toast.LENGTH_LONG).show();
+            GeocodeService.getInstance(getView().getContext()).lookup(input,
+                    gb, new GeocodeService.OnGeocodeListener() {
+                        @Override
+                        public void onGeocode(String address, GeoPoint gp) {
+                            if (gp != null) {
+                                Log.d(TAG,
+                                        "Inside GeocodingTask result listener");
+                                PlacePointTool.MarkerCreator marker = new PlacePointTool.MarkerCreator(
+                                        gp);
+                                String randomUID = UUID.randomUUID()
+                                        .toString();
+                                marker.setCallsign(input).setUid(randomUID)
+                                        .setType("b-m-p-w-GOTO");
+                                marker.placePoint();
+                                startActivity(randomUID);
+                            } else {
+                                getView().post(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        Toast.makeText(getView().getContext(),
+                                                "Address not found, Try moving map",
+                                                Toast.LENGTH_LONG).show();
+                                    }
+                                });
                             }
-                        });
-                    }
-                }
-            });
-            t.start();
+                        }
+                    });
 
         }
     }
@@ -157,14 +122,16 @@ public class SpeechBloodHound extends SpeechActivity {
     }
 
     /**
-     * This gets all the markers on the map and searches for the UID with the callsign/title
+     * This looks up the UID of the item with the callsign/title in the name index
      *
      * @param title - the marker the user is looking for
      */
     private void UIDFinder(String title, String mapGroupType) {
         MapGroup cotGroup = getView().getRootGroup().findMapGroup(mapGroupType);
+        MapItemNameIndex index = MapItemNameIndex.getInstance(getView());
         if (mapGroupType.equalsIgnoreCase("route")) {
-            MapItem item = cotGroup.deepFindItem("title", title);
+            MapItem item = index.findClosest(MapItemNameIndex.TITLE, title,
+                    cotGroup);
             if (item != null) {
                 Route route = (Route) item;
                 startActivity(route.getMarker(0).getUID());
@@ -173,7 +140,8 @@ public class SpeechBloodHound extends SpeechActivity {
                         Toast.LENGTH_SHORT).show();
 
         } else {
-            MapItem item = cotGroup.deepFindItem("callsign", title);
+            MapItem item = index.findClosest(MapItemNameIndex.CALLSIGN,
+                    title, cotGroup);
             if (item != null)
                 startActivity(item.getUID());
             else
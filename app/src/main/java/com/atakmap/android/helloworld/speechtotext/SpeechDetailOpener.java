@@ -26,7 +26,8 @@ public class SpeechDetailOpener {
     public SpeechDetailOpener(String speech, MapView view) {
         MapGroup cotGroup = view.getRootGroup()
                 .findMapGroup("Cursor on Target");
-        MapItem item = cotGroup.deepFindItem("callsign", speech);
+        MapItem item = MapItemNameIndex.getInstance(view)
+                .find(MapItemNameIndex.CALLSIGN, speech, cotGroup);
         Intent detailOpener = new Intent()
                 .setAction(CoTInfoBroadcastReceiver.COTINFO_DETAILS);
         boolean self = false;
@@ -21,10 +21,7 @@ import com.atakmap.android.maps.MapView;
  */
 public class SpeechItemRemover extends SpeechActivity {
     private final String TAG = "SPEECH_ITEM_REMOVER";
-    private final String[] callsignArray;
-    private final String[] drawingObjectArray;
-    private final String[] routeArray;
-    private final String[] wordNumberArray;
+    private final SpeechVocabulary vocabulary;
     private MapGroup mapGroup;
     private MapItem targetItem;
     private String target;
@@ -33,13 +30,7 @@ public class SpeechItemRemover extends SpeechActivity {
     public SpeechItemRemover(String input, final MapView view,
             final Context context) {
         super(view, context);
-        callsignArray = context.getResources()
-                .getStringArray(R.array.callsign_array);
-        drawingObjectArray = context.getResources()
-                .getStringArray(R.array.drawing_objects_array);
-        routeArray = context.getResources().getStringArray(R.array.route_array);
-        wordNumberArray = context.getResources()
-                .getStringArray(R.array.word_number_array);
+        vocabulary = SpeechVocabulary.getInstance(context);
         analyzeSpeech(input);
         startActivity();
     }
@@ -53,38 +44,22 @@ public class SpeechItemRemover extends SpeechActivity {
      */
     @Override
     void analyzeSpeech(String input) {
-        input = input.replace("call sign", "callsign");
-        String[] inputArr = input.split(" ");
-        for (String s : callsignArray) {
-            if (inputArr[1].equalsIgnoreCase(s)) {
-                mapGroupType = "Cursor on Target";
-                mapGroup = getView().getRootGroup().findMapGroup(mapGroupType);
-                targetGetter(input);
-            }
-        }
-        if (mapGroupType.contentEquals("null")) {
-            for (String s : routeArray) {
-                if (inputArr[1].equalsIgnoreCase(s)) {
-                    mapGroupType = "Route";
-                    mapGroup = getView().getRootGroup()
-                            .findMapGroup(mapGroupType);
-                    targetGetter(input);
-                }
-            }
-        }
+        PhraseMatcher.Result r = vocabulary.match(input);
+        // the item type is the word following the remove word
+        int type;
+        if ((type = r.at(1, SpeechVocabulary.CALLSIGN)) != -1)
+            mapGroupType = "Cursor on Target";
+        else if ((type = r.at(1, SpeechVocabulary.ROUTE)) != -1)
+            mapGroupType = "Route";
+        else if ((type = r.at(1, SpeechVocabulary.DRAWING_OBJECT)) != -1)
+            mapGroupType = "Drawing Objects";
         if (mapGroupType.contentEquals("null")) {
-            for (String s : drawingObjectArray) {
-                if (inputArr[1].equalsIgnoreCase(s)) {
-                    mapGroupType = "Drawing Objects";
-                    mapGroup = getView().getRootGroup()
-                            .findMapGroup(mapGroupType);
-                    targetGetter(input);
-                }
-            }
-        } else if (mapGroupType.contentEquals("null")) {
             Toast.makeText(getView().getContext(),
                     "Please say the type of item before it's title",
                     Toast.LENGTH_SHORT).show();
+        } else {
+            mapGroup = getView().getRootGroup().findMapGroup(mapGroupType);
+            targetGetter(r, r.end(type));
         }
     }
 
@@ -96,16 +71,25 @@ public class SpeechItemRemover extends SpeechActivity {
      */
     @Override
     void startActivity() {
-        {
+        if (mapGroup != null) {
+            final MapItemNameIndex index = MapItemNameIndex
+                    .getInstance(getView());
             if (mapGroupType.equals("Cursor on Target"))
-                targetItem = mapGroup.deepFindItem("callsign", target);
+                targetItem = index.findClosest(MapItemNameIndex.CALLSIGN,
+                        target, mapGroup);
             else
-                targetItem = mapGroup.deepFindItem("title", target);
+                targetItem = index.findClosest(MapItemNameIndex.TITLE,
+                        target, mapGroup);
             if (targetItem != null) {
+                // name the item found, it may not be the one that was said
+                final String name = mapGroupType.equals("Cursor on Target")
+                        ? targetItem.getMetaString(MapItemNameIndex.CALLSIGN,
+                                targetItem.getTitle())
+                        : targetItem.getTitle();
                 AlertDialog.Builder alert = new AlertDialog.Builder(
                         getView().getContext());
                 alert.setTitle(getPluginContext().getResources()
-                        .getString(R.string.Remove_item_warn));
+                        .getString(R.string.Remove_item_warn, name));
                 alert.setNegativeButton(getPluginContext().getResources()
                         .getString(R.string.cancel_btn), null);
                 alert.setPositiveButton(
@@ -148,8 +132,9 @@ public class SpeechItemRemover extends SpeechActivity {
                                     int which) {
                                 String newName = input.getText().toString()
                                         .trim();
-                                targetItem = mapGroup.deepFindItem("title",
-                                        newName);
+                                targetItem = index.find(
+                                        MapItemNameIndex.TITLE, newName,
+                                        mapGroup);
                                 if (targetItem != null) {
                                     Long serialID = targetItem.getSerialId();
                                     AtakBroadcast.getInstance()
@@ -174,18 +159,16 @@ public class SpeechItemRemover extends SpeechActivity {
 
     /**
      * This searches for the name of the target the user wants to remove
-     * Removes "remove x" from input, then builds whats left into the target.
+     * Skips "remove x" in the input, then builds whats left into the target.
      *
-     * @param target - Something like "Remove callsign Goose"
+     * @param r - The matched input, something like "Remove callsign Goose"
+     * @param start - The index of the first word of the target
      */
-    private void targetGetter(String target) {
-        target = target.replace("call sign", "callsign");
+    private void targetGetter(PhraseMatcher.Result r, int start) {
         StringBuilder targetBuilder = new StringBuilder();
-        String[] targetArr = target.split(" ");
-        targetArr[0] = "";
-        targetArr[1] = "";
-        for (String s : targetArr) {
-            for (String w : wordNumberArray) {
+        for (int i = start; i < r.length(); i++) {
+            String s = r.token(i);
+            for (String w : vocabulary.getWordNumbers()) {
                 String[] numberWord = w.split(",");
                 s = s.replace(numberWord[1], numberWord[0]);
             }
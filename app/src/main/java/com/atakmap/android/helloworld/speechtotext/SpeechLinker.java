@@ -4,7 +4,6 @@ package com.atakmap.android.helloworld.speechtotext;
 import android.content.Context;
 import android.widget.Toast;
 
-import com.atakmap.android.helloworld.plugin.R;
 import com.atakmap.android.maps.MapGroup;
 import com.atakmap.android.maps.MapView;
 import com.atakmap.android.maps.PointMapItem;
@@ -20,12 +19,11 @@ import java.util.UUID;
 public class SpeechLinker extends SpeechActivity {
 
     private final PointMapItem[] items = new PointMapItem[2];
-    private final String[] selfArray;
+    private final SpeechVocabulary vocabulary;
 
     public SpeechLinker(String input, MapView view, Context pluginContext) {
         super(view, pluginContext);
-        selfArray = getPluginContext().getResources()
-                .getStringArray(R.array.self_array);
+        vocabulary = SpeechVocabulary.getInstance(pluginContext);
         analyzeSpeech(input);
         startActivity();
 
@@ -40,41 +38,16 @@ public class SpeechLinker extends SpeechActivity {
      */
     @Override
     void analyzeSpeech(String input) {
-        String[] prep1Array = getPluginContext().getResources()
-                .getStringArray(R.array.link_preposition_position1);
-        String[] prep2Array = getPluginContext().getResources()
-                .getStringArray(R.array.link_preposition_position2);
+        PhraseMatcher.Result r = vocabulary.match(input);
         String[] titles = new String[2];
-        int indexPreposition1 = -1, indexPreposition2 = -1;
-        String[] inputArr = input.split(" ");
-        //First find the indexes of preposition 1 and 2
-        for (int i = 0; i < inputArr.length; i++) {
-            for (String s : prep1Array) {
-                if (inputArr[i].equalsIgnoreCase(s)) {
-                    indexPreposition1 = i;
-                    break;
-                }
-            }
-            for (String s : prep2Array) {
-                if (inputArr[i].equalsIgnoreCase(s)) {
-                    indexPreposition2 = i;
-                    break;
-                }
-            }
-        }
+        //First find the last of preposition 1 and 2
+        int prep1 = r.last(SpeechVocabulary.LINK_PREPOSITION_1);
+        int prep2 = r.last(SpeechVocabulary.LINK_PREPOSITION_2);
+        int indexPreposition1 = prep1 == -1 ? -1 : r.start(prep1);
+        int indexPreposition2 = prep2 == -1 ? -1 : r.start(prep2);
         //Now construct the names of the markers after the prepositions
-        StringBuilder item1 = new StringBuilder();
-        StringBuilder item2 = new StringBuilder();
-        for (int i = indexPreposition1 + 1; i < indexPreposition2; i++) {
-            item1.append(inputArr[i]);
-            item1.append(" ");
-        }
-        titles[0] = item1.toString().trim();
-        for (int i = indexPreposition2 + 1; i < inputArr.length; i++) {
-            item2.append(inputArr[i]);
-            item2.append(" ");
-        }
-        titles[1] = item2.toString().trim();
+        titles[0] = r.text(indexPreposition1 + 1, indexPreposition2);
+        titles[1] = r.text(indexPreposition2 + 1, r.length());
         itemFinder(titles);
     }
 
@@ -104,7 +77,7 @@ public class SpeechLinker extends SpeechActivity {
     }
 
     /**
-     * Searches through the Cursor on Target MapGroup for both titles.
+     * Looks up both titles in the Cursor on Target MapGroup.
      * Then they get casted into PointMapItems because thats what the R&BItem creator uses.
      * Link x and y
      *
@@ -114,13 +87,12 @@ public class SpeechLinker extends SpeechActivity {
         MapGroup cotGroup = getView().getRootGroup()
                 .findMapGroup("Cursor on Target");
         for (int i = 0; i < items.length; i++) {
-            for (String s : selfArray) {
-                if (titles[i].contentEquals(s))
-                    items[i] = getView().getSelfMarker();
-            }
+            if (vocabulary.isSelf(titles[i]))
+                items[i] = getView().getSelfMarker();
             if (items[i] == null)
-                items[i] = (PointMapItem) cotGroup.deepFindItem("callsign",
-                        titles[i]);
+                items[i] = (PointMapItem) MapItemNameIndex
+                        .getInstance(getView())
+                        .find(MapItemNameIndex.CALLSIGN, titles[i], cotGroup);
         }
         if (items[0] == null && items[1] == null)
             Toast.makeText(getView().getContext(), "Items not found",
@@ -3,22 +3,16 @@ package com.atakmap.android.helloworld.speechtotext;
 
 import android.content.Intent;
 import android.graphics.Color;
-import android.location.Address;
 import android.widget.Toast;
 
 import com.atakmap.android.ipc.AtakBroadcast;
 import com.atakmap.android.maps.MapView;
 import com.atakmap.android.routes.Route;
 import com.atakmap.android.routes.RouteMapReceiver;
-import com.atakmap.android.user.geocode.GeocodeManager;
-import com.atakmap.coremap.filesystem.FileSystemUtils;
 import com.atakmap.coremap.log.Log;
 import com.atakmap.coremap.maps.coords.GeoBounds;
 import com.atakmap.coremap.maps.coords.GeoPoint;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * Takes in String addresses and starts navigation to them.
  */
@@ -96,89 +90,73 @@ public class SpeechNavigator extends SpeechActivity {
     void startActivity() {
         if (inputOrigin != null)
             originFinder(inputOrigin);
-        else
+        else {
             source = getView().getSelfMarker().getPoint();
-        GeoBounds gb = getView().getBounds();
-
-        Thread t = new Thread(new Runnable() {
-            @Override
-            public void run() {
-                List<Address> addressList =
-                        GeocodeManager.getInstance(getView().getContext()).getSelectedGeocoder().getLocation(inputDestination, gb);
-                GeoPoint gp = null;
-                if (!FileSystemUtils.isEmpty(addressList)) {
-                    gp = new GeoPoint(addressList.get(0).getLatitude(), addressList.get(0).getLongitude());
-                }
+            destinationFinder();
+        }
+    }
 
-                if (gp != null) {
-                    Log.d(TAG, "Inside GeocodingTask result listener");
-                    destination = gp;
-                    if (!navFlag) {
-                        route = RouteMapReceiver.promptPlanRoute(getView(),
-                                source, destination,
-                                "Route to " + inputDestination, Color.RED);
-                        route.persist(getView().getMapEventDispatcher(), null,
-                                this.getClass());
-                    } else {
-                        route = RouteMapReceiver.promptPlanRoute(getView(),
-                                source, destination,
-                                "Route to " + inputDestination, Color.RED);
-                        route.persist(getView().getMapEventDispatcher(), null,
-                                this.getClass());
-                        Intent startNavIntent = new Intent(
-                                RouteMapReceiver.START_NAV)
-                                .putExtra("routeUID", route.getUID());
-                        AtakBroadcast.getInstance()
-                                .sendBroadcast(startNavIntent);
-                    }
-                } else {
-                    getView().post(new Runnable() {
-                        @Override
-                        public void run() {
-                            Toast.makeText(getPluginContext(),
-                                    "Address not found, Try moving map",
-                                    Toast.LENGTH_LONG).show();
+    /**
+     * Finds the geopoint of the destination and plots the route to it.
+     */
+    private void destinationFinder() {
+        GeoBounds gb = getView().getBounds();
+        GeocodeService.getInstance(getView().getContext()).lookup(
+                inputDestination, gb, new GeocodeService.OnGeocodeListener() {
+                    @Override
+                    public void onGeocode(String address, GeoPoint gp) {
+                        if (gp != null) {
+                            Log.d(TAG, "Inside GeocodingTask result listener");
+                            destination = gp;
+                            route = RouteMapReceiver.promptPlanRoute(getView(),
+                                    source, destination,
+                                    "Route to " + inputDestination, Color.RED);
+                            route.persist(getView().getMapEventDispatcher(),
+                                    null, this.getClass());
+                            if (navFlag) {
+                                Intent startNavIntent = new Intent(
+                                        RouteMapReceiver.START_NAV)
+                                        .putExtra("routeUID", route.getUID());
+                                AtakBroadcast.getInstance()
+                                        .sendBroadcast(startNavIntent);
+                            }
+                        } else {
+                            toast("Address not found, Try moving map");
                         }
-                    });
-                }
-            }
-        });
-        t.start();
+                    }
+                });
     }
 
     /**
      * If the origin is also an address, it finds the geopoint
-     * Navigates from x to y : it finds x
+     * Navigates from x to y : it finds x, then goes on to find y
      * @param s - the address to find
      */
     private void originFinder(String s) {
         GeoBounds gb = getView().getBounds();
-        Thread t = new Thread(new Runnable() {
+        GeocodeService.getInstance(getView().getContext()).lookup(s, gb,
+                new GeocodeService.OnGeocodeListener() {
+                    @Override
+                    public void onGeocode(String address, GeoPoint gp) {
+                        if (gp != null) {
+                            Log.d(TAG, "Inside GeocodingTask result listener");
+                            source = gp;
+                            destinationFinder();
+                        } else {
+                            toast("Origin Address not found, Try moving map");
+                        }
+                    }
+                });
+    }
+
+    private void toast(final String message) {
+        getView().post(new Runnable() {
             @Override
             public void run() {
-                List<Address> addressList =
-                        GeocodeManager.getInstance(getView().getContext()).getSelectedGeocoder().getLocation(inputDestination, gb);
-                GeoPoint gp = null;
-                if (!FileSystemUtils.isEmpty(addressList)) {
-                    gp = new GeoPoint(addressList.get(0).getLatitude(), addressList.get(0).getLongitude());
-                }
-
-                if (gp != null) {
-                    Log.d(TAG, "Inside GeocodingTask result listener");
-                    source = gp;
-                } else {
-                    getView().post(new Runnable() {
-                        @Override
-                        public void run() {
-                            Toast.makeText(getPluginContext(),
-                                    "Origin Address not found, Try moving map",
-                                    Toast.LENGTH_LONG).show();
-                        }
-                    });
-                }
+                Toast.makeText(getPluginContext(), message, Toast.LENGTH_LONG)
+                        .show();
             }
         });
-        t.start();
     }
 
 }
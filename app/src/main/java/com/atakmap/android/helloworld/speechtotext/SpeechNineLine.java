@@ -70,7 +70,8 @@ public class SpeechNineLine extends SpeechActivity {
      */
     @Override
     void startActivity() {
-        MapItem marker = cotGroup.deepFindItem("callsign", target);
+        MapItem marker = MapItemNameIndex.getInstance(getView())
+                .find(MapItemNameIndex.CALLSIGN, target, cotGroup);
         if (marker != null) {
             Intent intent = new Intent()
                     .setAction("com.atakmap.baokit.NINE_LINE");
@@ -2,25 +2,20 @@
 package com.atakmap.android.helloworld.speechtotext;
 
 import android.content.Context;
-import android.location.Address;
 import android.widget.Toast;
 
-import com.atakmap.android.helloworld.plugin.R;
 import com.atakmap.android.maps.MapView;
 import com.atakmap.android.user.PlacePointTool;
-import com.atakmap.android.user.geocode.GeocodeManager;
 import com.atakmap.android.util.ATAKUtilities;
 import com.atakmap.coremap.conversions.CoordinateFormat;
 import com.atakmap.coremap.conversions.CoordinateFormatUtilities;
 import com.atakmap.coremap.conversions.Span;
 import com.atakmap.coremap.conversions.SpanUtilities;
-import com.atakmap.coremap.filesystem.FileSystemUtils;
 import com.atakmap.coremap.log.Log;
 import com.atakmap.coremap.maps.coords.GeoBounds;
 import com.atakmap.coremap.maps.coords.GeoCalculations;
 import com.atakmap.coremap.maps.coords.GeoPoint;
 
-import java.util.List;
 import java.util.UUID;
 
 /**
@@ -33,19 +28,7 @@ public class SpeechPointDropper extends SpeechActivity {
     private final String TAG = "SPEECH_POINT_DROPPER";
     private final String CHAR_DEG = "\u00B0"; //The degree symbol
 
-    private String[] atArray;
-    private String[] aArray;
-    private String[] friendlyArray;
-    private String[] hostileArray;
-    private String[] unknownArray;
-    private String[] neutralArray;
-    private String[] spotMapArray;
-    private String[] wordLetterArray;
-    private String[] wordNumberArray;
-    private String[] rangeUnitsArray;
-    private String[] cardinalArray;
-    private String[] unitTypesArray;
-    private String[] unitTagsArray;
+    private SpeechVocabulary vocabulary;
 
     private String markerType;
     private String rawCoordInfo;
@@ -82,29 +65,22 @@ public class SpeechPointDropper extends SpeechActivity {
         int atIndex = -1;
         int aIndex = -1;
         int objEndIndex = -1;
-        String[] inputArr = input.split(" ");
-        for (int i = 0; i < inputArr.length - 1; i++) {
-            for (String s : atArray) {
-                if (inputArr[i].contentEquals(s))
-                    atIndex = i;
-            }
-            for (String s : aArray) {
-                if (inputArr[i].contentEquals(s))
-                    aIndex = i;
-            }
-            for (String s : unitTypesArray) {
-                if (inputArr[i].contentEquals(s)) {
-                    boolean tagged = false;
-                    for (String w : unitTagsArray) {
-                        if (inputArr[i + 1].contentEquals(w)) {
-                            objEndIndex = i + 1;
-                            tagged = true;
-                        }
-                    }
-                    if (!tagged)
-                        objEndIndex = i;
-                }
-            }
+        PhraseMatcher.Result r = vocabulary.match(input);
+        String[] inputArr = new String[r.length()];
+        for (int i = 0; i < inputArr.length; i++)
+            inputArr[i] = r.token(i);
+        //The last word is never a keyword, it has to be followed by something
+        for (int m = 0; m < r.count()
+                && r.start(m) < inputArr.length - 1; m++) {
+            int i = r.start(m);
+            if (r.is(m, SpeechVocabulary.AT))
+                atIndex = i;
+            if (r.is(m, SpeechVocabulary.A))
+                aIndex = i;
+            if (r.is(m, SpeechVocabulary.UNIT_TYPE))
+                objEndIndex = r.at(i + 1, SpeechVocabulary.UNIT_TAG) != -1
+                        ? i + 1
+                        : i;
         }
         //Now figure out the marker type(after a and before at) and destination (after at)
         if (atIndex != -1) {
@@ -157,37 +133,23 @@ public class SpeechPointDropper extends SpeechActivity {
      */
     private void markerValidator() {
         Log.d(TAG, "=========INSIDE MARKER VALIDATOR=========");
-        boolean valid = false;
-        for (String s : hostileArray) {
-            if (markerType.equals(s)) {
-                marker.setType("a-h-G");
-                valid = true;
-            }
-        }
-        for (String s : neutralArray) {
-            if (markerType.equals(s)) {
-                marker.setType("a-n-G");
-                valid = true;
-            }
-        }
-        for (String s : friendlyArray) {
-            if (markerType.equals(s)) {
-                marker.setType("a-f-g");
-                valid = true;
-            }
-        }
-        for (String s : unknownArray) {
-            if (markerType.equals(s)) {
-                marker.setType("a-u-G");
-                valid = true;
-            }
-        }
-        for (String s : spotMapArray) {
-            if (markerType.equals(s)) {
-                marker.setType("b-m-p-s-m");
-                valid = true;
-            }
-        }
+        boolean valid = true;
+        if (vocabulary.matchesExactly(markerType, SpeechVocabulary.SPOT_MAP))
+            marker.setType("b-m-p-s-m");
+        else if (vocabulary.matchesExactly(markerType,
+                SpeechVocabulary.UNKNOWN))
+            marker.setType("a-u-G");
+        else if (vocabulary.matchesExactly(markerType,
+                SpeechVocabulary.FRIENDLY))
+            marker.setType("a-f-g");
+        else if (vocabulary.matchesExactly(markerType,
+                SpeechVocabulary.NEUTRAL))
+            marker.setType("a-n-G");
+        else if (vocabulary.matchesExactly(markerType,
+                SpeechVocabulary.HOSTILE))
+            marker.setType("a-h-G");
+        else
+            valid = false;
         if (valid)
             Log.d(TAG, "===VALID MARKER TYPE===");
         else {
@@ -268,28 +230,27 @@ public class SpeechPointDropper extends SpeechActivity {
         } else {
             GeoBounds gb = getView().getBounds();
 
-            Thread t = new Thread(new Runnable() {
-                @Override
-                public void run() {
-                    List<Address> addressList =
-                            GeocodeManager.getInstance(getView().getContext()).getSelectedGeocoder().getLocation(rawCoordInfo, gb);
-                    GeoPoint gp = null;
-                    if (!FileSystemUtils.isEmpty(addressList)) {
-                        gp = new GeoPoint(addressList.get(0).getLatitude(), addressList.get(0).getLongitude());
-                    }
-
-                    if (gp != null) {
-                        Log.d(TAG,
-                                "GEO ADDRESS ++++++++" + gp);
-                        pointPlotter(gp);
-
-                    } else {
-                        Toast.makeText(getView().getContext(),
-                                "Address not found, Try moving map",
-                                Toast.LENGTH_LONG).show();
-                    }
-                }
-            });
+            GeocodeService.getInstance(getView().getContext()).lookup(
+                    rawCoordInfo, gb, new GeocodeService.OnGeocodeListener() {
+                        @Override
+                        public void onGeocode(String address,
+                                final GeoPoint gp) {
+                            getView().post(new Runnable() {
+                                @Override
+                                public void run() {
+                                    if (gp != null) {
+                                        Log.d(TAG, "GEO ADDRESS ++++++++"
+                                                + gp);
+                                        pointPlotter(gp);
+                                    } else {
+                                        Toast.makeText(getView().getContext(),
+                                                "Address not found, Try moving map",
+                                                Toast.LENGTH_LONG).show();
+                                    }
+                                }
+                            });
+                        }
+                    });
         }
     }
 
@@ -322,13 +283,13 @@ public class SpeechPointDropper extends SpeechActivity {
         cleanedString = cleanedString.replace(" ", "");
         cleanedString = cleanedString.replace("/", "");
         cleanedString = cleanedString.replace("+", "");
-        for (String s : wordNumberArray) {
+        for (String s : vocabulary.getWordNumbers()) {
             String[] wordNumberTemp = s.split(",");
             if (cleanedString.contains(wordNumberTemp[1]))
                 cleanedString = cleanedString.replace(wordNumberTemp[1],
                         wordNumberTemp[0]);
         }
-        for (String s : wordLetterArray) {
+        for (String s : vocabulary.getWordLetters()) {
             String[] wordLetterTemp = s.split(",");
             if (cleanedString.contains(wordLetterTemp[1]))
                 cleanedString = cleanedString.replace(wordLetterTemp[1],
@@ -370,35 +331,11 @@ public class SpeechPointDropper extends SpeechActivity {
     }
 
     /**
-     * This loads in the arrays of words to compare the input to.
+     * This loads in the words to compare the input to.
+     * The vocabulary is shared, so the arrays are only read once.
      */
     private void loadResources() {
-        spotMapArray = getPluginContext().getResources()
-                .getStringArray(R.array.spotmap_array);
-        neutralArray = getPluginContext().getResources()
-                .getStringArray(R.array.neutral_array);
-        unknownArray = getPluginContext().getResources()
-                .getStringArray(R.array.unknown_array);
-        hostileArray = getPluginContext().getResources()
-                .getStringArray(R.array.hostile_array);
-        friendlyArray = getPluginContext().getResources()
-                .getStringArray(R.array.friendly_array);
-        wordLetterArray = getPluginContext().getResources()
-                .getStringArray(R.array.letter_array);
-        wordNumberArray = getPluginContext().getResources()
-                .getStringArray(R.array.word_number_array);
-        aArray = getPluginContext().getResources()
-                .getStringArray(R.array.a_array);
-        atArray = getPluginContext().getResources()
-                .getStringArray(R.array.at_array);
-        rangeUnitsArray = getPluginContext().getResources()
-                .getStringArray(R.array.range_units_array);
-        cardinalArray = getPluginContext().getResources()
-                .getStringArray(R.array.cardinal_array);
-        unitTypesArray = getPluginContext().getResources()
-                .getStringArray(R.array.unit_types_array);
-        unitTagsArray = getPluginContext().getResources()
-                .getStringArray(R.array.unit_tag_array);
+        vocabulary = SpeechVocabulary.getInstance(getPluginContext());
     }
 
     /**
@@ -406,7 +343,7 @@ public class SpeechPointDropper extends SpeechActivity {
      * Then uses DistanceCalculations to get the geopoint for pointPlotter
      */
     private void polar() {
-        for (String s : rangeUnitsArray) {
+        for (String s : vocabulary.getRangeUnits()) {
             String[] nameValue = s.split(",");
             if (rawCoordInfo.toLowerCase().contains(nameValue[0]))
                 span = Span.findFromValue(Integer.parseInt(nameValue[1]));
@@ -436,7 +373,7 @@ public class SpeechPointDropper extends SpeechActivity {
         }
         rawCoordInfo = rawCoordInfo.replace("  ", " ");
         String[] rawCoordArr = rawCoordInfo.split(" ");
-        for (String s : wordNumberArray) {
+        for (String s : vocabulary.getWordNumbers()) {
             String[] wordNumberTemp = s.split(",");
             if (rawCoordArr[0].contains(wordNumberTemp[1]))
                 rawCoordArr[0] = rawCoordArr[0].replace(wordNumberTemp[1],
@@ -457,7 +394,7 @@ public class SpeechPointDropper extends SpeechActivity {
 
         double rangeM = SpanUtilities.convert(range, span, Span.METER);
 
-        for (String s : cardinalArray) {
+        for (String s : vocabulary.getCardinals()) {
             String[] dirBear = s.split(",");
             if (rawCoordInfo.toLowerCase().contains(dirBear[0]))
                 bearing = Double.parseDouble(dirBear[1]);
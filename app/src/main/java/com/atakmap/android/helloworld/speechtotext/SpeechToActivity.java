@@ -7,7 +7,6 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.content.res.Resources;
 import android.os.Bundle;
 import android.speech.RecognizerIntent;
 import android.widget.Toast;
@@ -49,25 +48,8 @@ public class SpeechToActivity extends Activity {
     private final int REQ_CODE_SPEECH_INPUT = 100;
 
     private static final String TAG = "SpeechToActivity";
-    //These are the arrays of synonyms
-    private String[] dropArray;
-    private String[] quickArray;
-    private String[] navArray;
-    private String[] bloodHoundArray;
-    private String[] nineLineArray;
-    private String[] compassArray;
-    private String[] brightnessArray;
-    private String[] deleteArray;
-    private String[] hostileSynonyms;
-    private String[] openArray;
-    private String[] detailsArray;
-    private String[] emergencyArray;
-    private String[] nineOneOneArray;
-    private String[] cancelArray;
-    private String[] ringTheBellArray;
-    private String[] troopsInContactArray;
-    private String[] linkArray;
-    private String[] cameraArray;
+    //The compiled synonym arrays
+    private SpeechVocabulary vocabulary;
 
     private Intent returnIntent;
     private final Bundle activities = new Bundle();
@@ -79,26 +61,7 @@ public class SpeechToActivity extends Activity {
      */
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        Resources resources = this.getResources();
-        dropArray = resources.getStringArray(R.array.drop_a_array);
-        quickArray = resources.getStringArray(R.array.quick_array);
-        navArray = resources.getStringArray(R.array.navigate_array);
-        bloodHoundArray = resources.getStringArray(R.array.bloodhound_array);
-        nineLineArray = resources.getStringArray(R.array.nine_line_array);
-        compassArray = resources.getStringArray(R.array.compass_array);
-        brightnessArray = resources.getStringArray(R.array.brightness_array);
-        deleteArray = resources.getStringArray(R.array.delete_array);
-        hostileSynonyms = resources.getStringArray(R.array.hostile_array);
-        openArray = resources.getStringArray(R.array.open_array);
-        detailsArray = resources.getStringArray(R.array.details_array);
-        emergencyArray = resources.getStringArray(R.array.emergency_array);
-        nineOneOneArray = resources.getStringArray(R.array.NineOneOne_Array);
-        cancelArray = resources.getStringArray(R.array.Cancel_Array);
-        ringTheBellArray = resources.getStringArray(R.array.RingTheBell_Array);
-        troopsInContactArray = resources
-                .getStringArray(R.array.TroopsInContact);
-        linkArray = resources.getStringArray(R.array.link_array);
-        cameraArray = resources.getStringArray(R.array.camera_array);
+        vocabulary = SpeechVocabulary.getInstance(this);
 
         returnIntent = new Intent(NAVIGATE_SPEECH_INFO);
         promptSpeechInput();
@@ -159,151 +122,71 @@ public class SpeechToActivity extends Activity {
 
     /**
      * Decides what activity to do based on the speech.
-     * Looks through arrays of synonyms.
+     * Matches the input against all of the synonym arrays in one pass,
+     * then picks the first activity in order of precedence.
      * Puts the activity intent into the activities bundle.
      * activities bundle gets sent back to HelloWorldDropDownReceiver
      * @param input -The unformatted speech input
      */
     private void activityDecider(String input) {
         activities.putString(ACTIVITY_INTENT, "null");
-
-        for (String s : dropArray) {
-            if (input.contains(s)) {
-                activities.putInt(ACTIVITY_INTENT, PLOT_INTENT);
-                activities.putString(DESTINATION, input);
-                returnIntent.putExtra(ACTIVITY_INFO_BUNDLE, activities);
-                broadcast();
-            }
-        }
-        for (String s : navArray) {
-            if (input.contains(s)) {
-                activities.putInt(ACTIVITY_INTENT, NAVIGATE_INTENT);
-
-                for (String q : quickArray) {
-                    if (input.contains(q))
-                        activities.putBoolean(QUICK_INTENT, true);
-                }
-                activities.putString(DESTINATION, input);
-                returnIntent.putExtra(ACTIVITY_INFO_BUNDLE, activities);
-                broadcast();
-            }
-        }
-        for (String s : bloodHoundArray) {
-            if (input.contains(s)) {
-                activities.putInt(ACTIVITY_INTENT, BLOODHOUND_INTENT);
-                activities.putString(DESTINATION, input);
-                returnIntent.putExtra(ACTIVITY_INFO_BUNDLE, activities);
-                broadcast();
-            }
-        }
-        for (String s : nineLineArray) {
-            if (input.contains(s)) {
-                activities.putInt(ACTIVITY_INTENT, NINE_LINE_INTENT);
-                activities.putString(DESTINATION, input);
-                returnIntent.putExtra(ACTIVITY_INFO_BUNDLE, activities);
-                broadcast();
-            }
-        }
-        for (String s : compassArray) {
-            if (input.contains(s)) {
-                activities.putInt(ACTIVITY_INTENT, COMPASS_INTENT);
-                returnIntent.putExtra(ACTIVITY_INFO_BUNDLE, activities);
-                broadcast();
-            }
-        }
-        for (String s : brightnessArray) {
-            if (input.contains(s)) {
-                activities.putInt(ACTIVITY_INTENT, BRIGHTNESS_INTENT);
-                activities.putString(DESTINATION, input);
-                returnIntent.putExtra(ACTIVITY_INFO_BUNDLE, activities);
-                broadcast();
-            }
-        }
-        for (String s : deleteArray) {
-            if (input.contains(s)) {
-                activities.putInt(ACTIVITY_INTENT, DELETE_INTENT);
-                activities.putString(DESTINATION, input);
-                returnIntent.putExtra(ACTIVITY_INFO_BUNDLE, activities);
-                broadcast();
-            }
+        PhraseMatcher.Result r = vocabulary.match(input);
+
+        if (r.has(SpeechVocabulary.DROP)) {
+            activities.putInt(ACTIVITY_INTENT, PLOT_INTENT);
+            activities.putString(DESTINATION, input);
+        } else if (r.has(SpeechVocabulary.NAVIGATE)) {
+            activities.putInt(ACTIVITY_INTENT, NAVIGATE_INTENT);
+            if (r.has(SpeechVocabulary.QUICK))
+                activities.putBoolean(QUICK_INTENT, true);
+            activities.putString(DESTINATION, input);
+        } else if (r.has(SpeechVocabulary.BLOODHOUND)) {
+            activities.putInt(ACTIVITY_INTENT, BLOODHOUND_INTENT);
+            activities.putString(DESTINATION, input);
+        } else if (r.has(SpeechVocabulary.NINE_LINE)) {
+            activities.putInt(ACTIVITY_INTENT, NINE_LINE_INTENT);
+            activities.putString(DESTINATION, input);
+        } else if (r.has(SpeechVocabulary.COMPASS)) {
+            activities.putInt(ACTIVITY_INTENT, COMPASS_INTENT);
+        } else if (r.has(SpeechVocabulary.BRIGHTNESS)) {
+            activities.putInt(ACTIVITY_INTENT, BRIGHTNESS_INTENT);
+            activities.putString(DESTINATION, input);
+        } else if (r.has(SpeechVocabulary.DELETE)) {
+            activities.putInt(ACTIVITY_INTENT, DELETE_INTENT);
+            activities.putString(DESTINATION, input);
+        } else if (r.has(SpeechVocabulary.CAMERA)) {
+            activities.putInt(ACTIVITY_INTENT, CAMERA_INTENT);
+        } else if (r.has(SpeechVocabulary.OPEN)
+                && r.has(SpeechVocabulary.DETAILS)) {
+            int open = r.first(SpeechVocabulary.OPEN);
+            int details = r.first(SpeechVocabulary.DETAILS);
+            activities.putInt(ACTIVITY_INTENT, OPEN_DETAILS_INTENT);
+            input = input.replace(r.text(r.start(details), r.end(details)), "")
+                    .replace(r.text(r.start(open), r.end(open)), "")
+                    .replace("'s", "").trim();
+            activities.putString(DESTINATION, input);
+        } else if (r.has(SpeechVocabulary.OPEN)
+                && r.has(SpeechVocabulary.HOSTILE)) {
+            activities.putInt(ACTIVITY_INTENT, SHOW_HOSTILES_INTENT);
+        } else if (r.has(SpeechVocabulary.EMERGENCY)) {
+            activities.putInt(ACTIVITY_INTENT, EMERGENCY_INTENT);
+            if (r.has(SpeechVocabulary.NINE_ONE_ONE))
+                activities.putString(EMERGENCY_TYPE, "911 Alert");
+            else if (r.has(SpeechVocabulary.CANCEL))
+                activities.putString(EMERGENCY_TYPE, "Cancel Alert");
+            else if (r.has(SpeechVocabulary.RING_THE_BELL))
+                activities.putString(EMERGENCY_TYPE, "Ring The Bell");
+            else if (r.has(SpeechVocabulary.TROOPS_IN_CONTACT))
+                activities.putString(EMERGENCY_TYPE, "Troops In Contact");
+        } else if (r.has(SpeechVocabulary.LINK)) {
+            activities.putInt(ACTIVITY_INTENT, LINK_INTENT);
+            activities.putString(DESTINATION, input);
+        } else {
+            finish();
+            return;
         }
-        for (String s : cameraArray) {
-            if (input.contains(s)) {
-                activities.putInt(ACTIVITY_INTENT, CAMERA_INTENT);
-                returnIntent.putExtra(ACTIVITY_INFO_BUNDLE, activities);
-                broadcast();
-            }
-        }
-        for (String s : openArray) {
-            if (input.contains(s)) {
-                for (String w : detailsArray) {
-                    if (input.contains(w)) {
-                        activities.putInt(ACTIVITY_INTENT, OPEN_DETAILS_INTENT);
-                        input = input.replace(w, "").replace(s, "")
-                                .replace("'s", "").trim();
-                        activities.putString(DESTINATION, input);
-                        returnIntent.putExtra(ACTIVITY_INFO_BUNDLE, activities);
-                        broadcast();
-                    }
-                }
-                for (String h : hostileSynonyms) {
-                    if (input.contains(h)) {
-                        activities.putInt(ACTIVITY_INTENT,
-                                SHOW_HOSTILES_INTENT);
-                        returnIntent.putExtra(ACTIVITY_INFO_BUNDLE, activities);
-                        broadcast();
-                    }
-                }
-            }
-        }
-        for (String s : emergencyArray) {
-            if (input.contains(s)) {
-                activities.putInt(ACTIVITY_INTENT, EMERGENCY_INTENT);
-                String em = "911 Alert";
-                for (String w : nineOneOneArray) {
-                    if (input.contains(w)) {
-                        activities.putString(EMERGENCY_TYPE, em);
-                        returnIntent.putExtra(ACTIVITY_INFO_BUNDLE, activities);
-                        broadcast();
-                    }
-                }
-                for (String w : cancelArray) {
-                    if (input.contains(w)) {
-                        em = "Cancel Alert";
-                        activities.putString(EMERGENCY_TYPE, em);
-                        returnIntent.putExtra(ACTIVITY_INFO_BUNDLE, activities);
-                        broadcast();
-                    }
-                }
-                for (String w : ringTheBellArray) {
-                    if (input.contains(w)) {
-                        em = "Ring The Bell";
-                        activities.putString(EMERGENCY_TYPE, em);
-                        returnIntent.putExtra(ACTIVITY_INFO_BUNDLE, activities);
-                        broadcast();
-                    }
-                }
-                for (String w : troopsInContactArray) {
-                    if (input.contains(w)) {
-                        em = "Troops In Contact";
-                        activities.putString(EMERGENCY_TYPE, em);
-                        returnIntent.putExtra(ACTIVITY_INFO_BUNDLE, activities);
-                        broadcast();
-                    }
-                }
-                returnIntent.putExtra(ACTIVITY_INFO_BUNDLE, activities);
-                broadcast();
-            }
-        }
-        for (String s : linkArray) {
-            if (input.contains(s)) {
-                activities.putInt(ACTIVITY_INTENT, LINK_INTENT);
-                activities.putString(DESTINATION, input);
-                returnIntent.putExtra(ACTIVITY_INFO_BUNDLE, activities);
-                broadcast();
-            }
-        }
-        finish();
+        returnIntent.putExtra(ACTIVITY_INFO_BUNDLE, activities);
+        broadcast();
     }
 
     /**
@@ -0,0 +1,177 @@
+package com.atakmap.android.helloworld.speechtotext;
+
+import android.content.Context;
+import android.content.res.Resources;
+
+import com.atakmap.android.helloworld.plugin.R;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The synonym arrays used by the speech classes, loaded from the plugin
+ * resources once and compiled into a single {@link PhraseMatcher}.   Each
+ * array becomes one matcher category, so a speech input is scanned once no
+ * matter how many arrays a class compares it against.
+ */
+public class SpeechVocabulary {
+
+    // SpeechToActivity
+    public static final int DROP = 0;
+    public static final int QUICK = 1;
+    public static final int NAVIGATE = 2;
+    public static final int BLOODHOUND = 3;
+    public static final int NINE_LINE = 4;
+    public static final int COMPASS = 5;
+    public static final int BRIGHTNESS = 6;
+    public static final int DELETE = 7;
+    public static final int OPEN = 8;
+    public static final int DETAILS = 9;
+    public static final int EMERGENCY = 10;
+    public static final int NINE_ONE_ONE = 11;
+    public static final int CANCEL = 12;
+    public static final int RING_THE_BELL = 13;
+    public static final int TROOPS_IN_CONTACT = 14;
+    public static final int LINK = 15;
+    public static final int CAMERA = 16;
+
+    // marker types
+    public static final int HOSTILE = 17;
+    public static final int FRIENDLY = 18;
+    public static final int NEUTRAL = 19;
+    public static final int UNKNOWN = 20;
+    public static final int SPOT_MAP = 21;
+
+    // SpeechPointDropper
+    public static final int A = 22;
+    public static final int AT = 23;
+    public static final int UNIT_TYPE = 24;
+    public static final int UNIT_TAG = 25;
+
+    // item types
+    public static final int CALLSIGN = 26;
+    public static final int ROUTE = 27;
+    public static final int DRAWING_OBJECT = 28;
+
+    // SpeechLinker
+    public static final int LINK_PREPOSITION_1 = 29;
+    public static final int LINK_PREPOSITION_2 = 30;
+
+    private static SpeechVocabulary _instance;
+
+    private final PhraseMatcher matcher = new PhraseMatcher();
+    private final Set<String> self;
+    private final String[] wordNumbers;
+    private final String[] wordLetters;
+    private final String[] rangeUnits;
+    private final String[] cardinals;
+
+    private SpeechVocabulary(Resources r) {
+        add(r, R.array.drop_a_array, DROP);
+        add(r, R.array.quick_array, QUICK);
+        add(r, R.array.navigate_array, NAVIGATE);
+        add(r, R.array.bloodhound_array, BLOODHOUND);
+        add(r, R.array.nine_line_array, NINE_LINE);
+        add(r, R.array.compass_array, COMPASS);
+        add(r, R.array.brightness_array, BRIGHTNESS);
+        add(r, R.array.delete_array, DELETE);
+        add(r, R.array.open_array, OPEN);
+        add(r, R.array.details_array, DETAILS);
+        add(r, R.array.emergency_array, EMERGENCY);
+        add(r, R.array.NineOneOne_Array, NINE_ONE_ONE);
+        add(r, R.array.Cancel_Array, CANCEL);
+        add(r, R.array.RingTheBell_Array, RING_THE_BELL);
+        add(r, R.array.TroopsInContact, TROOPS_IN_CONTACT);
+        add(r, R.array.link_array, LINK);
+        add(r, R.array.camera_array, CAMERA);
+
+        add(r, R.array.hostile_array, HOSTILE);
+        add(r, R.array.friendly_array, FRIENDLY);
+        add(r, R.array.neutral_array, NEUTRAL);
+        add(r, R.array.unknown_array, UNKNOWN);
+        add(r, R.array.spotmap_array, SPOT_MAP);
+
+        add(r, R.array.a_array, A);
+        add(r, R.array.at_array, AT);
+        add(r, R.array.unit_types_array, UNIT_TYPE);
+        add(r, R.array.unit_tag_array, UNIT_TAG);
+
+        add(r, R.array.callsign_array, CALLSIGN);
+        // the recognizer often splits the word
+        matcher.add("call sign", CALLSIGN);
+        add(r, R.array.route_array, ROUTE);
+        add(r, R.array.drawing_objects_array, DRAWING_OBJECT);
+
+        add(r, R.array.link_preposition_position1, LINK_PREPOSITION_1);
+        add(r, R.array.link_preposition_position2, LINK_PREPOSITION_2);
+        matcher.compile();
+
+        self = Collections.unmodifiableSet(new HashSet<>(
+                Arrays.asList(r.getStringArray(R.array.self_array))));
+        wordNumbers = r.getStringArray(R.array.word_number_array);
+        wordLetters = r.getStringArray(R.array.letter_array);
+        rangeUnits = r.getStringArray(R.array.range_units_array);
+        cardinals = r.getStringArray(R.array.cardinal_array);
+    }
+
+    /**
+     * @param context the plugin context, used to load the arrays on first use
+     */
+    public static synchronized SpeechVocabulary getInstance(Context context) {
+        if (_instance == null)
+            _instance = new SpeechVocabulary(context.getResources());
+        return _instance;
+    }
+
+    private void add(Resources r, int arrayId, int category) {
+        matcher.addAll(r.getStringArray(arrayId), category);
+    }
+
+    public PhraseMatcher.Result match(String input) {
+        return matcher.match(input);
+    }
+
+    /**
+     * @return true if the whole text is one of the phrases in the category
+     */
+    public boolean matchesExactly(String text, int category) {
+        return (matcher.categories(text) & (1L << category)) != 0L;
+    }
+
+    /**
+     * @return true if the text refers to the user, "me", "myself", etc.
+     */
+    public boolean isSelf(String text) {
+        return self.contains(text);
+    }
+
+    /**
+     * @return the "digit,word" pairs, must not be modified
+     */
+    public String[] getWordNumbers() {
+        return wordNumbers;
+    }
+
+    /**
+     * @return the "letter,word" pairs, must not be modified
+     */
+    public String[] getWordLetters() {
+        return wordLetters;
+    }
+
+    /**
+     * @return the "unit,span value" pairs, must not be modified
+     */
+    public String[] getRangeUnits() {
+        return rangeUnits;
+    }
+
+    /**
+     * @return the "direction,bearing" pairs, must not be modified
+     */
+    public String[] getCardinals() {
+        return cardinals;
+    }
+}
@@ -0,0 +1,120 @@
+
+package com.atakmap.android.test;
+
+import static org.junit.Assert.*;
+
+import com.atakmap.android.helloworld.index.BKTree;
+import com.atakmap.android.helloworld.index.Phonetic;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+public class BKTreeTest {
+
+    @Test
+    public void phonetic() {
+        assertEquals("avalan", Phonetic.encode("Avalon"));
+        assertEquals(Phonetic.encode("Avalon"), Phonetic.encode("avelon"));
+        assertEquals(Phonetic.encode("Phoenix"), Phonetic.encode("Fenix"));
+        assertEquals(Phonetic.encode("Kilo 11"), Phonetic.encode("killo11"));
+        assertNotEquals(Phonetic.encode("Alpha 1"),
+                Phonetic.encode("Alpha 11"));
+        assertEquals("3", Phonetic.digits("Alpha 3"));
+        assertEquals("1201", Phonetic.digits("Team 12-01"));
+        assertEquals("", Phonetic.digits("Avalon"));
+    }
+
+    @Test
+    public void closestMatch() {
+        BKTree<String> tree = new BKTree<>();
+        for (String s : new String[] {
+                "Avalon", "Goose", "Maverick", "Iceman", "Viper"
+        })
+            tree.add(Phonetic.encode(s), s);
+
+        List<String> out = new ArrayList<>();
+        assertEquals(0, tree.search(Phonetic.encode("avelon"), 2, out));
+        assertEquals("Avalon", out.get(0));
+
+        out.clear();
+        assertEquals(1, tree.search(Phonetic.encode("mavrik"), 2, out));
+        assertEquals("Maverick", out.get(0));
+
+        out.clear();
+        assertEquals(-1, tree.search(Phonetic.encode("jester"), 2, out));
+        assertTrue(out.isEmpty());
+
+        assertTrue(tree.remove(Phonetic.encode("Avalon"), "Avalon"));
+        out.clear();
+        assertEquals(-1, tree.search(Phonetic.encode("avalon"), 1, out));
+    }
+
+    @Test
+    public void matchesLinearScan() {
+        Random r = new Random(5);
+        BKTree<Integer> tree = new BKTree<>();
+        String[] keys = new String[10000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = randomKey(r);
+            tree.add(keys[i], i);
+        }
+        // remove most entries to exercise the rebuild
+        for (int i = 0; i < keys.length; i += 3) {
+            assertTrue(tree.remove(keys[i], i));
+            keys[i] = null;
+        }
+        assertEquals(6666, tree.size());
+
+        for (int q = 0; q < 500; q++) {
+            String query = randomKey(r);
+            int best = 3;
+            Set<Integer> expected = new HashSet<>();
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == null)
+                    continue;
+                int d = levenshtein(query, keys[i]);
+                if (d < best) {
+                    best = d;
+                    expected.clear();
+                }
+                if (d == best)
+                    expected.add(i);
+            }
+            Set<Integer> actual = new HashSet<>();
+            int d = tree.search(query, 2, actual);
+            assertEquals(best > 2 ? -1 : best, d);
+            assertEquals(best > 2 ? new HashSet<Integer>() : expected,
+                    actual);
+        }
+    }
+
+    private static String randomKey(Random r) {
+        StringBuilder sb = new StringBuilder();
+        int n = 4 + r.nextInt(6);
+        for (int i = 0; i < n; i++)
+            sb.append((char) ('a' + r.nextInt(10)));
+        return sb.toString();
+    }
+
+    private static int levenshtein(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++)
+            d[i][0] = i;
+        for (int j = 0; j <= b.length(); j++)
+            d[0][j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1),
+                        d[i - 1][j - 1]
+                                + (a.charAt(i - 1) == b.charAt(j - 1) ? 0
+                                        : 1));
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+}
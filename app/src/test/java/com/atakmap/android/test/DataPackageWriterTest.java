@@ -0,0 +1,162 @@
+
+package com.atakmap.android.test;
+
+import static org.junit.Assert.*;
+
+import com.atakmap.android.helloworld.datapackage.DataPackageWriter;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+public class DataPackageWriterTest {
+
+    /**
+     * Serializes "item-N" as "cot-N", leaving out multiples of 7 and failing
+     * on multiples of 11.
+     */
+    private static final DataPackageWriter.Serializer<String> SERIALIZER = new DataPackageWriter.Serializer<String>() {
+        @Override
+        public String getUid(String item) {
+            return item;
+        }
+
+        @Override
+        public byte[] serialize(String item) throws Exception {
+            int n = Integer.parseInt(item.substring(5));
+            if (n % 7 == 0)
+                return null;
+            if (n % 11 == 0)
+                throw new IllegalStateException("no cot for " + item);
+            return ("cot-" + n).getBytes(StandardCharsets.UTF_8);
+        }
+    };
+
+    @Test
+    public void entriesInOrderWithTheManifestLast() throws IOException {
+        List<String> items = items(100);
+        final int[] progress = new int[2];
+        DataPackageWriter<String> writer = new DataPackageWriter<>(
+                "test & package", items, SERIALIZER, 4);
+        writer.setProgressListener(new DataPackageWriter.ProgressListener() {
+            @Override
+            public void onProgress(int done, int total) {
+                assertEquals(progress[0] + 1, done);
+                progress[0] = done;
+                progress[1] = total;
+            }
+        });
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int written = writer.write(out);
+        assertEquals(100, progress[0]);
+        assertEquals(100, progress[1]);
+
+        List<String> names = new ArrayList<>();
+        String manifest = null;
+        try (ZipInputStream zip = new ZipInputStream(
+                new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry e;
+            while ((e = zip.getNextEntry()) != null) {
+                String content = read(zip);
+                if (e.getName().equals(DataPackageWriter.MANIFEST_ENTRY)) {
+                    manifest = content;
+                    continue;
+                }
+                assertNull("manifest is written last", manifest);
+                names.add(e.getName());
+                String n = e.getName().substring(5, e.getName().indexOf('/'));
+                assertEquals("cot-" + n, content);
+            }
+        }
+        assertEquals(written, names.size());
+
+        int expected = 0;
+        for (int i = 0; i < 100; i++) {
+            String entry = "item-" + i + "/item-" + i + ".cot";
+            if (i % 7 == 0 || i % 11 == 0) {
+                assertFalse(names.contains(entry));
+                assertFalse(manifest.contains("\"" + entry + "\""));
+            } else {
+                assertEquals(entry, names.get(expected++));
+                assertTrue(manifest.contains("zipEntry=\"" + entry + "\""));
+            }
+        }
+        assertEquals(expected, written);
+        assertTrue(manifest.contains("value=\"test &amp; package\""));
+    }
+
+    @Test
+    public void duplicateUidsAreWrittenOnce() throws IOException {
+        List<String> items = items(3);
+        items.add("item-1");
+        DataPackageWriter<String> writer = new DataPackageWriter<>("dup",
+                items, SERIALIZER, 2);
+        assertEquals(2, writer.write(new ByteArrayOutputStream()));
+    }
+
+    @Test
+    public void cancelStopsTheWrite() throws IOException {
+        final DataPackageWriter<String> writer = new DataPackageWriter<>(
+                "cancel", items(1000), SERIALIZER, 2);
+        writer.setProgressListener(new DataPackageWriter.ProgressListener() {
+            @Override
+            public void onProgress(int done, int total) {
+                if (done == 10)
+                    writer.cancel();
+            }
+        });
+        try {
+            writer.write(new ByteArrayOutputStream());
+            fail("expected a CancellationException");
+        } catch (CancellationException expected) {
+            assertTrue(writer.isCancelled());
+        }
+    }
+
+    @Test
+    public void thousandsOfItems() throws IOException {
+        final byte[] body = new byte[2048];
+        Arrays.fill(body, (byte) 'x');
+        DataPackageWriter<String> writer = new DataPackageWriter<>("large",
+                items(5000), new DataPackageWriter.Serializer<String>() {
+                    @Override
+                    public String getUid(String item) {
+                        return item;
+                    }
+
+                    @Override
+                    public byte[] serialize(String item) {
+                        return body;
+                    }
+                }, 4);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(5000, writer.write(out));
+        // the entries are stored compressed
+        assertTrue(out.size() < 5000 * body.length);
+    }
+
+    private static List<String> items(int count) {
+        List<String> items = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+            items.add("item-" + i);
+        return items;
+    }
+
+    private static String read(ZipInputStream zip) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int r;
+        while ((r = zip.read(buf)) > 0)
+            out.write(buf, 0, r);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,159 @@
+
+package com.atakmap.android.test;
+
+import static org.junit.Assert.*;
+
+import com.atakmap.android.helloworld.DependentShapeRegistry;
+import com.atakmap.android.maps.MapEvent;
+import com.atakmap.android.maps.MapEventDispatcher;
+import com.atakmap.android.maps.MapItem;
+import com.atakmap.android.maps.MapView;
+import com.atakmap.android.maps.PointMapItem;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class DependentShapeRegistryTest {
+
+    @Mock
+    private MapView mapView;
+
+    @Mock
+    private MapEventDispatcher dispatcher;
+
+    private DependentShapeRegistry registry;
+
+    // the anchor and dependent of every onAnchorMoved call, in order
+    private final List<MapItem> moved = new ArrayList<>();
+
+    private final DependentShapeRegistry.OnAnchorMovedListener recorder = new DependentShapeRegistry.OnAnchorMovedListener() {
+        @Override
+        public void onAnchorMoved(PointMapItem anchor, MapItem dependent) {
+            moved.add(anchor);
+            moved.add(dependent);
+        }
+    };
+
+    @Before
+    public void setUp() {
+        Mockito.when(mapView.getMapEventDispatcher()).thenReturn(dispatcher);
+        registry = new DependentShapeRegistry(mapView);
+        Mockito.verify(dispatcher).addMapEventListener(MapEvent.ITEM_REMOVED,
+                registry);
+    }
+
+    @Test
+    public void eachDependentIsHandedToItsListener() {
+        PointMapItem a = anchor("a");
+        PointMapItem b = anchor("b");
+        MapItem ellipse = item("ellipse");
+        MapItem circle = item("circle");
+        MapItem other = item("other");
+
+        // one listener shared by every shape, as the receiver does
+        registry.register(a, ellipse, recorder);
+        registry.register(a, circle, recorder);
+        registry.register(b, other, recorder);
+        Mockito.verify(a, Mockito.times(1)).addOnPointChangedListener(
+                registry);
+
+        registry.onPointChanged(a);
+        assertEquals(Arrays.asList(a, ellipse, a, circle), moved);
+
+        moved.clear();
+        registry.onPointChanged(b);
+        assertEquals(Arrays.<MapItem> asList(b, other), moved);
+    }
+
+    @Test
+    public void removingTheAnchorRemovesItsDependents() {
+        PointMapItem a = anchor("a");
+        MapItem ellipse = item("ellipse");
+        MapItem circle = item("circle");
+        registry.register(a, ellipse, recorder);
+        registry.register(a, circle, null);
+
+        registry.onMapEvent(removed(a));
+        Mockito.verify(ellipse).removeFromGroup();
+        Mockito.verify(circle).removeFromGroup();
+        Mockito.verify(a).removeOnPointChangedListener(registry);
+        assertTrue(registry.getDependents("a").isEmpty());
+
+        registry.onPointChanged(a);
+        assertTrue(moved.isEmpty());
+    }
+
+    @Test
+    public void aDependentRemovedOnItsOwnIsDropped() {
+        PointMapItem a = anchor("a");
+        MapItem ellipse = item("ellipse");
+        MapItem circle = item("circle");
+        registry.register(a, ellipse, recorder);
+        registry.register(a, circle, recorder);
+
+        registry.onMapEvent(removed(ellipse));
+        assertEquals(Arrays.asList(circle), registry.getDependents("a"));
+        Mockito.verify(ellipse, Mockito.never()).removeFromGroup();
+        Mockito.verify(a, Mockito.never()).removeOnPointChangedListener(
+                registry);
+
+        registry.onPointChanged(a);
+        assertEquals(Arrays.asList(a, circle), moved);
+
+        // the last dependent going stops listening to the anchor
+        assertTrue(registry.unregister(circle));
+        assertFalse(registry.unregister(circle));
+        Mockito.verify(a).removeOnPointChangedListener(registry);
+    }
+
+    @Test
+    public void registeringAgainMovesTheDependent() {
+        PointMapItem a = anchor("a");
+        PointMapItem b = anchor("b");
+        MapItem ellipse = item("ellipse");
+        registry.register(a, ellipse, recorder);
+        registry.register(b, ellipse, recorder);
+        assertTrue(registry.getDependents("a").isEmpty());
+        assertEquals(Arrays.asList(ellipse), registry.getDependents("b"));
+        Mockito.verify(a).removeOnPointChangedListener(registry);
+    }
+
+    @Test
+    public void disposeStopsListening() {
+        PointMapItem a = anchor("a");
+        registry.register(a, item("ellipse"), recorder);
+        registry.dispose();
+        Mockito.verify(dispatcher).removeMapEventListener(
+                MapEvent.ITEM_REMOVED, registry);
+        Mockito.verify(a).removeOnPointChangedListener(registry);
+        assertTrue(registry.getDependents("a").isEmpty());
+    }
+
+    private static PointMapItem anchor(String uid) {
+        PointMapItem item = Mockito.mock(PointMapItem.class);
+        Mockito.when(item.getUID()).thenReturn(uid);
+        return item;
+    }
+
+    private static MapItem item(String uid) {
+        MapItem item = Mockito.mock(MapItem.class);
+        Mockito.when(item.getUID()).thenReturn(uid);
+        return item;
+    }
+
+    private static MapEvent removed(MapItem item) {
+        MapEvent event = Mockito.mock(MapEvent.class);
+        Mockito.when(event.getItem()).thenReturn(item);
+        Mockito.when(event.getType()).thenReturn(MapEvent.ITEM_REMOVED);
+        return event;
+    }
+}
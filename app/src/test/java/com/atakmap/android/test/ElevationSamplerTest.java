@@ -0,0 +1,162 @@
+
+package com.atakmap.android.test;
+
+import static org.junit.Assert.*;
+
+import com.atakmap.android.helloworld.elevation.ElevationSampler;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ElevationSamplerTest {
+
+    /**
+     * Counts the lookups, with an elevation that depends on the point and
+     * the model.
+     */
+    private static class CountingSource implements ElevationSampler.Source {
+        final AtomicInteger calls = new AtomicInteger();
+        final List<Integer> tiles = new ArrayList<>();
+
+        @Override
+        public double getElevation(double lat, double lng, int model) {
+            calls.incrementAndGet();
+            synchronized (tiles) {
+                tiles.add((int) Math.floor(lat) * 360
+                        + (int) Math.floor(lng));
+            }
+            if (lat > 80)
+                return Double.NaN;
+            return elevation(lat, lng, model);
+        }
+
+        static double elevation(double lat, double lng, int model) {
+            return Math.round(lat * 1e5) + Math.round(lng * 1e5) * 1e-7
+                    + model * 1e8;
+        }
+    }
+
+    @Test
+    public void resultsFollowInputOrder() {
+        CountingSource source = new CountingSource();
+        ElevationSampler sampler = new ElevationSampler(source);
+        Random r = new Random(7);
+        double[] lats = new double[10000];
+        double[] lngs = new double[10000];
+        for (int i = 0; i < lats.length; i++) {
+            lats[i] = r.nextDouble() * 10 - 5;
+            lngs[i] = r.nextDouble() * 10 - 5;
+        }
+        lats[3] = 85;
+        lats[4] = Double.NaN;
+        lngs[5] = 200;
+
+        double[] terrain = sampler.sample(lats, lngs, 1);
+        double[] surface = sampler.sample(lats, lngs, 2);
+        assertEquals(lats.length, terrain.length);
+        for (int i = 0; i < lats.length; i++) {
+            if (i >= 3 && i <= 5) {
+                assertTrue(Double.isNaN(terrain[i]));
+                continue;
+            }
+            assertEquals(CountingSource.elevation(lats[i], lngs[i], 1),
+                    terrain[i], 0);
+            assertEquals(CountingSource.elevation(lats[i], lngs[i], 2),
+                    surface[i], 0);
+        }
+        // the point off the globe and the NaN are never looked up
+        assertEquals(2 * (lats.length - 2), source.calls.get());
+    }
+
+    @Test
+    public void cached() {
+        CountingSource source = new CountingSource();
+        ElevationSampler sampler = new ElevationSampler(source, 1024);
+        double[] first = sampler.grid(35, -79, 34.99, -78.99, 10, 10, 1);
+        assertEquals(100, source.calls.get());
+        double[] second = sampler.grid(35, -79, 34.99, -78.99, 10, 10, 1);
+        assertEquals(100, source.calls.get());
+        assertArrayEquals(first, second, 0);
+        assertEquals(CountingSource.elevation(35, -79, 1), first[0], 0);
+        assertEquals(CountingSource.elevation(34.99, -78.99, 1), first[99],
+                0);
+
+        // a point without data is remembered as such
+        sampler.sample(new double[] {
+                85
+        }, new double[] {
+                0
+        }, 1);
+        sampler.sample(new double[] {
+                85
+        }, new double[] {
+                0
+        }, 1);
+        assertEquals(101, source.calls.get());
+
+        sampler.clear();
+        sampler.grid(35, -79, 34.99, -78.99, 10, 10, 1);
+        assertEquals(201, source.calls.get());
+    }
+
+    @Test
+    public void cacheIsBounded() {
+        CountingSource source = new CountingSource();
+        ElevationSampler sampler = new ElevationSampler(source, 160);
+        sampler.grid(10, 10, 9, 11, 40, 40, 1);
+        assertEquals(1600, source.calls.get());
+        sampler.grid(10, 10, 9, 11, 40, 40, 1);
+        assertTrue(source.calls.get() > 3000);
+    }
+
+    @Test
+    public void sortedByTile() {
+        CountingSource source = new CountingSource();
+        ElevationSampler sampler = new ElevationSampler(source);
+        // a small batch runs on the calling thread, in tile order
+        double[] lats = new double[40];
+        double[] lngs = new double[40];
+        for (int i = 0; i < lats.length; i++) {
+            lats[i] = (i % 4) + 0.5;
+            lngs[i] = i * 0.001;
+        }
+        sampler.sample(lats, lngs, 1);
+        for (int i = 1; i < source.tiles.size(); i++)
+            assertTrue(source.tiles.get(i - 1) <= source.tiles.get(i));
+    }
+
+    @Test
+    public void parallel() {
+        final Set<Thread> threads = Collections
+                .synchronizedSet(new HashSet<Thread>());
+        ElevationSampler.Source slow = new ElevationSampler.Source() {
+            @Override
+            public double getElevation(double lat, double lng, int model) {
+                threads.add(Thread.currentThread());
+                long end = System.nanoTime() + 20000;
+                while (System.nanoTime() < end)
+                    ;
+                return lat;
+            }
+        };
+        double[] lats = new double[5000];
+        double[] lngs = new double[5000];
+        for (int i = 0; i < lats.length; i++) {
+            lats[i] = i * 0.001;
+            lngs[i] = i * 0.001;
+        }
+        double[] out = new ElevationSampler(slow).sample(lats, lngs, 1);
+        for (int i = 0; i < lats.length; i++)
+            assertEquals(lats[i], out[i], 0);
+        // the pool leaves a core for the caller
+        if (Runtime.getRuntime().availableProcessors() > 2)
+            assertTrue(threads.size() > 1);
+    }
+}
@@ -0,0 +1,206 @@
+
+package com.atakmap.android.test;
+
+import static org.junit.Assert.*;
+
+import com.atakmap.android.helloworld.feed.FeedPoller;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the poller against a local server standing in for a feed.
+ */
+public class FeedPollerTest {
+
+    private HttpServer server;
+    private String url;
+
+    // what the stand-in feed serves, guarded by this
+    private int status = 200;
+    private String etag = "\"1\"";
+    private String document = "one";
+    private final List<Long> requestTimes = new ArrayList<>();
+    private final List<String> ifNoneMatch = new ArrayList<>();
+
+    private final List<String> updates = new ArrayList<>();
+    private final List<Exception> errors = new ArrayList<>();
+    // the delay the poller computed after each failure
+    private final List<Long> delays = new ArrayList<>();
+
+    private final FeedPoller.Parser<String> parser = new FeedPoller.Parser<String>() {
+        @Override
+        public String parse(Reader body) throws IOException {
+            StringBuilder sb = new StringBuilder();
+            char[] buf = new char[256];
+            for (int n; (n = body.read(buf)) >= 0;)
+                sb.append(buf, 0, n);
+            return sb.toString();
+        }
+    };
+
+    private final FeedPoller.Listener<String> listener = new FeedPoller.Listener<String>() {
+        @Override
+        public void onFeedUpdate(FeedPoller<String> feed, String doc) {
+            synchronized (FeedPollerTest.this) {
+                updates.add(doc);
+                FeedPollerTest.this.notifyAll();
+            }
+        }
+
+        @Override
+        public void onFeedError(FeedPoller<String> feed, Exception e) {
+            synchronized (FeedPollerTest.this) {
+                errors.add(e);
+                delays.add(feed.getDelay());
+                FeedPollerTest.this.notifyAll();
+            }
+        }
+    };
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/feed", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange ex) throws IOException {
+                final int code;
+                final byte[] body;
+                synchronized (FeedPollerTest.this) {
+                    requestTimes.add(System.nanoTime());
+                    String tag = ex.getRequestHeaders()
+                            .getFirst("If-None-Match");
+                    ifNoneMatch.add(tag);
+                    FeedPollerTest.this.notifyAll();
+                    if (status != 200) {
+                        code = status;
+                        body = new byte[0];
+                    } else if (etag.equals(tag)) {
+                        code = 304;
+                        body = null;
+                    } else {
+                        code = 200;
+                        body = document.getBytes(StandardCharsets.UTF_8);
+                        ex.getResponseHeaders().set("ETag", etag);
+                    }
+                }
+                ex.sendResponseHeaders(code, body == null ? -1 : body.length);
+                try (OutputStream os = ex.getResponseBody()) {
+                    if (body != null)
+                        os.write(body);
+                }
+            }
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/feed";
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void conditionalRequests() throws Exception {
+        FeedPoller<String> poller = new FeedPoller<>(url, 20, parser,
+                listener);
+        poller.setJitter(0);
+        poller.start();
+        awaitSize(updates, 1);
+        awaitSize(requestTimes, 5);
+        synchronized (this) {
+            assertEquals(1, updates.size());
+            assertEquals("one", updates.get(0));
+            assertNull(ifNoneMatch.get(0));
+            for (int i = 1; i < ifNoneMatch.size(); i++)
+                assertEquals("\"1\"", ifNoneMatch.get(i));
+            etag = "\"2\"";
+            document = "two";
+        }
+        awaitSize(updates, 2);
+        poller.stop();
+        synchronized (this) {
+            assertEquals(2, updates.size());
+            assertEquals("two", updates.get(1));
+            assertTrue(errors.isEmpty());
+        }
+    }
+
+    @Test
+    public void backoff() throws Exception {
+        synchronized (this) {
+            status = 503;
+        }
+        FeedPoller<String> poller = new FeedPoller<>(url, 20, parser,
+                listener);
+        poller.setJitter(0);
+        poller.setMaxBackoff(160);
+        poller.start();
+        awaitSize(errors, 5);
+        synchronized (this) {
+            // doubled from the interval for each failure, up to the cap
+            assertEquals(Arrays.asList(40L, 80L, 160L, 160L, 160L),
+                    delays.subList(0, 5));
+            // the poll after the third failure waited at least its delay
+            long fourth = requestTimes.get(3) - requestTimes.get(2);
+            assertTrue("backed off " + fourth / 1000000 + "ms",
+                    fourth >= 150000000L);
+            assertTrue(updates.isEmpty());
+            status = 200;
+        }
+        awaitSize(updates, 1);
+        poller.stop();
+        assertEquals(0, poller.getFailures());
+        synchronized (this) {
+            assertEquals(1, updates.size());
+            assertTrue(errors.size() >= 5);
+        }
+    }
+
+    @Test
+    public void stop() throws Exception {
+        FeedPoller<String> poller = new FeedPoller<>(url, 20, parser,
+                listener);
+        poller.start();
+        awaitSize(requestTimes, 2);
+        poller.stop();
+        assertFalse(poller.isRunning());
+        Thread.sleep(50);
+        int count = requestCount();
+        Thread.sleep(150);
+        assertEquals(count, requestCount());
+    }
+
+    private synchronized int requestCount() {
+        return requestTimes.size();
+    }
+
+    /**
+     * Wait until the server or the listener has added to the list, they
+     * notify on this test.   The timeout only guards against a hang.
+     */
+    private synchronized void awaitSize(List<?> list, int size)
+            throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (list.size() < size) {
+            final long remaining = deadline - System.currentTimeMillis();
+            assertTrue("timed out waiting for " + size, remaining > 0);
+            wait(remaining);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+
+package com.atakmap.android.test;
+
+import static org.junit.Assert.*;
+
+import com.atakmap.android.helloworld.index.Gazetteer;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+public class GazetteerTest {
+
+    private static final String CSV = "name,lat,lon\n"
+            + "Rally Point,35.1,-79.0\n"
+            + "\"Taco Bell, Main St\",35.2,-79.1\n"
+            + "Rallypoint,40.0,-80.0\n"
+            + "Fort Bragg,35.14,-79.0\n"
+            + "Fort Benning,32.36,-84.95\n"
+            + "Landing Zone Alpha,35.3,-79.2\n"
+            + "bad row,abc,1\n";
+
+    private static Gazetteer build() throws IOException {
+        File f = File.createTempFile("gazetteer", ".gzt");
+        f.deleteOnExit();
+        Gazetteer.Builder b = new Gazetteer.Builder();
+        assertEquals(6, b.addCsv(new StringReader(CSV)));
+        b.write(f);
+        return Gazetteer.open(f);
+    }
+
+    @Test
+    public void exactAndPrefix() throws IOException {
+        try (Gazetteer g = build()) {
+            assertEquals(6, g.size());
+
+            List<Gazetteer.Entry> hits = g.find("rally-point");
+            assertEquals(2, hits.size());
+            hits = Gazetteer.sortByDistance(hits, 35, -79);
+            assertEquals("Rally Point", hits.get(0).name);
+
+            assertEquals("Taco Bell, Main St",
+                    g.find("taco bell main st").get(0).name);
+            assertTrue(g.find("taco").isEmpty());
+
+            List<Gazetteer.Entry> forts = g.findPrefix("Fort B", 10);
+            assertEquals(2, forts.size());
+            assertEquals("Fort Benning", forts.get(0).name);
+            assertEquals(1, g.findPrefix("fort", 1).size());
+        }
+    }
+
+    @Test
+    public void fuzzy() throws IOException {
+        try (Gazetteer g = build()) {
+            List<Gazetteer.Entry> hits = g.findFuzzy("fort brag", 2);
+            assertEquals(1, hits.size());
+            assertEquals("Fort Bragg", hits.get(0).name);
+
+            hits = g.findFuzzy("landing zone alfa", 2);
+            assertEquals("Landing Zone Alpha", hits.get(0).name);
+
+            assertTrue(g.findFuzzy("fort knox", 2).isEmpty());
+        }
+    }
+
+    @Test
+    public void fuzzyMisheardFirstLetter() throws IOException {
+        try (Gazetteer g = build()) {
+            List<Gazetteer.Entry> hits = g.findFuzzy("port bragg", 1);
+            assertEquals(1, hits.size());
+            assertEquals("Fort Bragg", hits.get(0).name);
+
+            // both places sharing the key, in name order
+            hits = g.findFuzzy("wally point", 1);
+            assertEquals(2, hits.size());
+            assertEquals("Rally Point", hits.get(0).name);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+
+package com.atakmap.android.test;
+
+import static org.junit.Assert.*;
+
+import com.atakmap.android.helloworld.index.MetadataIndex;
+import com.atakmap.android.maps.MapItem;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class MetadataIndexTest {
+
+    private MetadataIndex index;
+    private MapItem alpha, bravo, charlie;
+
+    @Before
+    public void setUp() {
+        index = new MetadataIndex();
+        alpha = item("uid-a", "a-f-G", "Alpha", "team-1");
+        bravo = item("uid-b", "a-f-G", "Bravo", "team-1");
+        charlie = item("uid-c", "a-h-G", "Charlie", "team-2");
+        index.add(alpha);
+        index.add(bravo);
+        index.add(charlie);
+    }
+
+    @Test
+    public void narrowsToTheSmallestSet() {
+        assertEquals(3, index.size());
+        assertEquals(3, index.candidates(null).size());
+        assertEquals(3, index.candidates(query("team", "team-1")).size());
+
+        Collection<MapItem> c = index.candidates(query("type", "a-f-G"));
+        assertEquals(new HashSet<>(Arrays.asList(alpha, bravo)),
+                new HashSet<>(c));
+
+        Map<String, String> q = query("type", "a-f-G");
+        q.put("callsign", "Bravo");
+        assertEquals(Collections.singleton(bravo),
+                new HashSet<>(index.candidates(q)));
+
+        assertTrue(index.candidates(query("uid", "uid-x")).isEmpty());
+    }
+
+    @Test
+    public void matchesChecksEveryEntry() {
+        Map<String, String> q = query("type", "a-f-G");
+        q.put("team", "team-1");
+        assertTrue(MetadataIndex.matches(alpha, q));
+        q.put("callsign", "Bravo");
+        assertFalse(MetadataIndex.matches(alpha, q));
+        assertTrue(MetadataIndex.matches(alpha, null));
+        assertFalse(MetadataIndex.matches(alpha, query("missing", "x")));
+    }
+
+    @Test
+    public void removeUsesTheIndexedValues() {
+        // the callsign changes after the item was indexed
+        Mockito.when(alpha.getMetaString("callsign", null))
+                .thenReturn("Renamed");
+        assertEquals(Collections.singleton(alpha),
+                new HashSet<>(index.candidates(query("callsign", "Alpha"))));
+
+        assertTrue(index.remove(alpha));
+        assertFalse(index.remove(alpha));
+        assertTrue(index.candidates(query("callsign", "Alpha")).isEmpty());
+        assertEquals(Collections.singleton(bravo),
+                new HashSet<>(index.candidates(query("type", "a-f-G"))));
+
+        // adding again picks up the new value
+        index.add(alpha);
+        assertEquals(Collections.singleton(alpha),
+                new HashSet<>(index.candidates(query("callsign", "Renamed"))));
+
+        index.clear();
+        assertEquals(0, index.size());
+        assertTrue(index.candidates(query("type", "a-h-G")).isEmpty());
+    }
+
+    private static Map<String, String> query(String key, String value) {
+        Map<String, String> q = new HashMap<>();
+        q.put(key, value);
+        return q;
+    }
+
+    private static MapItem item(String uid, String type, String callsign,
+            String team) {
+        MapItem item = Mockito.mock(MapItem.class);
+        Mockito.when(item.getUID()).thenReturn(uid);
+        Mockito.when(item.getType()).thenReturn(type);
+        Mockito.when(item.getTitle()).thenReturn(callsign);
+        Mockito.when(item.getMetaString("callsign", null))
+                .thenReturn(callsign);
+        Mockito.when(item.getMetaString("team", null)).thenReturn(team);
+        return item;
+    }
+}
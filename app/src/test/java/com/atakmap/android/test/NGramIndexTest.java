@@ -0,0 +1,74 @@
+
+package com.atakmap.android.test;
+
+import static org.junit.Assert.*;
+
+import com.atakmap.android.helloworld.index.NGramIndex;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+public class NGramIndexTest {
+
+    @Test
+    public void substringsCaseInsensitive() {
+        NGramIndex<String> index = new NGramIndex<>();
+        index.put("a", "Example Layer 1");
+        index.put("b", "example multilayer");
+        index.put("c", "Heat Map");
+
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")),
+                index.find("EXAMPLE"));
+        assertEquals(Collections.singleton("b"), index.find("multi"));
+        assertEquals(Collections.singleton("a"), index.find("layer 1"));
+        assertTrue(index.find("layers").isEmpty());
+        assertTrue(index.find("zzz").isEmpty());
+    }
+
+    @Test
+    public void shortSearchesScan() {
+        NGramIndex<String> index = new NGramIndex<>();
+        index.put("a", "Example Layer 1");
+        index.put("c", "Heat Map");
+
+        assertEquals(Collections.singleton("a"), index.find("1"));
+        assertEquals(new HashSet<>(Arrays.asList("a", "c")),
+                index.find("a"));
+        assertEquals(2, index.find("").size());
+    }
+
+    @Test
+    public void putReplacesTheText() {
+        NGramIndex<String> index = new NGramIndex<>();
+        index.put("a", "Example Layer");
+        index.put("a", "Renamed");
+        assertEquals(1, index.size());
+        assertTrue(index.find("example").isEmpty());
+        assertEquals(Collections.singleton("a"), index.find("renamed"));
+
+        assertTrue(index.remove("a"));
+        assertFalse(index.remove("a"));
+        assertFalse(index.contains("a"));
+        assertTrue(index.find("renamed").isEmpty());
+        assertTrue(index.find("r").isEmpty());
+    }
+
+    @Test
+    public void sharedTrigrams() {
+        NGramIndex<Integer> index = new NGramIndex<>();
+        for (int i = 0; i < 100; i++)
+            index.put(i, "layer " + i);
+        assertEquals(100, index.find("layer").size());
+        assertEquals(new HashSet<>(Arrays.asList(42)), index.find("r 42"));
+        assertEquals(11, index.find("r 1").size());
+
+        index.remove(42);
+        assertTrue(index.find("r 42").isEmpty());
+        index.clear();
+        assertEquals(0, index.size());
+        assertTrue(index.find("layer").isEmpty());
+    }
+}
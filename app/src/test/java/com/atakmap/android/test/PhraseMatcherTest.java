@@ -0,0 +1,176 @@
+
+package com.atakmap.android.test;
+
+import static org.junit.Assert.*;
+
+import com.atakmap.android.helloworld.speechtotext.PhraseMatcher;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class PhraseMatcherTest {
+
+    private static final String[][] ARRAYS = {
+            {
+                    "dropped", "drop", "put"
+            },
+            {
+                    "navigate", "route", "drive"
+            },
+            {
+                    "bloodhound to a", "bloodhound to", "bloodhound"
+            },
+            {
+                    "nine line", "9 line", "nine-line"
+            },
+            {
+                    "troops in contact", "under fire", "under attack"
+            },
+            {
+                    "callsign", "call sign", "marker", "user", "point"
+            },
+            {
+                    "route", "root"
+            },
+            {
+                    "at", "by", "around"
+            }
+    };
+
+    private static PhraseMatcher build() {
+        PhraseMatcher m = new PhraseMatcher();
+        for (int i = 0; i < ARRAYS.length; i++)
+            m.addAll(ARRAYS[i], i);
+        m.compile();
+        return m;
+    }
+
+    @Test
+    public void spansAndSlots() {
+        PhraseMatcher.Result r = build()
+                .match("Bloodhound to call sign AVALON");
+        assertTrue(r.has(2));
+        assertFalse(r.has(0));
+
+        int c = r.last(5);
+        assertEquals(2, r.start(c));
+        assertEquals(4, r.end(c));
+        assertEquals("AVALON", r.textAfter(c));
+
+        // the longest bloodhound phrase starting at the first word
+        int b = r.at(0, 2);
+        assertEquals(2, r.end(b));
+    }
+
+    @Test
+    public void sharedPhrase() {
+        PhraseMatcher m = build();
+        PhraseMatcher.Result r = m.match("navigate by route 66");
+        int route = r.at(2, 6);
+        assertTrue(r.is(route, 1));
+        assertTrue(r.is(route, 6));
+        assertEquals(1, r.start(r.first(7)));
+
+        assertTrue((m.categories("Under  Fire") & (1L << 4)) != 0);
+        assertEquals(0L, m.categories("under"));
+    }
+
+    /**
+     * Compares the matcher against the token loops it replaced.
+     */
+    @Test
+    public void matchesTokenLoops() {
+        PhraseMatcher m = build();
+        for (String input : corpus()) {
+            PhraseMatcher.Result r = m.match(input);
+            for (int k = 0; k < ARRAYS.length; k++) {
+                int expected = lastLoop(input, ARRAYS[k]);
+                int last = -1;
+                for (int i = 0; i < r.count(); i++) {
+                    if (r.is(i, k))
+                        last = Math.max(last, r.start(i));
+                }
+                assertEquals(input, expected, last);
+            }
+        }
+    }
+
+    /**
+     * Times the matcher against the token loops it replaced over the same
+     * corpus, taking the best of several warmed up rounds of each so that a
+     * busy machine does not decide the result.
+     */
+    @Test
+    public void notSlowerThanTokenLoops() {
+        final PhraseMatcher m = build();
+        final String[] inputs = corpus();
+        long loops = Long.MAX_VALUE;
+        long matcher = Long.MAX_VALUE;
+        int sink = 0;
+        for (int round = 0; round < 8; round++) {
+            long t0 = System.nanoTime();
+            for (String input : inputs) {
+                for (String[] a : ARRAYS)
+                    sink += lastLoop(input, a);
+            }
+            long t1 = System.nanoTime();
+            for (String input : inputs)
+                sink += m.match(input).count();
+            long t2 = System.nanoTime();
+            // the first rounds only warm up the JIT
+            if (round >= 3) {
+                loops = Math.min(loops, t1 - t0);
+                matcher = Math.min(matcher, t2 - t1);
+            }
+        }
+        assertTrue("matcher " + matcher + "ns, loops " + loops + "ns",
+                matcher <= loops);
+        // keeps the work from being optimized away
+        assertTrue(sink != 0);
+    }
+
+    /**
+     * @return 2000 commands of 3 to 12 words drawn from the phrases, the same
+     *         for every run
+     */
+    private static String[] corpus() {
+        String[] words = {
+                "drop", "a", "hostile", "at", "route", "nine", "line",
+                "under", "fire", "callsign", "goose", "to", "bloodhound",
+                "taco", "bell", "by", "root", "put", "marker"
+        };
+        Random rnd = new Random(11);
+        String[] inputs = new String[2000];
+        for (int i = 0; i < inputs.length; i++) {
+            StringBuilder sb = new StringBuilder();
+            int n = 3 + rnd.nextInt(10);
+            for (int j = 0; j < n; j++)
+                sb.append(words[rnd.nextInt(words.length)]).append(' ');
+            inputs[i] = sb.toString().trim();
+        }
+        return inputs;
+    }
+
+    /**
+     * The old approach, every token against every synonym.
+     * @return the token index of the last phrase match
+     */
+    private static int lastLoop(String input, String[] synonyms) {
+        String[] tokens = input.split(" ");
+        int ret = -1;
+        for (int i = 0; i < tokens.length; i++) {
+            for (String s : synonyms) {
+                String[] p = s.split(" ");
+                if (i + p.length > tokens.length)
+                    continue;
+                boolean match = true;
+                for (int j = 0; j < p.length && match; j++)
+                    match = tokens[i + j].equalsIgnoreCase(p[j]);
+                if (match)
+                    ret = i;
+            }
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,109 @@
+
+package com.atakmap.android.test;
+
+import static org.junit.Assert.*;
+
+import com.atakmap.android.helloworld.index.RTree;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+public class RTreeTest {
+
+    @Test
+    public void pointQuery() {
+        RTree<String> tree = new RTree<>();
+        tree.insert("a", -50, 40, -40, 50);
+        tree.insert("b", 10, 10, 20, 20);
+
+        Set<String> hits = new HashSet<>();
+        tree.search(-45, 45, hits);
+        assertEquals(1, hits.size());
+        assertTrue(hits.contains("a"));
+
+        hits.clear();
+        tree.search(0, 0, hits);
+        assertTrue(hits.isEmpty());
+    }
+
+    @Test
+    public void insertMovesExisting() {
+        RTree<String> tree = new RTree<>();
+        tree.insert("a", 0, 0, 1, 1);
+        tree.insert("a", 5, 5, 6, 6);
+        assertEquals(1, tree.size());
+
+        Set<String> hits = new HashSet<>();
+        tree.search(0.5, 0.5, hits);
+        assertTrue(hits.isEmpty());
+        tree.search(5.5, 5.5, hits);
+        assertTrue(hits.contains("a"));
+    }
+
+    @Test
+    public void nearestInDistanceOrder() {
+        RTree<String> tree = new RTree<>();
+        for (int i = 0; i < 100; i++)
+            tree.insert("p" + i, i, 0, i, 0);
+
+        final List<String> visited = new ArrayList<>();
+        tree.nearest(10.2, 0, 1.5, new RTree.Metric() {
+            @Override
+            public double distance(double x, double y, double minX,
+                    double minY, double maxX, double maxY) {
+                double dx = x - Math.max(minX, Math.min(x, maxX));
+                double dy = y - Math.max(minY, Math.min(y, maxY));
+                return Math.sqrt(dx * dx + dy * dy);
+            }
+        }, new RTree.NearestVisitor<String>() {
+            @Override
+            public boolean visit(String value, double distance) {
+                visited.add(value);
+                return true;
+            }
+        });
+        assertEquals(3, visited.size());
+        assertEquals("p10", visited.get(0));
+        assertEquals("p11", visited.get(1));
+        assertEquals("p9", visited.get(2));
+    }
+
+    @Test
+    public void matchesLinearScan() {
+        Random r = new Random(7);
+        RTree<Integer> tree = new RTree<>();
+        double[][] boxes = new double[1000][];
+        for (int i = 0; i < boxes.length; i++) {
+            double x = r.nextDouble() * 100, y = r.nextDouble() * 100;
+            boxes[i] = new double[] {
+                    x, y, x + r.nextDouble() * 5, y + r.nextDouble() * 5
+            };
+            tree.insert(i, boxes[i][0], boxes[i][1], boxes[i][2],
+                    boxes[i][3]);
+        }
+        // remove every third entry to exercise condensing
+        for (int i = 0; i < boxes.length; i += 3) {
+            assertTrue(tree.remove(i));
+            boxes[i] = null;
+        }
+
+        for (int q = 0; q < 100; q++) {
+            double x = r.nextDouble() * 100, y = r.nextDouble() * 100;
+            Set<Integer> expected = new HashSet<>();
+            for (int i = 0; i < boxes.length; i++) {
+                double[] b = boxes[i];
+                if (b != null && b[0] <= x + 2 && b[2] >= x && b[1] <= y + 2
+                        && b[3] >= y)
+                    expected.add(i);
+            }
+            Set<Integer> actual = new HashSet<>();
+            tree.search(x, y, x + 2, y + 2, actual);
+            assertEquals(expected, actual);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+
+package com.atakmap.android.test;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+
+import com.atakmap.android.helloworld.routes.RouteGeometryIndex;
+import com.atakmap.coremap.maps.coords.GeoCalculations;
+import com.atakmap.coremap.maps.coords.GeoPoint;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests the RouteGeometryIndex against a walk of the route, with the
+ * geodetic calculations replaced by planar ones (latitude and longitude
+ * taken as meters north and east).
+ */
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class RouteGeometryIndexTest {
+
+    private MockedStatic<GeoCalculations> geoCalculationsStatic;
+
+    @Before
+    public void setUp() {
+        geoCalculationsStatic = Mockito.mockStatic(GeoCalculations.class);
+        Mockito.when(GeoCalculations.slantDistanceTo(any(GeoPoint.class),
+                any(GeoPoint.class))).thenAnswer(new Answer<Double>() {
+                    @Override
+                    public Double answer(InvocationOnMock inv) {
+                        return distance((GeoPoint) inv.getArgument(0),
+                                (GeoPoint) inv.getArgument(1));
+                    }
+                });
+        Mockito.when(GeoCalculations.bearingTo(any(GeoPoint.class),
+                any(GeoPoint.class))).thenAnswer(new Answer<Double>() {
+                    @Override
+                    public Double answer(InvocationOnMock inv) {
+                        GeoPoint a = inv.getArgument(0);
+                        GeoPoint b = inv.getArgument(1);
+                        return Math.toDegrees(Math.atan2(
+                                b.getLongitude() - a.getLongitude(),
+                                b.getLatitude() - a.getLatitude()));
+                    }
+                });
+        Mockito.when(GeoCalculations.pointAtDistance(any(GeoPoint.class),
+                anyDouble(), anyDouble(), anyDouble()))
+                .thenAnswer(new Answer<GeoPoint>() {
+                    @Override
+                    public GeoPoint answer(InvocationOnMock inv) {
+                        GeoPoint p = inv.getArgument(0);
+                        double az = Math.toRadians(
+                                (Double) inv.getArgument(1));
+                        double d = inv.getArgument(2);
+                        return new GeoPoint(
+                                p.getLatitude() + d * Math.cos(az),
+                                p.getLongitude() + d * Math.sin(az));
+                    }
+                });
+    }
+
+    @After
+    public void tearDown() {
+        geoCalculationsStatic.close();
+    }
+
+    @Test
+    public void pointAt() {
+        List<GeoPoint> route = Arrays.asList(new GeoPoint(0, 0),
+                new GeoPoint(10, 0), new GeoPoint(10, 0),
+                new GeoPoint(10, 20));
+        RouteGeometryIndex index = new RouteGeometryIndex(route);
+        assertEquals(30, index.getLength(), 1e-9);
+
+        assertSame(route.get(0), index.pointAt(-5));
+        assertSame(route.get(3), index.pointAt(100));
+        assertPoint(5, 0, index.pointAt(5));
+        assertPoint(10, 0, index.pointAt(10));
+        assertPoint(10, 5, index.pointAt(15));
+        assertEquals(2, index.segmentAt(10));
+    }
+
+    @Test
+    public void batchMatchesWalk() {
+        Random r = new Random(3);
+        List<GeoPoint> route = new ArrayList<>();
+        double lat = 0, lng = 0;
+        for (int i = 0; i < 500; i++) {
+            lat += r.nextDouble() * 2 - 1;
+            lng += r.nextDouble() * 2 - 1;
+            route.add(new GeoPoint(lat, lng));
+        }
+        RouteGeometryIndex index = new RouteGeometryIndex(route);
+
+        double[] distances = new double[1000];
+        for (int i = 0; i < distances.length; i++)
+            distances[i] = r.nextDouble() * index.getLength();
+        // in order, as when animating, and in any order
+        double[] sorted = distances.clone();
+        Arrays.sort(sorted);
+        for (double[] d : new double[][] {
+                sorted, distances
+        }) {
+            GeoPoint[] points = index.pointsAt(d);
+            for (int i = 0; i < d.length; i++) {
+                GeoPoint expected = walk(route, d[i]);
+                assertPoint(expected.getLatitude(), expected.getLongitude(),
+                        points[i]);
+            }
+        }
+
+        GeoPoint[] samples = index.sample(0, index.getLength() / 10, 11);
+        assertSame(route.get(0), samples[0]);
+        GeoPoint last = route.get(route.size() - 1);
+        assertPoint(last.getLatitude(), last.getLongitude(), samples[10]);
+    }
+
+    private static GeoPoint walk(List<GeoPoint> route, double distance) {
+        for (int i = 1; i < route.size(); i++) {
+            GeoPoint a = route.get(i - 1);
+            GeoPoint b = route.get(i);
+            double d = distance(a, b);
+            if (distance < d) {
+                double t = distance / d;
+                return new GeoPoint(
+                        a.getLatitude() + t * (b.getLatitude()
+                                - a.getLatitude()),
+                        a.getLongitude() + t * (b.getLongitude()
+                                - a.getLongitude()));
+            }
+            distance -= d;
+        }
+        return route.get(route.size() - 1);
+    }
+
+    private static double distance(GeoPoint a, GeoPoint b) {
+        return Math.hypot(b.getLatitude() - a.getLatitude(),
+                b.getLongitude() - a.getLongitude());
+    }
+
+    private static void assertPoint(double lat, double lng, GeoPoint p) {
+        assertEquals(lat, p.getLatitude(), 1e-6);
+        assertEquals(lng, p.getLongitude(), 1e-6);
+    }
+}
@@ -0,0 +1,121 @@
+
+package com.atakmap.android.test;
+
+import static org.junit.Assert.*;
+
+import com.atakmap.android.helloworld.gl.ShelfAtlas;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ShelfAtlasTest {
+
+    private final List<ShelfAtlas.Page<String>> pages = new ArrayList<>();
+    private final Map<String, ShelfAtlas.Slot<String>> placed = new HashMap<>();
+    private ShelfAtlas<String> atlas;
+
+    @Before
+    public void setUp() {
+        atlas = new ShelfAtlas<>(256, 2, new ShelfAtlas.Listener<String>() {
+            @Override
+            public void onPageAdded(ShelfAtlas.Page<String> page) {
+                pages.add(page);
+            }
+
+            @Override
+            public void onPageRemoved(ShelfAtlas.Page<String> page) {
+                assertTrue(pages.remove(page));
+            }
+
+            @Override
+            public void onPlaced(String key, ShelfAtlas.Slot<String> slot) {
+                placed.put(key, slot);
+            }
+        });
+    }
+
+    @Test
+    public void replacingAChipDoesNotGrowTheAtlas() {
+        atlas.add("live", 62, 62);
+        for (int i = 0; i < 1000; i++)
+            assertNotNull(atlas.add("updated", 62, 62));
+        assertEquals(1, pages.size());
+        assertEquals(1, atlas.getPages().size());
+        assertSame(atlas.getSlot("live"), placed.get("live"));
+        assertSame(atlas.getSlot("updated"), placed.get("updated"));
+        assertNoOverlap();
+    }
+
+    @Test
+    public void repackMovesLiveChipsUp() {
+        // 16 chips of 64x64 fill a 256 page
+        for (int i = 0; i < 16; i++)
+            atlas.add("chip-" + i, 62, 62);
+        assertEquals(1, pages.size());
+        for (int i = 0; i < 15; i++)
+            atlas.remove("chip-" + i);
+
+        atlas.add("new", 62, 62);
+        assertEquals(1, pages.size());
+        // the survivor was moved to the top and the listener told
+        ShelfAtlas.Slot<String> survivor = atlas.getSlot("chip-15");
+        assertEquals(0, survivor.x);
+        assertEquals(0, survivor.y);
+        assertSame(survivor, placed.get("chip-15"));
+        assertNoOverlap();
+    }
+
+    @Test
+    public void fullPagesAddAPage() {
+        for (int i = 0; i < 17; i++)
+            atlas.add("chip-" + i, 62, 62);
+        assertEquals(2, pages.size());
+        assertNoOverlap();
+    }
+
+    @Test
+    public void emptyPagesAreReleased() {
+        for (int i = 0; i < 20; i++)
+            atlas.add("chip-" + i, 62, 62);
+        assertEquals(2, pages.size());
+        for (int i = 16; i < 20; i++)
+            assertTrue(atlas.remove("chip-" + i));
+        assertFalse(atlas.remove("chip-16"));
+        assertEquals(1, atlas.releaseEmptyPages());
+        assertEquals(1, pages.size());
+        assertEquals(0, atlas.releaseEmptyPages());
+
+        atlas.clear();
+        assertTrue(pages.isEmpty());
+    }
+
+    @Test
+    public void tooLargeForAPage() {
+        assertNull(atlas.add("big", 255, 10));
+        assertNull(atlas.getSlot("big"));
+        assertTrue(pages.isEmpty());
+    }
+
+    private void assertNoOverlap() {
+        List<ShelfAtlas.Slot<String>> slots = new ArrayList<>();
+        for (ShelfAtlas.Page<String> page : atlas.getPages())
+            for (String key : page.getKeys())
+                slots.add(atlas.getSlot(key));
+        for (int i = 0; i < slots.size(); i++) {
+            ShelfAtlas.Slot<String> a = slots.get(i);
+            assertTrue(a.x + a.width <= 256 && a.y + a.height <= 256);
+            for (int j = i + 1; j < slots.size(); j++) {
+                ShelfAtlas.Slot<String> b = slots.get(j);
+                if (a.page != b.page)
+                    continue;
+                assertFalse(a.x < b.x + b.width && b.x < a.x + a.width
+                        && a.y < b.y + b.height && b.y < a.y + a.height);
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+
+package com.atakmap.android.test;
+
+import static org.junit.Assert.*;
+
+import com.atakmap.android.helloworld.elevation.ElevationSampler;
+import com.atakmap.android.helloworld.elevation.Viewshed;
+
+import org.junit.Test;
+
+public class ViewshedTest {
+
+    private static final double METERS_PER_DEGREE = 111320d;
+
+    /**
+     * Flat ground with a 100 m ridge running north to south from 1000 m to
+     * 1100 m east of the origin.
+     */
+    private static final ElevationSampler.Source RIDGE = new ElevationSampler.Source() {
+        @Override
+        public double getElevation(double lat, double lng, int model) {
+            double x = lng * METERS_PER_DEGREE;
+            return (x >= 1000 && x <= 1100) ? 100 : 0;
+        }
+    };
+
+    @Test
+    public void ridgeHidesTheGroundBehindIt() {
+        Viewshed viewshed = new Viewshed(new ElevationSampler(RIDGE));
+        Viewshed.Result r = viewshed.compute(0, 0, 2, 0, 2000, 20, 1);
+        assertNotNull(r);
+        assertEquals(201, r.getSize());
+
+        assertEquals(Viewshed.VISIBLE, state(r, 0, 0));
+        assertEquals(Viewshed.VISIBLE, state(r, 500, 0));
+        assertEquals(Viewshed.VISIBLE, state(r, 1000, 0));
+        assertEquals(Viewshed.HIDDEN, state(r, 1500, 0));
+        assertEquals(Viewshed.HIDDEN, state(r, 1900, 300));
+        assertEquals(Viewshed.VISIBLE, state(r, -1500, 0));
+        assertEquals(Viewshed.VISIBLE, state(r, 0, 1900));
+        assertEquals(Viewshed.VISIBLE, state(r, 0, -1900));
+        // beyond the radius in the corner of the grid
+        assertEquals(Viewshed.OUTSIDE, state(r, 1900, 1900));
+
+        // a mast tall enough is seen over the ridge
+        r = viewshed.compute(0, 0, 2, 200, 2000, 20, 1);
+        assertEquals(Viewshed.VISIBLE, state(r, 1500, 0));
+
+        int[] argb = r.toARGB(0x8000FF00, 0x80FF0000);
+        assertEquals(r.getSize() * r.getSize(), argb.length);
+    }
+
+    @Test
+    public void everyCellWithinTheRadiusOfFlatGround() {
+        Viewshed viewshed = new Viewshed(new ElevationSampler(
+                new ElevationSampler.Source() {
+                    @Override
+                    public double getElevation(double lat, double lng,
+                            int model) {
+                        return 10;
+                    }
+                }));
+        Viewshed.Result r = viewshed.compute(35, -79, 2, 0, 5000, 30, 1);
+        int inside = 0;
+        int cells = r.getSize() / 2;
+        double radius = 5000 / 30d;
+        for (int y = 0; y < r.getSize(); y++) {
+            for (int x = 0; x < r.getSize(); x++) {
+                double dx = x - cells, dy = y - cells;
+                if (dx * dx + dy * dy <= radius * radius) {
+                    inside++;
+                    assertEquals(Viewshed.VISIBLE, r.getState(x, y));
+                }
+            }
+        }
+        assertEquals(inside, r.getVisibleCount());
+    }
+
+    @Test
+    public void noElevationAtTheObserver() {
+        Viewshed viewshed = new Viewshed(new ElevationSampler(
+                new ElevationSampler.Source() {
+                    @Override
+                    public double getElevation(double lat, double lng,
+                            int model) {
+                        return Double.NaN;
+                    }
+                }));
+        assertNull(viewshed.compute(0, 0, 2, 0, 1000, 20, 1));
+    }
+
+    /**
+     * @return the state of the cell at meters east and north of the origin
+     */
+    private static byte state(Viewshed.Result r, double east, double north) {
+        int cells = r.getSize() / 2;
+        return r.getState(
+                cells + (int) Math.round(east / r.getCellSize()),
+                cells - (int) Math.round(north / r.getCellSize()));
+    }
+}